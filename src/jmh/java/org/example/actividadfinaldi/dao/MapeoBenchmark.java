@@ -0,0 +1,123 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapeo de filas JSON de Supabase a objetos del modelo, con respuestas fijas
+ * del mismo formato que devuelve PostgREST (alquileres con cliente y vehiculo embebidos)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapeoBenchmark {
+
+    @Param({"100"})
+    public int filas;
+
+    private final ClienteDAO clienteDAO = new ClienteDAO();
+    private final VehiculoDAO vehiculoDAO = new VehiculoDAO();
+    private final AlquilerDAO alquilerDAO = new AlquilerDAO();
+
+    private JSONObject cliente;
+    private JSONObject vehiculo;
+    private JSONObject alquiler;
+    private JSONArray pagina;
+    private final Map<Integer, Cliente> clientes = new HashMap<>();
+    private final Map<Integer, Vehiculo> vehiculos = new HashMap<>();
+
+    @Setup
+    public void preparar() {
+        cliente = cliente(1);
+        vehiculo = vehiculo(1);
+
+        pagina = new JSONArray();
+        for (int i = 0; i < filas; i++) {
+            JSONObject fila = alquiler(i, i % 20, i % 10);
+            fila.put("clientes", cliente(i % 20));
+            fila.put("vehiculos", vehiculo(i % 10));
+            pagina.put(fila);
+        }
+        // Se parsea de nuevo para que los objetos sean los que construye org.json al leer una respuesta
+        pagina = new JSONArray(pagina.toString());
+
+        alquiler = alquiler(1, 1, 1);
+        clientes.put(1, clienteDAO.mapearCliente(cliente));
+        vehiculos.put(1, vehiculoDAO.mapearVehiculo(vehiculo));
+    }
+
+    private static JSONObject cliente(int id) {
+        return new JSONObject()
+                .put("id", id)
+                .put("nombre", "Nombre" + id)
+                .put("apellidos", "Apellido Apellido" + id)
+                .put("dni", String.format("%08dA", id))
+                .put("fecha_nacimiento", "1985-03-14")
+                .put("activo", true);
+    }
+
+    private static JSONObject vehiculo(int id) {
+        return new JSONObject()
+                .put("id", id)
+                .put("matricula", String.format("%04dBCD", id))
+                .put("poliza_seguro", "POL-2024-" + id)
+                .put("tipo", "MEDIANO")
+                .put("fecha_matriculacion", "2019-07-01")
+                .put("activo", true);
+    }
+
+    private static JSONObject alquiler(int id, int clienteId, int vehiculoId) {
+        return new JSONObject()
+                .put("id", id)
+                .put("cliente_id", clienteId)
+                .put("vehiculo_id", vehiculoId)
+                .put("fecha_inicio", "2024-05-01")
+                .put("fecha_fin", "2024-05-08")
+                .put("activo", true);
+    }
+
+    @Benchmark
+    public Cliente mapearCliente() {
+        return clienteDAO.mapearCliente(cliente);
+    }
+
+    @Benchmark
+    public Vehiculo mapearVehiculo() {
+        return vehiculoDAO.mapearVehiculo(vehiculo);
+    }
+
+    @Benchmark
+    public Alquiler mapearAlquiler() {
+        return alquilerDAO.mapearAlquiler(alquiler, clientes, vehiculos);
+    }
+
+    /**
+     * Pagina completa: comparte clientes y vehiculos embebidos, guarda en cache y carga el indice
+     */
+    @Benchmark
+    public List<Alquiler> mapearPagina() {
+        return alquilerDAO.mapearAlquileres(pagina);
+    }
+}
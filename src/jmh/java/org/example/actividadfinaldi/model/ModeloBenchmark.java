@@ -0,0 +1,46 @@
+package org.example.actividadfinaldi.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculos derivados del modelo que se repiten al pintar cada fila de las tablas
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModeloBenchmark {
+
+    private Cliente cliente;
+    private Vehiculo vehiculo;
+
+    @Setup
+    public void preparar() {
+        cliente = new Cliente("Ana", "Ruiz", "12345678A", LocalDate.of(1985, 3, 14));
+        vehiculo = new Vehiculo("1234ABC", "POL-1", TipoVehiculo.GRANDE, LocalDate.of(2019, 7, 1));
+    }
+
+    @Benchmark
+    public int edad() {
+        return cliente.getEdad();
+    }
+
+    @Benchmark
+    public int aniosUso() {
+        return vehiculo.getAniosUso();
+    }
+}
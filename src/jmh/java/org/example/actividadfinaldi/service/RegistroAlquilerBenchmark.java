@@ -0,0 +1,56 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formato de las lineas del registro de alquileres (lo que hace AlquilerFileService
+ * por cada alquiler guardado) y su lectura de vuelta en HistorialAlquileres
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegistroAlquilerBenchmark {
+
+    private Alquiler alquiler;
+    private LocalDateTime fecha;
+    private String linea;
+
+    @Setup
+    public void preparar() {
+        Cliente cliente = new Cliente("María", "González López", "12345678A", LocalDate.of(1990, 5, 15));
+        Vehiculo vehiculo = new Vehiculo("1234ABC", "POL-2024-001", TipoVehiculo.MEDIANO, LocalDate.of(2020, 6, 10));
+        alquiler = new Alquiler(cliente, vehiculo, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 8));
+        fecha = LocalDateTime.of(2024, 2, 1, 10, 15, 30);
+        linea = RegistroAlquiler.de(alquiler, fecha).aLinea();
+    }
+
+    @Benchmark
+    public String formatear() {
+        return RegistroAlquiler.de(alquiler, fecha).aLinea();
+    }
+
+    @Benchmark
+    public RegistroAlquiler interpretar() {
+        return RegistroAlquiler.desdeLinea(linea);
+    }
+}
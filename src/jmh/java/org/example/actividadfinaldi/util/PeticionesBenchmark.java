@@ -0,0 +1,58 @@
+package org.example.actividadfinaldi.util;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construccion de peticiones HTTP (URL, cabeceras y cuerpo) sin enviarlas
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PeticionesBenchmark {
+
+    private static final String FILTRO = "select=id,cliente_id,vehiculo_id,fecha_inicio,fecha_fin,activo"
+            + "&activo=eq.true&order=fecha_inicio.desc&limit=50&offset=100";
+
+    private JSONObject cliente;
+
+    @Setup
+    public void preparar() {
+        cliente = new JSONObject()
+                .put("nombre", "Ana")
+                .put("apellidos", "Ruiz Gil")
+                .put("dni", "12345678A")
+                .put("fecha_nacimiento", "1985-03-14")
+                .put("activo", true);
+    }
+
+    @Benchmark
+    public HttpRequest peticionGet() {
+        return DatabaseConnection.peticionGet("alquileres", FILTRO);
+    }
+
+    @Benchmark
+    public HttpRequest peticionPost() {
+        return DatabaseConnection.peticionPost("clientes", cliente, "id");
+    }
+
+    @Benchmark
+    public String conColumnas() {
+        return DatabaseConnection.conColumnas("https://ejemplo.supabase.co/rest/v1/clientes", "id");
+    }
+}
@@ -2,6 +2,7 @@ module org.example.actividadfinaldi {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.net.http;
+    requires java.management;
     requires org.json;
 
     opens org.example.actividadfinaldi to javafx.fxml;
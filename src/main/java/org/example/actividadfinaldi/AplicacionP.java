@@ -4,9 +4,15 @@ import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.example.actividadfinaldi.controller.PantallaPrincipalController;
+import org.example.actividadfinaldi.dao.AlquilerDAO;
+import org.example.actividadfinaldi.dao.EscrituraDiferidaAlquileres;
 import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.EjecutorTareas;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 
 
 /**
@@ -14,6 +20,11 @@ import java.io.IOException;
  */
 public class AplicacionP extends Application {
 
+    private static final String PROPIEDAD_ESCRITURA_DIFERIDA = "alquileres.escrituraDiferida";
+    private static final Duration PLAZO_VACIADO = Duration.ofSeconds(5);
+
+    private PantallaPrincipalController controller;
+
     @Override
     public void start(Stage stage) throws IOException {
         try {
@@ -21,17 +32,45 @@ public class AplicacionP extends Application {
         } catch (Exception e) {
             System.err.println("Error inicializando BD: " + e.getMessage());
         }
+        DatabaseConnection.getMetricas().registrarMBean();
+        DatabaseConnection.getMetricas().iniciarResumenPeriodico(Duration.ofMinutes(5));
+        iniciarEscrituraDiferida();
 
         FXMLLoader fxmlLoader = new FXMLLoader(AplicacionP.class.getResource("PantallaPrincipal.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 1000, 700);
+        controller = fxmlLoader.getController();
         scene.getStylesheets().add(getClass().getResource("styles.css").toExternalForm());
         stage.setTitle("Sistema de Alquiler de Coches");
         stage.setScene(scene);
         stage.show();
     }
 
+    /**
+     * La escritura diferida de alquileres se activa con -Dalquileres.escrituraDiferida=true.
+     * Sin ella, si quedo un diario con alquileres sin enviar solo se reenvian esos; los
+     * alquileres nuevos se siguen insertando esperando a Supabase.
+     */
+    private void iniciarEscrituraDiferida() {
+        Path diario = Path.of(EscrituraDiferidaAlquileres.ARCHIVO);
+        try {
+            if (Boolean.getBoolean(PROPIEDAD_ESCRITURA_DIFERIDA)) {
+                AlquilerDAO.activarEscrituraDiferida(diario);
+            } else if (EscrituraDiferidaAlquileres.tienePendientes(diario)) {
+                AlquilerDAO.reenviarDiario(diario);
+            }
+        } catch (IOException e) {
+            System.err.println("Error al abrir el diario de alquileres: " + e.getMessage());
+        }
+    }
+
     @Override
     public void stop() {
+        if (controller != null) {
+            controller.cerrar();
+        }
+        AlquilerDAO.desactivarEscrituraDiferida(PLAZO_VACIADO);
+        EjecutorTareas.cerrar();
+        DatabaseConnection.getMetricas().detenerResumenPeriodico();
         DatabaseConnection.closeConnection();
     }
 }
\ No newline at end of file
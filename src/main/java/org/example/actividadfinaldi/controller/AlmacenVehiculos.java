@@ -0,0 +1,101 @@
+package org.example.actividadfinaldi.controller;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flota de vehiculos en memoria, guardada una sola vez para todas las tablas.
+ *
+ * Las vistas por tipo son FilteredList sobre la lista principal, indexadas en un EnumMap:
+ * cambiar de filtro no copia la flota ni pide nada a la red, y cada alta o cambio en la
+ * lista principal solo se evalua contra el predicado de cada vista.
+ */
+public class AlmacenVehiculos {
+
+    private static final Comparator<Vehiculo> POR_MATRICULA = Comparator.comparing(Vehiculo::getMatricula);
+
+    private final ObservableList<Vehiculo> vehiculos = FXCollections.observableArrayList();
+    private final Map<Integer, Vehiculo> porId = new HashMap<>();
+    private final Map<TipoVehiculo, FilteredList<Vehiculo>> porTipo = new EnumMap<>(TipoVehiculo.class);
+
+    public AlmacenVehiculos() {
+        for (TipoVehiculo tipo : TipoVehiculo.values()) {
+            porTipo.put(tipo, new FilteredList<>(vehiculos, vehiculo -> vehiculo.getTipo() == tipo));
+        }
+        vehiculos.addListener(this::indexar);
+    }
+
+    /**
+     * @return lista principal; la rellena la carga paginada y la sincronizacion
+     */
+    public ObservableList<Vehiculo> getVehiculos() {
+        return vehiculos;
+    }
+
+    /**
+     * @param tipo tipo de vehiculo, o null para todos
+     * @return vista de solo lectura que se actualiza con la lista principal
+     */
+    public ObservableList<Vehiculo> getVista(TipoVehiculo tipo) {
+        return tipo == null ? vehiculos : porTipo.get(tipo);
+    }
+
+    /**
+     * Añade un vehiculo nuevo o sustituye al que tenga su mismo ID.
+     * La lista principal va por matricula, como la carga paginada, y su ultimo elemento es el
+     * cursor de la pagina siguiente: un vehiculo nuevo posterior al ultimo cargado no se añade
+     * mientras falten paginas, porque llegara con la suya.
+     * @param vehiculo vehiculo ya guardado en la BD
+     * @param listaCompleta true si ya se han cargado todas las paginas
+     * @return true si el vehiculo queda en la lista
+     */
+    public boolean guardar(Vehiculo vehiculo, boolean listaCompleta) {
+        Vehiculo anterior = porId.get(vehiculo.getId());
+        int posicion = anterior == null ? -1 : vehiculos.indexOf(anterior);
+        if (posicion >= 0) {
+            vehiculos.set(posicion, vehiculo);
+            return true;
+        }
+        posicion = Collections.binarySearch(vehiculos, vehiculo, POR_MATRICULA);
+        posicion = posicion < 0 ? -posicion - 1 : posicion;
+        if (posicion == vehiculos.size() && !listaCompleta) {
+            return false;
+        }
+        vehiculos.add(posicion, vehiculo);
+        return true;
+    }
+
+    /**
+     * @param id ID del vehiculo
+     * @return vehiculo cargado con ese ID, o null
+     */
+    public Vehiculo obtenerPorId(Integer id) {
+        return porId.get(id);
+    }
+
+    /**
+     * Mantiene el indice por ID con cualquier cambio de la lista principal
+     */
+    private void indexar(ListChangeListener.Change<? extends Vehiculo> cambio) {
+        while (cambio.next()) {
+            for (Vehiculo quitado : cambio.getRemoved()) {
+                porId.remove(quitado.getId(), quitado);
+            }
+            for (Vehiculo anadido : cambio.getAddedSubList()) {
+                if (anadido.getId() != null) {
+                    porId.put(anadido.getId(), anadido);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.actividadfinaldi.controller;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+import org.example.actividadfinaldi.util.Pagina;
+import org.example.actividadfinaldi.util.ServicioCarga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Carga una lista por paginas segun el usuario hace scroll en las tablas vinculadas.
+ * Las paginas se piden en segundo plano con el ultimo elemento recibido como cursor.
+ */
+public class CargaPaginada<T> {
+
+    // Fraccion del scroll a partir de la cual se pide la pagina siguiente
+    private static final double UMBRAL_SCROLL = 0.9;
+
+    private final ObservableList<T> destino;
+    private final int tamanoPagina;
+    private final ServicioCarga<Pagina<T>> servicio;
+    private final List<TableView<T>> tablas = new ArrayList<>();
+
+    // Cursor de la pagina en curso; se fija en el hilo de JavaFX y lo lee la carga
+    private volatile T cursor;
+    private boolean reinicio;
+    private boolean hayMas = true;
+    private boolean completar;
+    private long total = -1;
+    private Runnable alCompletar = () -> { };
+
+    /**
+     * Crea la carga paginada
+     * @param destino lista observable que se va rellenando
+     * @param tamanoPagina filas por pagina
+     * @param cargarPagina (cursor, limite) -> pagina; se ejecuta fuera del hilo de JavaFX
+     */
+    public CargaPaginada(ObservableList<T> destino, int tamanoPagina, BiFunction<T, Integer, Pagina<T>> cargarPagina) {
+        this.destino = destino;
+        this.tamanoPagina = tamanoPagina;
+        this.servicio = new ServicioCarga<>(() -> cargarPagina.apply(cursor, tamanoPagina), this::alRecibir);
+    }
+
+    /**
+     * Pide la pagina siguiente al llegar al final del scroll de la tabla
+     * @param tabla tabla que muestra la lista destino
+     */
+    public void vincular(TableView<T> tabla) {
+        tablas.add(tabla);
+        // La barra de scroll la crea el skin; se busca cuando ya esta montado
+        tabla.skinProperty().addListener((obs, anterior, skin) -> Platform.runLater(() -> {
+            ScrollBar barra = barraVertical(tabla);
+            if (barra != null) {
+                barra.valueProperty().addListener((o, viejo, valor) -> {
+                    if (valor.doubleValue() >= barra.getMax() * UMBRAL_SCROLL) {
+                        siguientePagina();
+                    }
+                });
+            }
+        }));
+    }
+
+    /**
+     * Descarta lo cargado y vuelve a pedir la primera pagina
+     */
+    public void recargar() {
+        cursor = null;
+        reinicio = true;
+        hayMas = true;
+        completar = false;
+        servicio.recargar();
+    }
+
+    /**
+     * Pide una tras otra las paginas que falten hasta tener la lista completa
+     */
+    public void cargarRestantes() {
+        completar = true;
+        siguientePagina();
+    }
+
+    /**
+     * Da por cargada la lista tal como esta, por ejemplo al rellenarla con la copia local.
+     * Cancela la carga en curso y ya no se pediran mas paginas hasta el siguiente recargar().
+     */
+    public void marcarCompleta() {
+        servicio.cancel();
+        cursor = null;
+        reinicio = false;
+        hayMas = false;
+        completar = false;
+        total = destino.size();
+    }
+
+    /**
+     * @param alCompletar se ejecuta en el hilo de JavaFX al recibir la ultima pagina
+     */
+    public void setAlCompletar(Runnable alCompletar) {
+        this.alCompletar = alCompletar;
+    }
+
+    /**
+     * @return true si ya se han recibido todas las paginas
+     */
+    public boolean estaCompleta() {
+        return !hayMas && !reinicio;
+    }
+
+    /**
+     * Pide la pagina siguiente si la hay y no hay otra carga en curso
+     */
+    public void siguientePagina() {
+        if (!hayMas || servicio.isRunning()) {
+            return;
+        }
+        cursor = destino.isEmpty() ? null : destino.get(destino.size() - 1);
+        servicio.recargar();
+    }
+
+    /**
+     * @return total de filas indicado por el servidor, o -1 si no se conoce
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public ServicioCarga<Pagina<T>> getServicio() {
+        return servicio;
+    }
+
+    private void alRecibir(Pagina<T> pagina) {
+        if (reinicio) {
+            destino.setAll(pagina.getElementos());
+            reinicio = false;
+            if (pagina.getTotal() >= 0) {
+                total = pagina.getTotal();
+            }
+        } else {
+            destino.addAll(pagina.getElementos());
+        }
+        hayMas = pagina.hayMas();
+
+        if (!hayMas) {
+            completar = false;
+            alCompletar.run();
+        }
+        // Si la pagina no llena la tabla no habra scroll: se pide la siguiente
+        Platform.runLater(() -> {
+            if (hayMas && (completar || tablas.stream().anyMatch(tabla -> tabla.isVisible() && !tieneScroll(tabla)))) {
+                siguientePagina();
+            }
+        });
+    }
+
+    private boolean tieneScroll(TableView<T> tabla) {
+        ScrollBar barra = barraVertical(tabla);
+        return barra == null || barra.isVisible();
+    }
+
+    private static ScrollBar barraVertical(TableView<?> tabla) {
+        for (Node nodo : tabla.lookupAll(".scroll-bar")) {
+            if (nodo instanceof ScrollBar barra && barra.getOrientation() == Orientation.VERTICAL) {
+                return barra;
+            }
+        }
+        return null;
+    }
+}
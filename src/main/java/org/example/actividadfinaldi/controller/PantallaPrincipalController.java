@@ -1,20 +1,30 @@
 package org.example.actividadfinaldi.controller;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import org.example.actividadfinaldi.dao.AlquilerDAO;
 import org.example.actividadfinaldi.dao.ClienteDAO;
+import org.example.actividadfinaldi.dao.EscrituraDiferidaAlquileres;
 import org.example.actividadfinaldi.dao.VehiculoDAO;
 import org.example.actividadfinaldi.model.Alquiler;
 import org.example.actividadfinaldi.model.Cliente;
 import org.example.actividadfinaldi.model.TipoVehiculo;
 import org.example.actividadfinaldi.model.Vehiculo;
 import org.example.actividadfinaldi.service.AlquilerFileService;
+import org.example.actividadfinaldi.service.SnapshotLocal;
+import org.example.actividadfinaldi.util.EjecutorTareas;
+import org.example.actividadfinaldi.util.Prioridad;
+import org.example.actividadfinaldi.util.ServicioCarga;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * Controlador de la pantalla principal
@@ -67,10 +77,32 @@ public class PantallaPrincipalController {
     private final VehiculoDAO vehiculoDAO = new VehiculoDAO();
     private final AlquilerDAO alquilerDAO = new AlquilerDAO();
     private final AlquilerFileService fileService = new AlquilerFileService();
+    private final SnapshotLocal snapshot = new SnapshotLocal();
 
     private ObservableList<Cliente> clientesData = FXCollections.observableArrayList();
-    private ObservableList<Vehiculo> vehiculosData = FXCollections.observableArrayList();
-    private ObservableList<Vehiculo> vehiculosDataTab = FXCollections.observableArrayList();
+    // Flota cargada, compartida por las dos tablas de vehiculos y filtrada en memoria
+    private final AlmacenVehiculos almacenVehiculos = new AlmacenVehiculos();
+    private ObservableList<Vehiculo> vehiculosData = almacenVehiculos.getVehiculos();
+    // Vista que muestra la pestaña de vehiculos (todos o los del tipo filtrado)
+    private SortedList<Vehiculo> vehiculosTabOrdenados;
+
+    private static final int TAMANO_PAGINA = 50;
+
+    // Cargas en segundo plano: recargar() cancela la carga anterior si sigue en curso
+    private final CargaPaginada<Cliente> cargaClientes =
+            new CargaPaginada<>(clientesData, TAMANO_PAGINA, clienteDAO::obtenerActivosPagina);
+    private final CargaPaginada<Vehiculo> cargaVehiculos =
+            new CargaPaginada<>(vehiculosData, TAMANO_PAGINA, vehiculoDAO::obtenerActivosPagina);
+    private final ServicioCarga<List<Alquiler>> cargaAlquileres =
+            new ServicioCarga<>(alquilerDAO::obtenerActivos, this::alRecibirAlquileres);
+    // Descarga completa que refresca la copia local y, si se mostro al arrancar, las tablas
+    private final ServicioCarga<SnapshotLocal.Datos> sincronizacion =
+            new ServicioCarga<>(this::descargarTodo, this::aplicarSincronizacion, Prioridad.SEGUNDO_PLANO);
+
+    // true mientras las tablas muestran la copia local sin refrescar
+    private boolean mostrandoCopiaLocal;
+    // Alquileres de la ultima carga paginada; con las tablas completas se guardan en la copia local
+    private List<Alquiler> alquileresCargados;
 
     /**
      * Inicializa el controlador
@@ -82,10 +114,33 @@ public class PantallaPrincipalController {
         configurarTablaClientes();
         configurarTablaVehiculos();
         configurarComboBoxes();
-        cargarDatos();
+        cargarInicial();
         configurarListeners();
+        configurarEscrituraDiferida();
     }
 
+    /**
+     * Con la escritura diferida un alquiler se confirma antes de llegar a la BD: si la BD
+     * lo rechaza despues, se avisa al empleado y se refresca la lista
+     */
+    private void configurarEscrituraDiferida() {
+        EscrituraDiferidaAlquileres diferida = AlquilerDAO.getEscrituraDiferida();
+        if (diferida != null) {
+            diferida.setAlRechazar((alquiler, motivo) -> Platform.runLater(() -> {
+                mostrarAlerta("Error", "No se pudo guardar el alquiler " + alquiler + ": " + motivo,
+                        Alert.AlertType.ERROR);
+                cargarAlquileres();
+            }));
+        }
+    }
+
+
+    /**
+     * Libera los recursos del controlador al cerrar la aplicacion
+     */
+    public void cerrar() {
+        fileService.cerrar();
+    }
 
     private void configurarTablaClientesTab() {
         colNombreClienteTab.setCellValueFactory(new PropertyValueFactory<>("nombre"));
@@ -95,6 +150,13 @@ public class PantallaPrincipalController {
                 new javafx.beans.property.SimpleIntegerProperty(cellData.getValue().getEdad()).asObject());
 
         tableClientesTab.setItems(clientesData);
+        cargaClientes.vincular(tableClientesTab);
+        cargaClientes.getServicio().runningProperty().addListener((obs, antes, cargando) -> {
+            if (!cargando) {
+                mostrarSinDatos(tableClientes);
+                mostrarSinDatos(tableClientesTab);
+            }
+        });
     }
 
     private void configurarTablaVehiculosTab() {
@@ -104,7 +166,9 @@ public class PantallaPrincipalController {
         colAniosUsoTab.setCellValueFactory(cellData ->
                 new javafx.beans.property.SimpleIntegerProperty(cellData.getValue().getAniosUso()).asObject());
 
-        tableVehiculosTab.setItems(vehiculosDataTab);
+        vehiculosTabOrdenados = ordenadaPorTabla(vehiculosData, tableVehiculosTab);
+        tableVehiculosTab.setItems(vehiculosTabOrdenados);
+        cargaVehiculos.vincular(tableVehiculosTab);
     }
 
     private void configurarTablaClientes() {
@@ -115,6 +179,7 @@ public class PantallaPrincipalController {
                 new javafx.beans.property.SimpleIntegerProperty(cellData.getValue().getEdad()).asObject());
 
         tableClientes.setItems(clientesData);
+        cargaClientes.vincular(tableClientes);
     }
 
     private void configurarTablaVehiculos() {
@@ -124,7 +189,24 @@ public class PantallaPrincipalController {
         colAniosUso.setCellValueFactory(cellData ->
                 new javafx.beans.property.SimpleIntegerProperty(cellData.getValue().getAniosUso()).asObject());
 
-        tableVehiculos.setItems(vehiculosData);
+        tableVehiculos.setItems(ordenadaPorTabla(vehiculosData, tableVehiculos));
+        cargaVehiculos.vincular(tableVehiculos);
+        cargaVehiculos.getServicio().runningProperty().addListener((obs, antes, cargando) -> {
+            if (!cargando) {
+                mostrarSinDatos(tableVehiculos);
+                mostrarSinDatos(tableVehiculosTab);
+            }
+        });
+    }
+
+    /**
+     * Ordena una vista segun las columnas de la tabla sin reordenar la lista de origen,
+     * cuyo ultimo elemento es el cursor de la carga paginada
+     */
+    private static <T> SortedList<T> ordenadaPorTabla(ObservableList<T> vista, TableView<T> tabla) {
+        SortedList<T> ordenada = new SortedList<>(vista);
+        ordenada.comparatorProperty().bind(tabla.comparatorProperty());
+        return ordenada;
     }
 
     private void configurarComboBoxes() {
@@ -146,13 +228,135 @@ public class PantallaPrincipalController {
                 (obs, oldVal, newVal) -> verificarActivarBotonAlquilar());
     }
 
+    /**
+     * Muestra la copia local si existe y la refresca desde Supabase en segundo plano;
+     * sin copia local se cargan las tablas por paginas y la copia se guarda cuando esten completas
+     */
+    private void cargarInicial() {
+        cargaClientes.setAlCompletar(this::guardarCopiaSiCompleta);
+        cargaVehiculos.setAlCompletar(this::guardarCopiaSiCompleta);
+
+        SnapshotLocal.Datos local = snapshot.cargar();
+        if (local == null) {
+            cargarDatos();
+            return;
+        }
+        mostrandoCopiaLocal = true;
+        // Hasta que llegue la sincronizacion, los solapes se comprueban contra la copia local
+        AlquilerDAO.getIndice().registrarVehiculos(local.getVehiculos());
+        AlquilerDAO.getIndice().cargar(local.getAlquileres());
+        clientesData.setAll(local.getClientes().stream().filter(Cliente::isActivo).toList());
+        vehiculosData.setAll(local.getVehiculos().stream().filter(Vehiculo::isActivo).toList());
+        // Las listas ya estan enteras: los filtros no deben pedir paginas a continuacion de la copia
+        cargaClientes.marcarCompleta();
+        cargaVehiculos.marcarCompleta();
+        mostrarAlquileres(local.getAlquileres());
+        sincronizacion.recargar();
+    }
+
+    /**
+     * Guarda la copia local con lo cargado por paginas una vez recibidas las tres tablas completas
+     */
+    private void guardarCopiaSiCompleta() {
+        if (alquileresCargados == null || !cargaClientes.estaCompleta() || !cargaVehiculos.estaCompleta()) {
+            return;
+        }
+        List<Cliente> clientes = List.copyOf(clientesData);
+        List<Vehiculo> vehiculos = List.copyOf(vehiculosData);
+        // Como en descargarTodo, solo los alquileres que ya tienen ID definitivo
+        List<Alquiler> confirmados = alquileresCargados.stream().filter(alquiler -> alquiler.getId() > 0).toList();
+        alquileresCargados = null;
+        EjecutorTareas.ejecutar(() -> {
+            snapshot.guardar(clientes, vehiculos, confirmados);
+            return null;
+        }, resultado -> { }, e -> System.err.println("Error al guardar la copia local: " + e.getMessage()));
+    }
+
+    /**
+     * Descarga las tres tablas completas y guarda la copia local (fuera del hilo de JavaFX).
+     * Si falla cualquiera de las tres no se guarda ni se aplica nada: la copia y las tablas
+     * siguen como estaban en vez de quedarse con una tabla vacia.
+     */
+    private SnapshotLocal.Datos descargarTodo() throws Exception {
+        List<Cliente> clientes = clienteDAO.descargarActivos();
+        List<Vehiculo> vehiculos = vehiculoDAO.descargarActivos();
+        List<Alquiler> alquileres = alquilerDAO.descargarActivos();
+        // Los alquileres aun sin ID definitivo no se guardan: al arrancar los vuelve a dar el diario
+        List<Alquiler> confirmados = alquileres.stream().filter(alquiler -> alquiler.getId() > 0).toList();
+        try {
+            snapshot.guardar(clientes, vehiculos, confirmados);
+        } catch (Exception e) {
+            // No impide refrescar las tablas; se reintenta en el siguiente arranque
+            System.err.println("Error al guardar la copia local: " + e.getMessage());
+        }
+        return new SnapshotLocal.Datos(clientes, vehiculos, alquileres, System.currentTimeMillis());
+    }
+
+    /**
+     * Sustituye los datos de la copia local por los recibidos del servidor
+     */
+    private void aplicarSincronizacion(SnapshotLocal.Datos datos) {
+        if (!mostrandoCopiaLocal) {
+            return;
+        }
+        mostrandoCopiaLocal = false;
+        reemplazarConservandoSeleccion(clientesData, datos.getClientes(), Cliente::getId,
+                tableClientes, tableClientesTab);
+        reemplazarConservandoSeleccion(vehiculosData, datos.getVehiculos(), Vehiculo::getId,
+                tableVehiculos, tableVehiculosTab);
+        mostrarAlquileres(datos.getAlquileres());
+    }
+
+    /**
+     * Reemplaza el contenido de la lista y vuelve a seleccionar, por ID, lo que estaba seleccionado
+     */
+    @SafeVarargs
+    private <T> void reemplazarConservandoSeleccion(ObservableList<T> destino, List<T> nuevos,
+                                                    Function<T, Integer> id, TableView<T>... tablas) {
+        List<Integer> seleccionados = new ArrayList<>();
+        for (TableView<T> tabla : tablas) {
+            T seleccionado = tabla.getSelectionModel().getSelectedItem();
+            seleccionados.add(seleccionado == null ? null : id.apply(seleccionado));
+        }
+
+        destino.setAll(nuevos);
+
+        for (int i = 0; i < tablas.length; i++) {
+            Integer seleccionado = seleccionados.get(i);
+            if (seleccionado == null) {
+                continue;
+            }
+            for (T nuevo : nuevos) {
+                if (seleccionado.equals(id.apply(nuevo))) {
+                    tablas[i].getSelectionModel().select(nuevo);
+                    break;
+                }
+            }
+        }
+    }
+
     private void cargarDatos() {
-        clientesData.setAll(clienteDAO.obtenerActivos());
-        vehiculosData.setAll(vehiculoDAO.obtenerActivos());
-        vehiculosDataTab.setAll(vehiculoDAO.obtenerActivos());
+        mostrandoCopiaLocal = false;
+        mostrarCargando(tableClientes);
+        mostrarCargando(tableClientesTab);
+        mostrarCargando(tableVehiculos);
+        mostrarCargando(tableVehiculosTab);
+        cargaClientes.recargar();
+        cargaVehiculos.recargar();
+        if (cmbFiltroTipo.getValue() != null) {
+            handleFiltrarVehiculos();
+        }
         cargarAlquileres();
     }
 
+    private void mostrarCargando(TableView<?> tabla) {
+        tabla.setPlaceholder(new ProgressIndicator());
+    }
+
+    private void mostrarSinDatos(TableView<?> tabla) {
+        tabla.setPlaceholder(new Label("No hay datos"));
+    }
+
     /**
      * Registra un nuevo cliente
      */
@@ -169,11 +373,6 @@ public class PantallaPrincipalController {
                 return;
             }
 
-            if (clienteDAO.buscarPorDni(dni) != null) {
-                mostrarAlerta("Error", "Ya existe un cliente con ese DNI", Alert.AlertType.ERROR);
-                return;
-            }
-
             Cliente cliente = new Cliente(nombre, apellidos, dni, fechaNac);
 
             if (!cliente.esMayorDe25()) {
@@ -181,13 +380,22 @@ public class PantallaPrincipalController {
                 return;
             }
 
-            if (clienteDAO.insertar(cliente)) {
-                mostrarAlerta("Exito", "Cliente registrado correctamente", Alert.AlertType.INFORMATION);
-                limpiarFormularioCliente();
-                cargarDatos();
-            } else {
-                mostrarAlerta("Error", "No se pudo registrar el cliente", Alert.AlertType.ERROR);
-            }
+            btnRegistrarCliente.setDisable(true);
+            EjecutorTareas.ejecutar(() -> clienteDAO.insertarSiNoExiste(cliente), resultado -> {
+                btnRegistrarCliente.setDisable(false);
+                switch (resultado) {
+                    case CREADO -> {
+                        mostrarAlerta("Exito", "Cliente registrado correctamente", Alert.AlertType.INFORMATION);
+                        limpiarFormularioCliente();
+                        cargarDatos();
+                    }
+                    case DUPLICADO -> mostrarAlerta("Error", "Ya existe un cliente con ese DNI", Alert.AlertType.ERROR);
+                    default -> mostrarAlerta("Error", "No se pudo registrar el cliente", Alert.AlertType.ERROR);
+                }
+            }, e -> {
+                btnRegistrarCliente.setDisable(false);
+                mostrarAlerta("Error", "Error al registrar cliente: " + e.getMessage(), Alert.AlertType.ERROR);
+            });
         } catch (Exception e) {
             mostrarAlerta("Error", "Error al registrar cliente: " + e.getMessage(), Alert.AlertType.ERROR);
         }
@@ -209,39 +417,45 @@ public class PantallaPrincipalController {
                 return;
             }
 
-            if (vehiculoDAO.buscarPorMatricula(matricula) != null) {
-                mostrarAlerta("Error", "Ya existe un vehiculo con esa matricula", Alert.AlertType.ERROR);
-                return;
-            }
-
             Vehiculo vehiculo = new Vehiculo(matricula, poliza, tipo, fechaMat);
 
             if (vehiculo.debeSerDadoDeBaja()) {
                 mostrarAlerta("Advertencia", "El vehiculo tiene mas de 10 años", Alert.AlertType.WARNING);
             }
 
-            if (vehiculoDAO.insertar(vehiculo)) {
-                mostrarAlerta("Exito", "Vehiculo registrado correctamente", Alert.AlertType.INFORMATION);
-                limpiarFormularioVehiculo();
-                cargarDatos();
-            } else {
-                mostrarAlerta("Error", "No se pudo registrar el vehiculo", Alert.AlertType.ERROR);
-            }
+            btnRegistrarVehiculo.setDisable(true);
+            EjecutorTareas.ejecutar(() -> vehiculoDAO.insertarSiNoExiste(vehiculo), resultado -> {
+                btnRegistrarVehiculo.setDisable(false);
+                switch (resultado) {
+                    case CREADO -> {
+                        mostrarAlerta("Exito", "Vehiculo registrado correctamente", Alert.AlertType.INFORMATION);
+                        limpiarFormularioVehiculo();
+                        almacenVehiculos.guardar(vehiculo, cargaVehiculos.estaCompleta());
+                    }
+                    case DUPLICADO -> mostrarAlerta("Error", "Ya existe un vehiculo con esa matricula", Alert.AlertType.ERROR);
+                    default -> mostrarAlerta("Error", "No se pudo registrar el vehiculo", Alert.AlertType.ERROR);
+                }
+            }, e -> {
+                btnRegistrarVehiculo.setDisable(false);
+                mostrarAlerta("Error", "Error al registrar vehiculo: " + e.getMessage(), Alert.AlertType.ERROR);
+            });
         } catch (Exception e) {
             mostrarAlerta("Error", "Error al registrar vehiculo: " + e.getMessage(), Alert.AlertType.ERROR);
         }
     }
 
     /**
-     * Filtra vehiculos por tipo
+     * Filtra vehiculos por tipo sobre la flota ya cargada, sin ir a la red.
+     * Si aun faltan paginas se piden en segundo plano y aparecen en la vista al llegar.
      */
     @FXML
     private void handleFiltrarVehiculos() {
         TipoVehiculo tipo = cmbFiltroTipo.getValue();
-        if (tipo == null) {
-            vehiculosDataTab.setAll(vehiculoDAO.obtenerActivos());
-        } else {
-            vehiculosDataTab.setAll(vehiculoDAO.obtenerPorTipo(tipo));
+        vehiculosTabOrdenados.comparatorProperty().unbind();
+        vehiculosTabOrdenados = ordenadaPorTabla(almacenVehiculos.getVista(tipo), tableVehiculosTab);
+        tableVehiculosTab.setItems(vehiculosTabOrdenados);
+        if (tipo != null && !cargaVehiculos.estaCompleta()) {
+            cargaVehiculos.cargarRestantes();
         }
     }
 
@@ -263,14 +477,31 @@ public class PantallaPrincipalController {
                 return;
             }
 
-            if (alquilerDAO.insertar(alquiler)) {
-                fileService.guardarAlquiler(alquiler);
-                mostrarAlerta("Exito", "Alquiler realizado correctamente", Alert.AlertType.INFORMATION);
-                limpiarFormularioAlquiler();
-                cargarAlquileres();
-            } else {
-                mostrarAlerta("Error", "No se pudo realizar el alquiler", Alert.AlertType.ERROR);
+            if (!alquilerDAO.estaDisponible(vehiculo, fechaInicio, fechaFin)) {
+                mostrarAlerta("Error", "El vehiculo ya esta alquilado en esas fechas", Alert.AlertType.ERROR);
+                return;
             }
+
+            btnAlquilar.setDisable(true);
+            EjecutorTareas.ejecutar(() -> {
+                if (!alquilerDAO.insertar(alquiler)) {
+                    return false;
+                }
+                fileService.guardarAlquiler(alquiler);
+                return true;
+            }, insertado -> {
+                if (insertado) {
+                    mostrarAlerta("Exito", "Alquiler realizado correctamente", Alert.AlertType.INFORMATION);
+                    limpiarFormularioAlquiler();
+                    cargarAlquileres();
+                } else {
+                    mostrarAlerta("Error", "No se pudo realizar el alquiler", Alert.AlertType.ERROR);
+                }
+                verificarActivarBotonAlquilar();
+            }, e -> {
+                verificarActivarBotonAlquilar();
+                mostrarAlerta("Error", "Error al realizar alquiler: " + e.getMessage(), Alert.AlertType.ERROR);
+            });
         } catch (Exception e) {
             mostrarAlerta("Error", "Error al realizar alquiler: " + e.getMessage(), Alert.AlertType.ERROR);
         }
@@ -285,10 +516,22 @@ public class PantallaPrincipalController {
     }
 
     private void cargarAlquileres() {
-        txtAreaAlquileres.clear();
-        for (Alquiler alquiler : alquilerDAO.obtenerActivos()) {
-            txtAreaAlquileres.appendText(alquiler.toString() + "\n");
+        txtAreaAlquileres.setText("Cargando alquileres...");
+        cargaAlquileres.recargar();
+    }
+
+    private void alRecibirAlquileres(List<Alquiler> alquileres) {
+        mostrarAlquileres(alquileres);
+        alquileresCargados = alquileres;
+        guardarCopiaSiCompleta();
+    }
+
+    private void mostrarAlquileres(List<Alquiler> alquileres) {
+        StringBuilder texto = new StringBuilder();
+        for (Alquiler alquiler : alquileres) {
+            texto.append(alquiler).append("\n");
         }
+        txtAreaAlquileres.setText(texto.toString());
     }
 
     private void limpiarFormularioCliente() {
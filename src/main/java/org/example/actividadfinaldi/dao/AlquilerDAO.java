@@ -2,82 +2,316 @@ package org.example.actividadfinaldi.dao;
 
 import org.example.actividadfinaldi.model.Alquiler;
 import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
 import org.example.actividadfinaldi.model.Vehiculo;
+import org.example.actividadfinaldi.service.IndiceDisponibilidad;
 import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.EntityCache;
+import org.example.actividadfinaldi.util.Pagina;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * DAO para operaciones CRUD de Alquiler usando Supabase REST API
  */
 public class AlquilerDAO {
 
+    /**
+     * Columnas que usa mapearAlquiler
+     */
+    private static final String COLUMNAS = "id,cliente_id,vehiculo_id,fecha_inicio,fecha_fin,activo";
+
+    /**
+     * Embebe cliente y vehiculo en la misma peticion (resource embedding de PostgREST)
+     */
+    private static final String SELECT_EMBEBIDO = "select=" + COLUMNAS
+            + ",clientes(" + ClienteDAO.COLUMNAS + "),vehiculos(" + VehiculoDAO.COLUMNAS + ")";
+
+    /**
+     * Maximo de IDs por filtro id=in.(...) para no superar el limite de longitud de URL
+     */
+    static final int TAMANO_LOTE_IDS = 150;
+
+    private static final String FILTRO_ACTIVOS = SELECT_EMBEBIDO + "&activo=eq.true&order=fecha_inicio.desc";
+
+    /**
+     * Indice compartido de la ocupacion de cada vehiculo, alimentado por las consultas y las inserciones
+     */
+    private static final IndiceDisponibilidad INDICE = new IndiceDisponibilidad();
+
+    private static final String MOTIVO_OCUPADO = "Vehiculo ocupado en esas fechas";
+
+    /**
+     * Escritura diferida de insertar; null (por defecto) para insertar esperando a Supabase
+     */
+    private static volatile EscrituraDiferidaAlquileres escrituraDiferida;
+
     private final ClienteDAO clienteDAO = new ClienteDAO();
     private final VehiculoDAO vehiculoDAO = new VehiculoDAO();
 
     /**
-     * Inserta un nuevo alquiler en la BD
+     * Devuelve el indice compartido de disponibilidad de vehiculos
+     * @return indice de disponibilidad
+     */
+    public static IndiceDisponibilidad getIndice() {
+        return INDICE;
+    }
+
+    /**
+     * Activa la escritura diferida: insertar confirma en cuanto el alquiler queda apuntado en
+     * el diario local y el envio a Supabase se hace despues, en segundo plano.
+     * Las altas del diario que quedaron sin enviar se reenvian al activarla.
+     * @param diario archivo del diario
+     * @return escritura diferida activa
+     */
+    public static synchronized EscrituraDiferidaAlquileres activarEscrituraDiferida(Path diario) throws IOException {
+        if (escrituraDiferida == null) {
+            escrituraDiferida = new EscrituraDiferidaAlquileres(diario);
+        }
+        return escrituraDiferida;
+    }
+
+    /**
+     * Reenvia en segundo plano las altas que quedaron en el diario sin activar la escritura
+     * diferida: insertar sigue esperando a Supabase. No hace nada si ya hay una activa.
+     * @param diario archivo del diario
+     * @return escritura diferida que reenvia el diario (o la ya activa)
+     */
+    public static synchronized EscrituraDiferidaAlquileres reenviarDiario(Path diario) throws IOException {
+        if (escrituraDiferida == null) {
+            escrituraDiferida = new EscrituraDiferidaAlquileres(diario, true);
+        }
+        return escrituraDiferida;
+    }
+
+    /**
+     * Vuelve a insertar esperando a Supabase, tras intentar enviar lo pendiente
+     * @param plazo tiempo maximo para enviar lo pendiente; lo que quede sigue en el diario
+     */
+    public static synchronized void desactivarEscrituraDiferida(Duration plazo) {
+        if (escrituraDiferida != null) {
+            escrituraDiferida.cerrar(plazo);
+            escrituraDiferida = null;
+        }
+    }
+
+    /**
+     * @return escritura diferida activa, o null si esta desactivada
+     */
+    public static EscrituraDiferidaAlquileres getEscrituraDiferida() {
+        return escrituraDiferida;
+    }
+
+    /**
+     * Comprueba si un vehiculo esta libre en [inicio, fin) segun los alquileres conocidos
+     * @param vehiculo vehiculo a comprobar
+     * @param inicio fecha de inicio
+     * @param fin fecha de devolucion (ese dia ya queda libre)
+     * @return true si ningun alquiler activo conocido solapa con el periodo
+     */
+    public boolean estaDisponible(Vehiculo vehiculo, LocalDate inicio, LocalDate fin) {
+        return vehiculo != null && INDICE.estaLibre(vehiculo.getId(), inicio, fin);
+    }
+
+    /**
+     * Obtiene los vehiculos activos de un tipo libres en [inicio, fin)
+     * @param tipo tipo de vehiculo
+     * @param inicio fecha de inicio
+     * @param fin fecha de devolucion (ese dia ya queda libre)
+     * @return vehiculos libres segun los alquileres conocidos
+     */
+    public List<Vehiculo> obtenerVehiculosLibres(TipoVehiculo tipo, LocalDate inicio, LocalDate fin) {
+        return INDICE.vehiculosLibres(tipo, inicio, fin);
+    }
+
+    /**
+     * Inserta un nuevo alquiler en la BD.
+     * Si el vehiculo ya esta alquilado en fechas que solapan se rechaza sin llamar a la red.
+     * Con la escritura diferida activa se confirma al apuntarlo en el diario, con un ID
+     * provisional negativo que se sustituye por el definitivo cuando llega a la BD.
      * @param alquiler alquiler a insertar
      * @return true si se insertó correctamente
      */
     public boolean insertar(Alquiler alquiler) {
         try {
             // Validación de datos antes de insertar
-            if (alquiler == null || alquiler.getCliente() == null ||
-                    alquiler.getVehiculo() == null || alquiler.getFechaInicio() == null ||
-                    alquiler.getFechaFin() == null) {
+            if (!esValidoParaInsertar(alquiler)) {
                 return false;
             }
-
-            // Validación de IDs
-            if (alquiler.getCliente().getId() == null ||
-                    alquiler.getVehiculo().getId() == null) {
+            if (!reservar(alquiler)) {
+                System.err.println("Error al insertar alquiler: " + MOTIVO_OCUPADO);
                 return false;
             }
 
-            JSONObject datos = new JSONObject();
-            datos.put("cliente_id", alquiler.getCliente().getId());
-            datos.put("vehiculo_id", alquiler.getVehiculo().getId());
-            datos.put("fecha_inicio", alquiler.getFechaInicio().toString());
-            datos.put("fecha_fin", alquiler.getFechaFin().toString());
-            datos.put("activo", alquiler.isActivo());
+            EscrituraDiferidaAlquileres diferida = escrituraDiferida;
+            if (diferida != null && diferida.encolar(alquiler)) {
+                return true;
+            }
 
-            JSONObject resultado = DatabaseConnection.post("alquileres", datos);
+            JSONObject resultado = DatabaseConnection.post("alquileres", aJson(alquiler), "id");
 
             if (resultado != null && resultado.has("id")) {
                 alquiler.setId(resultado.getInt("id"));
+                INDICE.confirmar(alquiler);
                 return true;
             }
         } catch (Exception e) {
             System.err.println("Error al insertar alquiler: " + e.getMessage());
         }
+        INDICE.liberar(alquiler);
         return false;
     }
 
+    /**
+     * Inserta varios alquileres en una sola peticion POST con un array JSON (troceada
+     * en lotes). Los IDs devueltos se asignan a cada alquiler en el mismo orden.
+     * @param alquileres alquileres a insertar
+     * @return resultado con los insertados y los fallidos con su motivo
+     */
+    public ResultadoLote<Alquiler> insertarLote(List<Alquiler> alquileres) {
+        // Se reservan antes de enviar para detectar solapes con otros alquileres y dentro del lote
+        List<Alquiler> aEnviar = new ArrayList<>();
+        List<Alquiler> ocupados = new ArrayList<>();
+        Set<Alquiler> reservados = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Alquiler alquiler : alquileres) {
+            if (!esValidoParaInsertar(alquiler)) {
+                aEnviar.add(alquiler);
+            } else if (reservar(alquiler)) {
+                reservados.add(alquiler);
+                aEnviar.add(alquiler);
+            } else {
+                ocupados.add(alquiler);
+            }
+        }
+
+        ResultadoLote<Alquiler> resultado = InsercionPorLotes.insertar("alquileres", aEnviar,
+                this::esValidoParaInsertar, AlquilerDAO::aJson, Alquiler::setId);
+        for (Alquiler insertado : resultado.getInsertados()) {
+            INDICE.confirmar(insertado);
+        }
+        for (Alquiler fallido : resultado.getFallidos()) {
+            if (reservados.contains(fallido)) {
+                INDICE.liberar(fallido);
+            }
+        }
+        for (Alquiler ocupado : ocupados) {
+            resultado.anadirFallido(ocupado, MOTIVO_OCUPADO);
+        }
+        return resultado;
+    }
+
+    /**
+     * Comprueba que un alquiler tiene los datos obligatorios para insertarse
+     */
+    private boolean esValidoParaInsertar(Alquiler alquiler) {
+        return alquiler != null && alquiler.getCliente() != null &&
+                alquiler.getVehiculo() != null && alquiler.fechasValidas() &&
+                alquiler.getCliente().getId() != null && alquiler.getVehiculo().getId() != null;
+    }
+
+    /**
+     * Reserva en el indice el periodo de un alquiler activo
+     * @return false si el vehiculo ya esta ocupado en esas fechas
+     */
+    private boolean reservar(Alquiler alquiler) {
+        return !alquiler.isActivo() || INDICE.reservar(alquiler);
+    }
+
+    /**
+     * Convierte un alquiler en el JSON de insercion
+     */
+    static JSONObject aJson(Alquiler alquiler) {
+        JSONObject datos = new JSONObject();
+        datos.put("cliente_id", alquiler.getCliente().getId());
+        datos.put("vehiculo_id", alquiler.getVehiculo().getId());
+        datos.put("fecha_inicio", alquiler.getFechaInicio().toString());
+        datos.put("fecha_fin", alquiler.getFechaFin().toString());
+        datos.put("activo", alquiler.isActivo());
+        return datos;
+    }
+
     /**
      * Obtiene todos los alquileres activos
      * @return lista de alquileres activos
      */
     public List<Alquiler> obtenerActivos() {
-        List<Alquiler> alquileres = new ArrayList<>();
         try {
-            String filtro = "activo=eq.true&order=fecha_inicio.desc";
-            JSONArray resultados = DatabaseConnection.get("alquileres", filtro);
+            return descargarActivos();
+        } catch (Exception e) {
+            System.err.println("Error al obtener alquileres: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
 
-            for (int i = 0; i < resultados.length(); i++) {
-                Alquiler alquiler = mapearAlquiler(resultados.getJSONObject(i));
-                if (alquiler != null) {
-                    alquileres.add(alquiler);
-                }
+    /**
+     * Obtiene todos los alquileres activos sin ocultar los errores
+     * @return lista de alquileres activos
+     * @throws Exception si falla la consulta
+     */
+    public List<Alquiler> descargarActivos() throws Exception {
+        MapeoAlquileres mapeo = new MapeoAlquileres(System.nanoTime());
+        DatabaseConnection.recorrer("alquileres", FILTRO_ACTIVOS, mapeo);
+        return conPendientes(mapeo.terminar(), null);
+    }
+
+    /**
+     * Obtiene todos los alquileres activos sin bloquear
+     * @return futuro con la lista de alquileres activos
+     */
+    public CompletableFuture<List<Alquiler>> obtenerActivosAsync() {
+        long inicio = System.nanoTime();
+        return DatabaseConnection.getAsync("alquileres", FILTRO_ACTIVOS)
+                .thenApply(resultados -> conPendientes(
+                        mapearAlquileres(resultados, new MapeoAlquileres(inicio)), null))
+                .exceptionally(e -> {
+                    System.err.println("Error al obtener alquileres: " + e.getMessage());
+                    return new ArrayList<>();
+                });
+    }
+
+    /**
+     * Obtiene una pagina de alquileres activos, del mas reciente al mas antiguo.
+     * Usa paginacion por cursor (keyset) sobre (fecha_inicio, id).
+     * @param ultimo ultimo alquiler de la pagina anterior, o null para la primera
+     * @param limite tamaño de pagina
+     * @return pagina de alquileres
+     */
+    public Pagina<Alquiler> obtenerActivosPagina(Alquiler ultimo, int limite) {
+        try {
+            String filtro = SELECT_EMBEBIDO + "&activo=eq.true&order=fecha_inicio.desc,id.desc";
+            if (ultimo != null) {
+                String fecha = ultimo.getFechaInicio().toString();
+                filtro += "&or=(fecha_inicio.lt." + fecha + ",and(fecha_inicio.eq." + fecha
+                        + ",id.lt." + ultimo.getId() + "))";
             }
+
+            MapeoAlquileres mapeo = new MapeoAlquileres();
+            long total = DatabaseConnection.recorrerRango("alquileres", filtro, 0, limite, ultimo == null, mapeo);
+            return Pagina.de(mapeo.terminar(), limite, total);
         } catch (Exception e) {
-            System.err.println("Error al obtener alquileres: " + e.getMessage());
+            System.err.println("Error al obtener pagina de alquileres: " + e.getMessage());
         }
-        return alquileres;
+        return new Pagina<>(new ArrayList<>(), false, -1);
     }
 
     /**
@@ -86,39 +320,235 @@ public class AlquilerDAO {
      * @return lista de alquileres del cliente
      */
     public List<Alquiler> obtenerPorCliente(int clienteId) {
-        List<Alquiler> alquileres = new ArrayList<>();
         try {
-            String filtro = "cliente_id=eq." + clienteId + "&order=fecha_inicio.desc";
-            JSONArray resultados = DatabaseConnection.get("alquileres", filtro);
-
-            for (int i = 0; i < resultados.length(); i++) {
-                Alquiler alquiler = mapearAlquiler(resultados.getJSONObject(i));
-                if (alquiler != null) {
-                    alquileres.add(alquiler);
-                }
-            }
+            MapeoAlquileres mapeo = new MapeoAlquileres();
+            DatabaseConnection.recorrer("alquileres", filtroCliente(clienteId), mapeo);
+            return conPendientes(mapeo.terminar(), clienteId);
         } catch (Exception e) {
             System.err.println("Error al obtener alquileres por cliente: " + e.getMessage());
         }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Obtiene alquileres de un cliente específico sin bloquear
+     * @param clienteId ID del cliente
+     * @return futuro con la lista de alquileres del cliente
+     */
+    public CompletableFuture<List<Alquiler>> obtenerPorClienteAsync(int clienteId) {
+        return DatabaseConnection.getAsync("alquileres", filtroCliente(clienteId))
+                .thenApply(resultados -> conPendientes(mapearAlquileres(resultados), clienteId))
+                .exceptionally(e -> {
+                    System.err.println("Error al obtener alquileres por cliente: " + e.getMessage());
+                    return new ArrayList<>();
+                });
+    }
+
+    /**
+     * Añade al principio los alquileres de la escritura diferida que aun no estan en la BD.
+     * Los que no se pueden completar con su cliente y su vehiculo no se muestran.
+     * @param clienteId solo los de este cliente, o null para todos los activos
+     */
+    private List<Alquiler> conPendientes(List<Alquiler> alquileres, Integer clienteId) {
+        EscrituraDiferidaAlquileres diferida = escrituraDiferida;
+        if (diferida == null) {
+            return alquileres;
+        }
+        Set<Integer> cargados = alquileres.stream().map(Alquiler::getId).collect(Collectors.toSet());
+        List<Alquiler> pendientes = new ArrayList<>();
+        for (Alquiler pendiente : diferida.getPendientes()) {
+            boolean incluir = clienteId == null ? pendiente.isActivo()
+                    : clienteId.equals(pendiente.getCliente().getId());
+            // Si se envio mientras tanto ya tiene su ID definitivo y puede venir en la consulta
+            if (incluir && !cargados.contains(pendiente.getId())) {
+                pendientes.add(pendiente);
+            }
+        }
+        completarEntidades(pendientes);
+        pendientes.removeIf(pendiente -> !estaCompleto(pendiente));
+        Collections.reverse(pendientes);
+        alquileres.addAll(0, pendientes);
         return alquileres;
     }
 
     /**
-     * Mapea un JSONObject a un objeto Alquiler
+     * Un alta recuperada del diario solo trae los IDs de su cliente y su vehiculo:
+     * se completan desde la cache o con una peticion id=in.(...) por tabla
+     */
+    private void completarEntidades(List<Alquiler> pendientes) {
+        Set<Integer> idsClientes = new LinkedHashSet<>();
+        Set<Integer> idsVehiculos = new LinkedHashSet<>();
+        for (Alquiler pendiente : pendientes) {
+            if (pendiente.getCliente().getDni() == null) {
+                idsClientes.add(pendiente.getCliente().getId());
+            }
+            if (pendiente.getVehiculo().getMatricula() == null) {
+                idsVehiculos.add(pendiente.getVehiculo().getId());
+            }
+        }
+        if (idsClientes.isEmpty() && idsVehiculos.isEmpty()) {
+            return;
+        }
+        Map<Integer, Cliente> clientes = new HashMap<>();
+        Map<Integer, Vehiculo> vehiculos = new HashMap<>();
+        precargar("clientes", ClienteDAO.COLUMNAS, idsClientes, clienteDAO::mapearCliente,
+                ClienteDAO.getCache(), clientes);
+        precargar("vehiculos", VehiculoDAO.COLUMNAS, idsVehiculos, vehiculoDAO::mapearVehiculo,
+                VehiculoDAO.getCache(), vehiculos);
+        for (Alquiler pendiente : pendientes) {
+            Cliente cliente = clientes.get(pendiente.getCliente().getId());
+            if (cliente != null) {
+                pendiente.setCliente(cliente);
+            }
+            Vehiculo vehiculo = vehiculos.get(pendiente.getVehiculo().getId());
+            if (vehiculo != null) {
+                pendiente.setVehiculo(vehiculo);
+            }
+        }
+    }
+
+    private static boolean estaCompleto(Alquiler alquiler) {
+        return alquiler.getCliente().getDni() != null && alquiler.getVehiculo().getMatricula() != null;
+    }
+
+    private static String filtroCliente(int clienteId) {
+        return SELECT_EMBEBIDO + "&cliente_id=eq." + clienteId + "&order=fecha_inicio.desc";
+    }
+
+    /**
+     * Mapea una pagina de resultados a objetos Alquiler
+     * @param resultados filas devueltas por Supabase
+     * @return lista de alquileres mapeados
+     */
+    List<Alquiler> mapearAlquileres(JSONArray resultados) {
+        return mapearAlquileres(resultados, new MapeoAlquileres());
+    }
+
+    private List<Alquiler> mapearAlquileres(JSONArray resultados, MapeoAlquileres mapeo) {
+        for (int i = 0; i < resultados.length(); i++) {
+            mapeo.accept(resultados.getJSONObject(i));
+        }
+        return mapeo.terminar();
+    }
+
+    /**
+     * Mapea filas de alquiler a medida que llegan.
+     * Cada Cliente y Vehiculo se materializa una sola vez por llamada y se comparte
+     * entre todos los alquileres que lo referencian. Las filas con cliente y vehiculo
+     * embebidos se mapean al momento; las demas se aplazan y sus IDs se resuelven en
+     * terminar() con una peticion id=in.(...) por tabla.
+     * Al terminar actualiza el indice de disponibilidad; si es la carga completa de los
+     * activos lo reconstruye, para que los alquileres que ya no estan dejen de ocupar.
+     */
+    private class MapeoAlquileres implements Consumer<JSONObject> {
+
+        private final Map<Integer, Cliente> clientes = new HashMap<>();
+        private final Map<Integer, Vehiculo> vehiculos = new HashMap<>();
+        private final List<Alquiler> alquileres = new ArrayList<>();
+        private final Map<Integer, JSONObject> aplazadas = new LinkedHashMap<>();
+        private final boolean completa;
+        private final long inicioCarga;
+
+        /**
+         * Mapeo de una carga parcial
+         */
+        MapeoAlquileres() {
+            this.completa = false;
+            this.inicioCarga = 0;
+        }
+
+        /**
+         * Mapeo de la carga de todos los alquileres activos
+         * @param inicioCarga System.nanoTime() de antes de enviar la consulta
+         */
+        MapeoAlquileres(long inicioCarga) {
+            this.completa = true;
+            this.inicioCarga = inicioCarga;
+        }
+
+        @Override
+        public void accept(JSONObject json) {
+            try {
+                Cliente cliente = materializar(json.optJSONObject("clientes"), clientes,
+                        clienteDAO::mapearCliente, ClienteDAO.getCache());
+                Vehiculo vehiculo = materializar(json.optJSONObject("vehiculos"), vehiculos,
+                        vehiculoDAO::mapearVehiculo, VehiculoDAO.getCache());
+
+                if (cliente == null || vehiculo == null) {
+                    // Se reserva la posicion para conservar el orden de la consulta
+                    aplazadas.put(alquileres.size(), json);
+                    alquileres.add(null);
+                    return;
+                }
+                alquileres.add(mapearAlquiler(json, clientes, vehiculos));
+            } catch (Exception e) {
+                System.err.println("Error al mapear alquiler: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Resuelve las filas aplazadas y devuelve los alquileres en el orden recibido
+         */
+        List<Alquiler> terminar() {
+            if (!aplazadas.isEmpty()) {
+                Set<Integer> clientesPendientes = new LinkedHashSet<>();
+                Set<Integer> vehiculosPendientes = new LinkedHashSet<>();
+                for (JSONObject json : aplazadas.values()) {
+                    clientesPendientes.add(json.getInt("cliente_id"));
+                    vehiculosPendientes.add(json.getInt("vehiculo_id"));
+                }
+                clientesPendientes.removeAll(clientes.keySet());
+                vehiculosPendientes.removeAll(vehiculos.keySet());
+                precargar("clientes", ClienteDAO.COLUMNAS, clientesPendientes, clienteDAO::mapearCliente,
+                        ClienteDAO.getCache(), clientes);
+                precargar("vehiculos", VehiculoDAO.COLUMNAS, vehiculosPendientes, vehiculoDAO::mapearVehiculo,
+                        VehiculoDAO.getCache(), vehiculos);
+
+                for (Map.Entry<Integer, JSONObject> fila : aplazadas.entrySet()) {
+                    alquileres.set(fila.getKey(), mapearAlquiler(fila.getValue(), clientes, vehiculos));
+                }
+            }
+            alquileres.removeIf(Objects::isNull);
+            if (completa) {
+                INDICE.reemplazar(alquileres, inicioCarga);
+            } else {
+                INDICE.actualizar(alquileres);
+            }
+            return alquileres;
+        }
+    }
+
+    /**
+     * Devuelve la instancia compartida de una entidad embebida, creandola la primera vez
+     * @return entidad o null si no viene embebida
+     */
+    private <T> T materializar(JSONObject json, Map<Integer, T> instancias,
+                               Function<JSONObject, T> mapeador, EntityCache<T> cache) {
+        if (json == null) {
+            return null;
+        }
+        return instancias.computeIfAbsent(json.getInt("id"), id -> {
+            T entidad = mapeador.apply(json);
+            cache.guardar(entidad);
+            return entidad;
+        });
+    }
+
+    /**
+     * Mapea un JSONObject a un objeto Alquiler usando las entidades ya resueltas
      * @param json JSONObject con datos del alquiler
+     * @param clientes clientes resueltos por ID
+     * @param vehiculos vehiculos resueltos por ID
      * @return objeto Alquiler o null si hay error
      */
-    private Alquiler mapearAlquiler(JSONObject json) {
+    Alquiler mapearAlquiler(JSONObject json, Map<Integer, Cliente> clientes,
+                            Map<Integer, Vehiculo> vehiculos) {
         try {
             Alquiler alquiler = new Alquiler();
             alquiler.setId(json.getInt("id"));
 
-            int clienteId = json.getInt("cliente_id");
-            int vehiculoId = json.getInt("vehiculo_id");
-
-            // Obtiene el cliente y vehículo
-            Cliente cliente = obtenerClientePorId(clienteId);
-            Vehiculo vehiculo = obtenerVehiculoPorId(vehiculoId);
+            Cliente cliente = clientes.get(json.getInt("cliente_id"));
+            Vehiculo vehiculo = vehiculos.get(json.getInt("vehiculo_id"));
 
             if (cliente == null || vehiculo == null) {
                 return null;
@@ -138,52 +568,49 @@ public class AlquilerDAO {
     }
 
     /**
-     * Obtiene un cliente por su ID
+     * Resuelve un conjunto de IDs, primero desde la cache compartida y despues
+     * con peticiones id=in.(...) troceadas
+     * @param tabla tabla a consultar
+     * @param columnas columnas a pedir
+     * @param ids IDs a resolver
+     * @param mapeador conversion de cada fila
+     * @param cache cache compartida de la entidad
+     * @param destino mapa donde se guardan las entidades por ID
      */
-    private Cliente obtenerClientePorId(int id) {
-        try {
-            String filtro = "id=eq." + id;
-            JSONArray resultados = DatabaseConnection.get("clientes", filtro);
-
-            if (resultados.length() > 0) {
-                JSONObject json = resultados.getJSONObject(0);
-                Cliente cliente = new Cliente();
-                cliente.setId(json.getInt("id"));
-                cliente.setNombre(json.getString("nombre"));
-                cliente.setApellidos(json.getString("apellidos"));
-                cliente.setDni(json.getString("dni"));
-                cliente.setFechaNacimiento(LocalDate.parse(json.getString("fecha_nacimiento")));
-                cliente.setActivo(json.getBoolean("activo"));
-                return cliente;
+    private <T> void precargar(String tabla, String columnas, Collection<Integer> ids,
+                               Function<JSONObject, T> mapeador, EntityCache<T> cache, Map<Integer, T> destino) {
+        List<Integer> pendientes = new ArrayList<>();
+        for (Integer id : ids) {
+            T enCache = cache.obtenerPorId(id);
+            if (enCache != null) {
+                destino.put(id, enCache);
+            } else {
+                pendientes.add(id);
+            }
+        }
+
+        for (int desde = 0; desde < pendientes.size(); desde += TAMANO_LOTE_IDS) {
+            List<Integer> lote = pendientes.subList(desde, Math.min(desde + TAMANO_LOTE_IDS, pendientes.size()));
+            try {
+                JSONArray resultados = DatabaseConnection.get(tabla, "select=" + columnas + "&" + filtroIds(lote));
+                for (int i = 0; i < resultados.length(); i++) {
+                    JSONObject json = resultados.getJSONObject(i);
+                    T entidad = mapeador.apply(json);
+                    destino.putIfAbsent(json.getInt("id"), entidad);
+                    cache.guardar(entidad);
+                }
+            } catch (Exception e) {
+                System.err.println("Error al precargar " + tabla + ": " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("Error al obtener cliente por ID: " + e.getMessage());
         }
-        return null;
     }
 
     /**
-     * Obtiene un vehículo por su ID
+     * Construye el filtro id=in.(...) para un lote de IDs
      */
-    private Vehiculo obtenerVehiculoPorId(int id) {
-        try {
-            String filtro = "id=eq." + id;
-            JSONArray resultados = DatabaseConnection.get("vehiculos", filtro);
-
-            if (resultados.length() > 0) {
-                JSONObject json = resultados.getJSONObject(0);
-                Vehiculo vehiculo = new Vehiculo();
-                vehiculo.setId(json.getInt("id"));
-                vehiculo.setMatricula(json.getString("matricula"));
-                vehiculo.setPolizaSeguro(json.getString("poliza_seguro"));
-                vehiculo.setTipo(org.example.actividadfinaldi.model.TipoVehiculo.valueOf(json.getString("tipo")));
-                vehiculo.setFechaMatriculacion(LocalDate.parse(json.getString("fecha_matriculacion")));
-                vehiculo.setActivo(json.getBoolean("activo"));
-                return vehiculo;
-            }
-        } catch (Exception e) {
-            System.err.println("Error al obtener vehículo por ID: " + e.getMessage());
-        }
-        return null;
+    static String filtroIds(Collection<Integer> ids) {
+        return ids.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",", "id=in.(", ")"));
     }
 }
\ No newline at end of file
@@ -2,18 +2,43 @@ package org.example.actividadfinaldi.dao;
 
 import org.example.actividadfinaldi.model.Cliente;
 import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.EntityCache;
+import org.example.actividadfinaldi.util.Pagina;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * DAO para operaciones CRUD de Cliente usando Supabase REST API
  */
 public class ClienteDAO {
 
+    /**
+     * Cache compartida de clientes por ID y DNI
+     */
+    private static final EntityCache<Cliente> CACHE =
+            new EntityCache<>(1000, Duration.ofMinutes(5), Cliente::getId, Cliente::getDni);
+
+    /**
+     * Columnas que usa mapearCliente; se piden solo estas en lugar de select=*
+     */
+    static final String COLUMNAS = "id,nombre,apellidos,dni,fecha_nacimiento,activo";
+
+    private static final String FILTRO_ACTIVOS = "select=" + COLUMNAS + "&activo=eq.true&order=nombre.asc";
+
+    /**
+     * Devuelve la cache compartida de clientes
+     * @return cache de clientes
+     */
+    public static EntityCache<Cliente> getCache() {
+        return CACHE;
+    }
+
     /**
      * Inserta un nuevo cliente en la BD
      * @param cliente cliente a insertar
@@ -22,23 +47,15 @@ public class ClienteDAO {
     public boolean insertar(Cliente cliente) {
         try {
             // Validación de datos antes de insertar
-            if (cliente == null || cliente.getNombre() == null ||
-                    cliente.getApellidos() == null || cliente.getDni() == null ||
-                    cliente.getFechaNacimiento() == null) {
+            if (!esValidoParaInsertar(cliente)) {
                 return false;
             }
 
-            JSONObject datos = new JSONObject();
-            datos.put("nombre", cliente.getNombre());
-            datos.put("apellidos", cliente.getApellidos());
-            datos.put("dni", cliente.getDni());
-            datos.put("fecha_nacimiento", cliente.getFechaNacimiento().toString());
-            datos.put("activo", cliente.isActivo());
-
-            JSONObject resultado = DatabaseConnection.post("clientes", datos);
+            JSONObject resultado = DatabaseConnection.post("clientes", aJson(cliente), "id");
 
             if (resultado != null && resultado.has("id")) {
                 cliente.setId(resultado.getInt("id"));
+                CACHE.guardar(cliente);
                 return true;
             }
         } catch (Exception e) {
@@ -47,6 +64,55 @@ public class ClienteDAO {
         return false;
     }
 
+    /**
+     * Inserta un cliente solo si no existe otro con el mismo DNI.
+     * Una sola peticion: la unicidad la garantiza la base de datos (on_conflict).
+     * @param cliente cliente a insertar
+     * @return CREADO, DUPLICADO si ya existia o ERROR
+     */
+    public ResultadoInsercion insertarSiNoExiste(Cliente cliente) {
+        try {
+            if (!esValidoParaInsertar(cliente)) {
+                return ResultadoInsercion.ERROR;
+            }
+
+            JSONArray filas = DatabaseConnection.upsert("clientes", aJson(cliente), "dni", true, "id");
+            if (filas.length() == 0) {
+                return ResultadoInsercion.DUPLICADO;
+            }
+
+            cliente.setId(filas.getJSONObject(0).getInt("id"));
+            CACHE.guardar(cliente);
+            return ResultadoInsercion.CREADO;
+        } catch (Exception e) {
+            System.err.println("Error al insertar cliente: " + e.getMessage());
+        }
+        return ResultadoInsercion.ERROR;
+    }
+
+    /**
+     * Inserta el cliente o, si ya existe uno con el mismo DNI, actualiza sus datos
+     * @param cliente cliente a guardar
+     * @return true si se guardó correctamente
+     */
+    public boolean upsert(Cliente cliente) {
+        try {
+            if (!esValidoParaInsertar(cliente)) {
+                return false;
+            }
+
+            JSONArray filas = DatabaseConnection.upsert("clientes", aJson(cliente), "dni", false, "id");
+            if (filas.length() > 0) {
+                cliente.setId(filas.getJSONObject(0).getInt("id"));
+                CACHE.guardar(cliente);
+                return true;
+            }
+        } catch (Exception e) {
+            System.err.println("Error al guardar cliente: " + e.getMessage());
+        }
+        return false;
+    }
+
     /**
      * Busca un cliente por DNI
      * @param dni DNI del cliente
@@ -58,37 +124,161 @@ public class ClienteDAO {
                 return null;
             }
 
-            String filtro = "dni=eq." + DatabaseConnection.encode(dni);
-            JSONArray resultados = DatabaseConnection.get("clientes", filtro);
-
-            if (resultados.length() > 0) {
-                return mapearCliente(resultados.getJSONObject(0));
+            Cliente enCache = CACHE.obtenerPorClave(dni);
+            if (enCache != null) {
+                return enCache;
             }
+
+            return primerCliente(DatabaseConnection.get("clientes", "select=" + COLUMNAS + "&" + filtroDni(dni)));
         } catch (Exception e) {
             System.err.println("Error al buscar cliente: " + e.getMessage());
         }
         return null;
     }
 
+    /**
+     * Comprueba si existe un cliente con el DNI indicado pidiendo solo su id
+     * @param dni DNI del cliente
+     * @return true si existe
+     */
+    public boolean existeDni(String dni) {
+        try {
+            if (dni == null || dni.isEmpty()) {
+                return false;
+            }
+            if (CACHE.obtenerPorClave(dni) != null) {
+                return true;
+            }
+            return DatabaseConnection.existe("clientes", filtroDni(dni));
+        } catch (Exception e) {
+            System.err.println("Error al comprobar cliente: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Busca un cliente por DNI sin bloquear
+     * @param dni DNI del cliente
+     * @return futuro con el cliente encontrado o null
+     */
+    public CompletableFuture<Cliente> buscarPorDniAsync(String dni) {
+        if (dni == null || dni.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Cliente enCache = CACHE.obtenerPorClave(dni);
+        if (enCache != null) {
+            return CompletableFuture.completedFuture(enCache);
+        }
+
+        return DatabaseConnection.getAsync("clientes", "select=" + COLUMNAS + "&" + filtroDni(dni))
+                .thenApply(this::primerCliente)
+                .exceptionally(e -> {
+                    System.err.println("Error al buscar cliente: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Inserta varios clientes en una sola peticion POST con un array JSON (troceada
+     * en lotes). Los IDs devueltos se asignan a cada cliente en el mismo orden.
+     * @param clientes clientes a insertar
+     * @return resultado con los insertados y los fallidos con su motivo
+     */
+    public ResultadoLote<Cliente> insertarLote(List<Cliente> clientes) {
+        ResultadoLote<Cliente> resultado = InsercionPorLotes.insertar("clientes", clientes,
+                this::esValidoParaInsertar, this::aJson, Cliente::setId);
+        CACHE.guardarTodos(resultado.getInsertados());
+        return resultado;
+    }
+
+    /**
+     * Comprueba que un cliente tiene los datos obligatorios para insertarse
+     */
+    private boolean esValidoParaInsertar(Cliente cliente) {
+        return cliente != null && cliente.getNombre() != null &&
+                cliente.getApellidos() != null && cliente.getDni() != null &&
+                cliente.getFechaNacimiento() != null;
+    }
+
+    /**
+     * Convierte un cliente en el JSON de insercion
+     */
+    private JSONObject aJson(Cliente cliente) {
+        JSONObject datos = new JSONObject();
+        datos.put("nombre", cliente.getNombre());
+        datos.put("apellidos", cliente.getApellidos());
+        datos.put("dni", cliente.getDni());
+        datos.put("fecha_nacimiento", cliente.getFechaNacimiento().toString());
+        datos.put("activo", cliente.isActivo());
+        return datos;
+    }
+
     /**
      * Obtiene todos los clientes activos
      * @return lista de clientes activos
      */
     public List<Cliente> obtenerActivos() {
-        List<Cliente> clientes = new ArrayList<>();
         try {
-            String filtro = "activo=eq.true&order=nombre.asc";
-            JSONArray resultados = DatabaseConnection.get("clientes", filtro);
-
-            for (int i = 0; i < resultados.length(); i++) {
-                clientes.add(mapearCliente(resultados.getJSONObject(i)));
-            }
+            return descargarActivos();
         } catch (Exception e) {
             System.err.println("Error al obtener clientes: " + e.getMessage());
         }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Obtiene todos los clientes activos sin ocultar los errores, para quien debe
+     * distinguir una tabla vacia de una consulta fallida
+     * @return lista de clientes activos
+     * @throws Exception si falla la consulta
+     */
+    public List<Cliente> descargarActivos() throws Exception {
+        List<Cliente> clientes = DatabaseConnection.getLista("clientes", FILTRO_ACTIVOS, this::mapearCliente);
+        CACHE.guardarTodos(clientes);
         return clientes;
     }
 
+    /**
+     * Obtiene todos los clientes activos sin bloquear
+     * @return futuro con la lista de clientes activos
+     */
+    public CompletableFuture<List<Cliente>> obtenerActivosAsync() {
+        return DatabaseConnection.getAsync("clientes", FILTRO_ACTIVOS)
+                .thenApply(this::mapearClientes)
+                .exceptionally(e -> {
+                    System.err.println("Error al obtener clientes: " + e.getMessage());
+                    return new ArrayList<>();
+                });
+    }
+
+    /**
+     * Obtiene una pagina de clientes activos ordenados por nombre.
+     * Usa paginacion por cursor (keyset): la pagina siguiente empieza
+     * despues del ultimo cliente recibido, sin OFFSET.
+     * @param ultimo ultimo cliente de la pagina anterior, o null para la primera
+     * @param limite tamaño de pagina
+     * @return pagina de clientes
+     */
+    public Pagina<Cliente> obtenerActivosPagina(Cliente ultimo, int limite) {
+        try {
+            String filtro = "select=" + COLUMNAS + "&activo=eq.true&order=nombre.asc,id.asc";
+            if (ultimo != null) {
+                String nombre = DatabaseConnection.encodeValorLogico(ultimo.getNombre());
+                filtro += "&or=(nombre.gt." + nombre + ",and(nombre.eq." + nombre + ",id.gt." + ultimo.getId() + "))";
+            }
+
+            List<Cliente> filas = new ArrayList<>();
+            long total = DatabaseConnection.recorrerRango("clientes", filtro, 0, limite, ultimo == null,
+                    fila -> filas.add(mapearCliente(fila)));
+            CACHE.guardarTodos(filas);
+            return Pagina.de(filas, limite, total);
+        } catch (Exception e) {
+            System.err.println("Error al obtener pagina de clientes: " + e.getMessage());
+        }
+        return new Pagina<>(new ArrayList<>(), false, -1);
+    }
+
     /**
      * Actualiza un cliente existente
      * @param cliente cliente a actualizar
@@ -114,21 +304,52 @@ public class ClienteDAO {
             datos.put("activo", cliente.isActivo());
 
             String filtro = "id=eq." + cliente.getId();
-            JSONObject resultado = DatabaseConnection.patch("clientes", filtro, datos);
-
-            return resultado != null;
+            if (DatabaseConnection.patchMinimal("clientes", filtro, datos)) {
+                CACHE.guardar(cliente);
+                return true;
+            }
+            CACHE.invalidar(cliente.getId());
         } catch (Exception e) {
+            CACHE.invalidar(cliente.getId());
             System.err.println("Error al actualizar cliente: " + e.getMessage());
         }
         return false;
     }
 
+    private static String filtroDni(String dni) {
+        return "dni=eq." + DatabaseConnection.encode(dni);
+    }
+
+    /**
+     * Mapea el primer resultado de una busqueda y lo guarda en cache
+     */
+    private Cliente primerCliente(JSONArray resultados) {
+        if (resultados.length() == 0) {
+            return null;
+        }
+        Cliente encontrado = mapearCliente(resultados.getJSONObject(0));
+        CACHE.guardar(encontrado);
+        return encontrado;
+    }
+
+    /**
+     * Mapea una lista de resultados y la guarda en cache
+     */
+    private List<Cliente> mapearClientes(JSONArray resultados) {
+        List<Cliente> clientes = new ArrayList<>(resultados.length());
+        for (int i = 0; i < resultados.length(); i++) {
+            clientes.add(mapearCliente(resultados.getJSONObject(i)));
+        }
+        CACHE.guardarTodos(clientes);
+        return clientes;
+    }
+
     /**
      * Mapea un JSONObject a un objeto Cliente
      * @param json JSONObject con datos del cliente
      * @return objeto Cliente
      */
-    private Cliente mapearCliente(JSONObject json) {
+    Cliente mapearCliente(JSONObject json) {
         Cliente cliente = new Cliente();
         cliente.setId(json.getInt("id"));
         cliente.setNombre(json.getString("nombre"));
@@ -0,0 +1,501 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.ErrorHttp;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Escritura diferida (write-behind) de los alquileres nuevos.
+ *
+ * Al insertar, el alquiler se apunta en un diario local (una linea JSON por entrada, con
+ * force() antes de confirmar) y recibe un ID provisional negativo. Un hilo propio lo envia
+ * despues a Supabase en lotes y, cuando la BD lo acepta, le asigna el ID definitivo y lo
+ * marca como enviado en el diario. Al arrancar se reenvian las altas del diario sin marcar,
+ * asi que ni un corte de red ni un cierre inesperado pierden un alquiler ya confirmado.
+ *
+ * Los fallos transitorios se reintentan con una espera que se duplica hasta 30 s. Los POST van
+ * sin reintentos automaticos (PostgREST no los deduplica): si un envio falla sin saber si llego
+ * a la BD, antes de repetirlo se busca cada alquiler en la BD para no duplicarlo. Si la BD
+ * rechaza un alquiler (4xx) se descarta, se libera su reserva en el indice de disponibilidad
+ * y se avisa con el consumidor de setAlRechazar.
+ */
+public class EscrituraDiferidaAlquileres {
+
+    public static final String ARCHIVO = "alquileres-pendientes.diario";
+
+    private static final String TABLA = "alquileres";
+    private static final int TAMANO_LOTE = 100;
+    private static final Duration INTERVALO_ENVIO = Duration.ofMillis(100);
+    private static final Duration ESPERA_INICIAL = Duration.ofSeconds(1);
+    private static final Duration ESPERA_MAXIMA = Duration.ofSeconds(30);
+
+    /**
+     * Con altas pendientes el diario no se puede vaciar; pasado este tamaño se reescribe solo con ellas
+     */
+    private static final long TAMANO_COMPACTAR = 1024 * 1024;
+
+    private final Path ruta;
+    // true si solo se reenvian las altas del diario y las nuevas se insertan sin diferir
+    private final boolean soloReenvio;
+    private final Map<String, Entrada> pendientes = new LinkedHashMap<>();
+    private final Object enviando = new Object();
+    private final ScheduledExecutorService envio;
+
+    private FileChannel diario;
+    private int siguienteProvisional = -1;
+    private boolean envioProgramado;
+    private long esperaMs;
+    private boolean cerrado;
+    private volatile BiConsumer<Alquiler, String> alRechazar = (alquiler, motivo) -> { };
+
+    /**
+     * Alta apuntada en el diario y aun sin ID definitivo
+     */
+    private static final class Entrada {
+        private final String clave;
+        private final int provisional;
+        private final Alquiler alquiler;
+        private final JSONObject fila;
+        // true si un envio fallo sin saber si la fila llego a insertarse
+        private boolean dudosa;
+
+        private Entrada(String clave, int provisional, Alquiler alquiler, JSONObject fila) {
+            this.clave = clave;
+            this.provisional = provisional;
+            this.alquiler = alquiler;
+            this.fila = fila;
+        }
+    }
+
+    /**
+     * Abre el diario y programa el envio de las altas que quedaron pendientes
+     * @param ruta archivo del diario
+     */
+    EscrituraDiferidaAlquileres(Path ruta) throws IOException {
+        this(ruta, false);
+    }
+
+    /**
+     * @param soloReenvio si es true no se aceptan altas nuevas: solo se envian las del diario
+     */
+    EscrituraDiferidaAlquileres(Path ruta, boolean soloReenvio) throws IOException {
+        this.ruta = ruta;
+        this.soloReenvio = soloReenvio;
+        envio = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "envio-alquileres");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        List<Alquiler> recuperados = new ArrayList<>();
+        synchronized (this) {
+            for (Entrada entrada : leerDiario(ruta)) {
+                pendientes.put(entrada.clave, entrada);
+                siguienteProvisional = Math.min(siguienteProvisional, entrada.provisional - 1);
+                recuperados.add(entrada.alquiler);
+            }
+            reescribir();
+            if (!pendientes.isEmpty()) {
+                System.out.println("Reenviando " + pendientes.size() + " alquileres pendientes del diario");
+                programarEnvio(0);
+            }
+        }
+        AlquilerDAO.getIndice().retener(recuperados);
+    }
+
+    /**
+     * @return true si el diario existe y tiene entradas
+     */
+    public static boolean tienePendientes(Path ruta) {
+        try {
+            return Files.isRegularFile(ruta) && Files.size(ruta) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Indica que hacer cuando la BD rechaza un alquiler ya confirmado
+     * @param alRechazar recibe el alquiler (ya liberado en el indice) y el motivo; se llama desde el hilo de envio
+     */
+    public void setAlRechazar(BiConsumer<Alquiler, String> alRechazar) {
+        this.alRechazar = alRechazar != null ? alRechazar : (alquiler, motivo) -> { };
+    }
+
+    /**
+     * Apunta un alquiler en el diario y le asigna un ID provisional negativo
+     * @param alquiler alquiler valido y ya reservado en el indice
+     * @return false si no se pudo escribir en el diario o solo se reenvia lo pendiente
+     *         (el alquiler no queda apuntado)
+     */
+    synchronized boolean encolar(Alquiler alquiler) {
+        if (cerrado || soloReenvio) {
+            return false;
+        }
+        Entrada entrada = new Entrada(UUID.randomUUID().toString(), siguienteProvisional, alquiler,
+                AlquilerDAO.aJson(alquiler));
+        try {
+            escribir(alta(entrada));
+            diario.force(false);
+        } catch (IOException e) {
+            System.err.println("Error al escribir el diario de alquileres: " + e.getMessage());
+            return false;
+        }
+        siguienteProvisional--;
+        alquiler.setId(entrada.provisional);
+        pendientes.put(entrada.clave, entrada);
+        programarEnvio(INTERVALO_ENVIO.toMillis());
+        return true;
+    }
+
+    /**
+     * @return alquileres apuntados y aun no aceptados por la BD, del mas antiguo al mas reciente
+     */
+    public synchronized List<Alquiler> getPendientes() {
+        List<Alquiler> alquileres = new ArrayList<>();
+        for (Entrada entrada : pendientes.values()) {
+            alquileres.add(entrada.alquiler);
+        }
+        return alquileres;
+    }
+
+    public synchronized int getNumeroPendientes() {
+        return pendientes.size();
+    }
+
+    /**
+     * Envia en el hilo actual todo lo pendiente
+     * @param plazo tiempo maximo; el lote en curso se termina aunque se supere
+     * @return true si no queda nada pendiente; false si hubo un fallo transitorio o se agoto el plazo
+     */
+    public boolean vaciar(Duration plazo) {
+        long limite = System.nanoTime() + plazo.toNanos();
+        synchronized (enviando) {
+            while (getNumeroPendientes() > 0) {
+                if (System.nanoTime() > limite || !enviarLote()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deja de aceptar alquileres, intenta enviar lo pendiente y cierra el diario.
+     * Lo que no se pueda enviar sigue en el diario y se reenvia la proxima vez que se abra.
+     * @param plazo tiempo maximo para enviar lo pendiente
+     */
+    public void cerrar(Duration plazo) {
+        synchronized (this) {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+        }
+        if (!vaciar(plazo)) {
+            System.err.println("Quedan " + getNumeroPendientes() + " alquileres sin enviar; se reenviaran al volver a abrir");
+        }
+        envio.shutdownNow();
+        try {
+            envio.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                diario.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el diario de alquileres: " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void programarEnvio(long retrasoMs) {
+        if (!envioProgramado && !cerrado) {
+            envioProgramado = true;
+            envio.schedule(this::envioProgramado, retrasoMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void envioProgramado() {
+        synchronized (this) {
+            envioProgramado = false;
+        }
+        boolean correcto = true;
+        synchronized (enviando) {
+            while (correcto && getNumeroPendientes() > 0) {
+                correcto = enviarLote();
+            }
+        }
+        synchronized (this) {
+            if (correcto) {
+                esperaMs = 0;
+            } else {
+                esperaMs = Math.min(ESPERA_MAXIMA.toMillis(), Math.max(ESPERA_INICIAL.toMillis(), esperaMs * 2));
+                programarEnvio(esperaMs);
+            }
+        }
+    }
+
+    /**
+     * Envia hasta TAMANO_LOTE altas pendientes en una sola peticion
+     * @return false si hay que esperar antes de volver a intentarlo
+     */
+    private boolean enviarLote() {
+        List<Entrada> lote = new ArrayList<>();
+        synchronized (this) {
+            for (Entrada entrada : pendientes.values()) {
+                if (lote.size() == TAMANO_LOTE) {
+                    break;
+                }
+                lote.add(entrada);
+            }
+        }
+
+        List<Entrada> aEnviar = new ArrayList<>();
+        for (Entrada entrada : lote) {
+            if (entrada.dudosa) {
+                try {
+                    Integer id = buscarInsertado(entrada.fila);
+                    if (id != null) {
+                        confirmar(entrada, id);
+                        continue;
+                    }
+                    entrada.dudosa = false;
+                } catch (Exception e) {
+                    System.err.println("Error al comprobar alquileres pendientes: " + e.getMessage());
+                    return false;
+                }
+            }
+            aEnviar.add(entrada);
+        }
+        if (aEnviar.isEmpty()) {
+            return true;
+        }
+
+        JSONArray filas = new JSONArray();
+        for (Entrada entrada : aEnviar) {
+            filas.put(entrada.fila);
+        }
+        try {
+            JSONArray ids = DatabaseConnection.postLote(TABLA, filas, "id");
+            if (ids.length() != aEnviar.size()) {
+                throw new IllegalStateException("Se esperaban " + aEnviar.size() + " filas y se recibieron " + ids.length());
+            }
+            for (int i = 0; i < aEnviar.size(); i++) {
+                confirmar(aEnviar.get(i), ids.getJSONObject(i).getInt("id"));
+            }
+            return true;
+        } catch (ErrorHttp e) {
+            if (!e.esTransitorio()) {
+                // PostgREST deshace el lote entero: se envian una a una para descartar solo las rechazadas
+                return enviarUnaAUna(aEnviar);
+            }
+            System.err.println("Error al enviar alquileres pendientes: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Error al enviar alquileres pendientes: " + e.getMessage());
+        }
+        marcarDudosas(aEnviar);
+        return false;
+    }
+
+    private boolean enviarUnaAUna(List<Entrada> entradas) {
+        for (Entrada entrada : entradas) {
+            try {
+                JSONObject fila = DatabaseConnection.post(TABLA, entrada.fila, "id");
+                if (fila == null || !fila.has("id")) {
+                    throw new IllegalStateException("Respuesta sin ID");
+                }
+                confirmar(entrada, fila.getInt("id"));
+            } catch (ErrorHttp e) {
+                if (e.esTransitorio()) {
+                    System.err.println("Error al enviar alquiler pendiente: " + e.getMessage());
+                    entrada.dudosa = true;
+                    return false;
+                }
+                rechazar(entrada, e.getMessage());
+            } catch (Exception e) {
+                System.err.println("Error al enviar alquiler pendiente: " + e.getMessage());
+                entrada.dudosa = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void marcarDudosas(List<Entrada> entradas) {
+        for (Entrada entrada : entradas) {
+            entrada.dudosa = true;
+        }
+    }
+
+    /**
+     * Busca en la BD una fila identica a la que se envio. El indice de disponibilidad impide
+     * dos alquileres del mismo vehiculo en fechas que solapan, asi que si existe es esta.
+     * @return ID de la fila, o null si no llego a insertarse
+     */
+    private static Integer buscarInsertado(JSONObject fila) throws Exception {
+        JSONArray encontradas = DatabaseConnection.get(TABLA, "select=id"
+                + "&cliente_id=eq." + fila.getInt("cliente_id")
+                + "&vehiculo_id=eq." + fila.getInt("vehiculo_id")
+                + "&fecha_inicio=eq." + fila.getString("fecha_inicio")
+                + "&fecha_fin=eq." + fila.getString("fecha_fin")
+                + "&limit=1");
+        return encontradas.length() == 0 ? null : encontradas.getJSONObject(0).getInt("id");
+    }
+
+    private synchronized void confirmar(Entrada entrada, int id) {
+        entrada.alquiler.setId(id);
+        AlquilerDAO.getIndice().confirmar(entrada.alquiler);
+        terminar(entrada, new JSONObject().put("tipo", "fin").put("clave", entrada.clave).put("id", id));
+    }
+
+    private void rechazar(Entrada entrada, String motivo) {
+        System.err.println("La BD ha rechazado un alquiler ya confirmado: " + motivo);
+        synchronized (this) {
+            AlquilerDAO.getIndice().liberar(entrada.alquiler);
+            terminar(entrada, new JSONObject().put("tipo", "fin").put("clave", entrada.clave).put("error", motivo));
+        }
+        alRechazar.accept(entrada.alquiler, motivo);
+    }
+
+    /**
+     * Quita una entrada de las pendientes y lo apunta en el diario. No se fuerza a disco:
+     * si se pierde, al reabrir la entrada se comprueba en la BD antes de reenviarla.
+     */
+    private void terminar(Entrada entrada, JSONObject fin) {
+        pendientes.remove(entrada.clave);
+        try {
+            if (pendientes.isEmpty()) {
+                diario.truncate(0);
+            } else if (diario.size() > TAMANO_COMPACTAR) {
+                reescribir();
+            } else {
+                escribir(fin);
+            }
+        } catch (IOException e) {
+            System.err.println("Error al escribir el diario de alquileres: " + e.getMessage());
+        }
+    }
+
+    private void escribir(JSONObject entrada) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((entrada + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            diario.write(buffer);
+        }
+    }
+
+    private static JSONObject alta(Entrada entrada) {
+        return new JSONObject()
+                .put("tipo", "alta")
+                .put("clave", entrada.clave)
+                .put("provisional", entrada.provisional)
+                .put("fila", entrada.fila);
+    }
+
+    /**
+     * Sustituye el diario por uno con solo las altas pendientes, a traves de un temporal
+     * para no dejar nunca un diario a medias
+     */
+    private void reescribir() throws IOException {
+        if (diario != null) {
+            diario.close();
+        }
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        try (BufferedWriter salida = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            for (Entrada entrada : pendientes.values()) {
+                salida.write(alta(entrada).toString());
+                salida.newLine();
+            }
+        }
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+        Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        diario = FileChannel.open(ruta, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Lee las altas del diario que no tienen su linea de fin.
+     * Una ultima linea cortada por un cierre inesperado se ignora: su alta nunca se confirmo.
+     */
+    private static List<Entrada> leerDiario(Path ruta) throws IOException {
+        Map<String, Entrada> altas = new LinkedHashMap<>();
+        if (!Files.isRegularFile(ruta)) {
+            return new ArrayList<>();
+        }
+        for (String linea : Files.readAllLines(ruta, StandardCharsets.UTF_8)) {
+            if (linea.isBlank()) {
+                continue;
+            }
+            try {
+                JSONObject json = new JSONObject(linea);
+                String clave = json.getString("clave");
+                if ("alta".equals(json.getString("tipo"))) {
+                    Entrada entrada = new Entrada(clave, json.getInt("provisional"),
+                            recuperarAlquiler(json.getInt("provisional"), json.getJSONObject("fila")),
+                            json.getJSONObject("fila"));
+                    // Tras un cierre inesperado no se sabe si la BD llego a recibirla
+                    entrada.dudosa = true;
+                    altas.put(clave, entrada);
+                } else {
+                    altas.remove(clave);
+                }
+            } catch (Exception e) {
+                System.err.println("Linea del diario de alquileres ilegible, se ignora: " + e.getMessage());
+            }
+        }
+        return new ArrayList<>(altas.values());
+    }
+
+    /**
+     * Reconstruye el alquiler de un alta, con el cliente y el vehiculo de la cache si estan.
+     * Si no, quedan solo con su ID hasta que AlquilerDAO los complete al mostrarlos.
+     */
+    private static Alquiler recuperarAlquiler(int provisional, JSONObject fila) {
+        Cliente cliente = ClienteDAO.getCache().obtenerPorId(fila.getInt("cliente_id"));
+        if (cliente == null) {
+            cliente = new Cliente();
+            cliente.setId(fila.getInt("cliente_id"));
+        }
+        Vehiculo vehiculo = VehiculoDAO.getCache().obtenerPorId(fila.getInt("vehiculo_id"));
+        if (vehiculo == null) {
+            vehiculo = new Vehiculo();
+            vehiculo.setId(fila.getInt("vehiculo_id"));
+        }
+
+        Alquiler alquiler = new Alquiler();
+        alquiler.setId(provisional);
+        alquiler.setCliente(cliente);
+        alquiler.setVehiculo(vehiculo);
+        alquiler.setFechaInicio(LocalDate.parse(fila.getString("fecha_inicio")));
+        alquiler.setFechaFin(LocalDate.parse(fila.getString("fecha_fin")));
+        alquiler.setActivo(fila.getBoolean("activo"));
+        return alquiler;
+    }
+}
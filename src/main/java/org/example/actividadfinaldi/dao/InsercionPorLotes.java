@@ -0,0 +1,116 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.ErrorHttp;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Insercion de varias filas por peticion POST con un array JSON, comun a todos los DAO
+ */
+final class InsercionPorLotes {
+
+    /**
+     * Filas por peticion POST
+     */
+    static final int TAMANO_LOTE = 500;
+
+    private InsercionPorLotes() {
+    }
+
+    /**
+     * Inserta las entidades en lotes de TAMANO_LOTE filas.
+     * PostgREST inserta cada lote en una transaccion: si la BD rechaza un lote (4xx) se
+     * reintenta fila a fila para aislar las filas erroneas y conocer su motivo. Si falla sin
+     * saber si llego a insertarse (red, tiempo agotado, 5xx) no se repite, porque podria
+     * duplicar filas: sus entidades se devuelven como fallidas con resultado incierto.
+     * @param tabla tabla destino
+     * @param entidades entidades a insertar
+     * @param esValida validacion previa de cada entidad
+     * @param aJson conversion de cada entidad
+     * @param asignarId asigna el ID devuelto a la entidad
+     * @return resultado con insertados y fallidos
+     */
+    static <T> ResultadoLote<T> insertar(String tabla, List<T> entidades, Predicate<T> esValida,
+                                         Function<T, JSONObject> aJson, BiConsumer<T, Integer> asignarId) {
+        ResultadoLote<T> resultado = new ResultadoLote<>();
+        List<T> validas = new ArrayList<>();
+        for (T entidad : entidades) {
+            if (esValida.test(entidad)) {
+                validas.add(entidad);
+            } else {
+                resultado.anadirFallido(entidad, "Datos obligatorios incompletos");
+            }
+        }
+
+        for (int desde = 0; desde < validas.size(); desde += TAMANO_LOTE) {
+            List<T> lote = validas.subList(desde, Math.min(desde + TAMANO_LOTE, validas.size()));
+            JSONArray datos = new JSONArray();
+            for (T entidad : lote) {
+                datos.put(aJson.apply(entidad));
+            }
+
+            try {
+                JSONArray filas = DatabaseConnection.postLote(tabla, datos, "id");
+                if (filas.length() != lote.size()) {
+                    anadirFallidos(lote, resultado, "Resultado incierto: se esperaban " + lote.size()
+                            + " filas y se recibieron " + filas.length());
+                    continue;
+                }
+                for (int i = 0; i < lote.size(); i++) {
+                    asignarId.accept(lote.get(i), filas.getJSONObject(i).getInt("id"));
+                    resultado.anadirInsertado(lote.get(i));
+                }
+            } catch (ErrorHttp e) {
+                System.err.println("Error al insertar lote en " + tabla + ": " + e.getMessage());
+                if (e.esTransitorio()) {
+                    anadirFallidos(lote, resultado, motivo(e));
+                } else {
+                    insertarFilaAFila(tabla, lote, aJson, asignarId, resultado);
+                }
+            } catch (Exception e) {
+                System.err.println("Error al insertar lote en " + tabla + ": " + e.getMessage());
+                anadirFallidos(lote, resultado, "Resultado incierto: " + e.getMessage());
+            }
+        }
+        return resultado;
+    }
+
+    private static <T> void insertarFilaAFila(String tabla, List<T> lote, Function<T, JSONObject> aJson,
+                                              BiConsumer<T, Integer> asignarId, ResultadoLote<T> resultado) {
+        for (T entidad : lote) {
+            try {
+                JSONObject fila = DatabaseConnection.post(tabla, aJson.apply(entidad), "id");
+                if (fila != null && fila.has("id")) {
+                    asignarId.accept(entidad, fila.getInt("id"));
+                    resultado.anadirInsertado(entidad);
+                } else {
+                    resultado.anadirFallido(entidad, "Respuesta sin ID");
+                }
+            } catch (ErrorHttp e) {
+                resultado.anadirFallido(entidad, motivo(e));
+            } catch (Exception e) {
+                resultado.anadirFallido(entidad, "Resultado incierto: " + e.getMessage());
+            }
+        }
+    }
+
+    private static <T> void anadirFallidos(List<T> lote, ResultadoLote<T> resultado, String motivo) {
+        for (T entidad : lote) {
+            resultado.anadirFallido(entidad, motivo);
+        }
+    }
+
+    /**
+     * Con un 4xx la BD no inserto nada; con un 5xx no se sabe
+     */
+    private static String motivo(ErrorHttp e) {
+        return e.getEstado() < 500 ? e.getMessage() : "Resultado incierto: " + e.getMessage();
+    }
+}
@@ -0,0 +1,10 @@
+package org.example.actividadfinaldi.dao;
+
+/**
+ * Resultado de insertar una entidad con clave unica si no existe
+ */
+public enum ResultadoInsercion {
+    CREADO,
+    DUPLICADO,
+    ERROR
+}
@@ -0,0 +1,61 @@
+package org.example.actividadfinaldi.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de una insercion por lotes: entidades insertadas y fallidas con su motivo
+ */
+public class ResultadoLote<T> {
+
+    private final List<T> insertados = new ArrayList<>();
+    private final Map<T, String> fallidos = new IdentityHashMap<>();
+    private final List<T> ordenFallidos = new ArrayList<>();
+
+    void anadirInsertado(T entidad) {
+        insertados.add(entidad);
+    }
+
+    void anadirFallido(T entidad, String motivo) {
+        if (fallidos.put(entidad, motivo) == null) {
+            ordenFallidos.add(entidad);
+        }
+    }
+
+    /**
+     * @return entidades insertadas, ya con su ID asignado
+     */
+    public List<T> getInsertados() {
+        return Collections.unmodifiableList(insertados);
+    }
+
+    /**
+     * @return entidades que no se pudieron insertar, en el orden de entrada
+     */
+    public List<T> getFallidos() {
+        return Collections.unmodifiableList(ordenFallidos);
+    }
+
+    /**
+     * @param entidad entidad fallida
+     * @return motivo del fallo o null si la entidad no fallo
+     */
+    public String getMotivo(T entidad) {
+        return fallidos.get(entidad);
+    }
+
+    /**
+     * @return true si todas las entidades se insertaron
+     */
+    public boolean esCompleto() {
+        return ordenFallidos.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote[insertados=" + insertados.size() + ", fallidos=" + ordenFallidos.size() + "]";
+    }
+}
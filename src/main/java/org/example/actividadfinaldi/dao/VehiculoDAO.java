@@ -3,18 +3,43 @@ package org.example.actividadfinaldi.dao;
 import org.example.actividadfinaldi.model.TipoVehiculo;
 import org.example.actividadfinaldi.model.Vehiculo;
 import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.EntityCache;
+import org.example.actividadfinaldi.util.Pagina;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * DAO para operaciones CRUD de Vehiculo usando Supabase REST API
  */
 public class VehiculoDAO {
 
+    /**
+     * Cache compartida de vehiculos por ID y matricula
+     */
+    private static final EntityCache<Vehiculo> CACHE =
+            new EntityCache<>(1000, Duration.ofMinutes(5), Vehiculo::getId, Vehiculo::getMatricula);
+
+    /**
+     * Columnas que usa mapearVehiculo; se piden solo estas en lugar de select=*
+     */
+    static final String COLUMNAS = "id,matricula,poliza_seguro,tipo,fecha_matriculacion,activo";
+
+    private static final String FILTRO_ACTIVOS = "select=" + COLUMNAS + "&activo=eq.true&order=matricula.asc";
+
+    /**
+     * Devuelve la cache compartida de vehiculos
+     * @return cache de vehiculos
+     */
+    public static EntityCache<Vehiculo> getCache() {
+        return CACHE;
+    }
+
     /**
      * Inserta un nuevo vehiculo en la BD
      * @param vehiculo vehiculo a insertar
@@ -23,23 +48,15 @@ public class VehiculoDAO {
     public boolean insertar(Vehiculo vehiculo) {
         try {
             // Validación de datos antes de insertar
-            if (vehiculo == null || vehiculo.getMatricula() == null ||
-                    vehiculo.getPolizaSeguro() == null || vehiculo.getTipo() == null ||
-                    vehiculo.getFechaMatriculacion() == null) {
+            if (!esValidoParaInsertar(vehiculo)) {
                 return false;
             }
 
-            JSONObject datos = new JSONObject();
-            datos.put("matricula", vehiculo.getMatricula());
-            datos.put("poliza_seguro", vehiculo.getPolizaSeguro());
-            datos.put("tipo", vehiculo.getTipo().name());
-            datos.put("fecha_matriculacion", vehiculo.getFechaMatriculacion().toString());
-            datos.put("activo", vehiculo.isActivo());
-
-            JSONObject resultado = DatabaseConnection.post("vehiculos", datos);
+            JSONObject resultado = DatabaseConnection.post("vehiculos", aJson(vehiculo), "id");
 
             if (resultado != null && resultado.has("id")) {
                 vehiculo.setId(resultado.getInt("id"));
+                recordar(vehiculo);
                 return true;
             }
         } catch (Exception e) {
@@ -48,6 +65,55 @@ public class VehiculoDAO {
         return false;
     }
 
+    /**
+     * Inserta un vehiculo solo si no existe otro con la misma matricula.
+     * Una sola peticion: la unicidad la garantiza la base de datos (on_conflict).
+     * @param vehiculo vehiculo a insertar
+     * @return CREADO, DUPLICADO si ya existia o ERROR
+     */
+    public ResultadoInsercion insertarSiNoExiste(Vehiculo vehiculo) {
+        try {
+            if (!esValidoParaInsertar(vehiculo)) {
+                return ResultadoInsercion.ERROR;
+            }
+
+            JSONArray filas = DatabaseConnection.upsert("vehiculos", aJson(vehiculo), "matricula", true, "id");
+            if (filas.length() == 0) {
+                return ResultadoInsercion.DUPLICADO;
+            }
+
+            vehiculo.setId(filas.getJSONObject(0).getInt("id"));
+            recordar(vehiculo);
+            return ResultadoInsercion.CREADO;
+        } catch (Exception e) {
+            System.err.println("Error al insertar vehículo: " + e.getMessage());
+        }
+        return ResultadoInsercion.ERROR;
+    }
+
+    /**
+     * Inserta el vehiculo o, si ya existe uno con la misma matricula, actualiza sus datos
+     * @param vehiculo vehiculo a guardar
+     * @return true si se guardó correctamente
+     */
+    public boolean upsert(Vehiculo vehiculo) {
+        try {
+            if (!esValidoParaInsertar(vehiculo)) {
+                return false;
+            }
+
+            JSONArray filas = DatabaseConnection.upsert("vehiculos", aJson(vehiculo), "matricula", false, "id");
+            if (filas.length() > 0) {
+                vehiculo.setId(filas.getJSONObject(0).getInt("id"));
+                recordar(vehiculo);
+                return true;
+            }
+        } catch (Exception e) {
+            System.err.println("Error al guardar vehículo: " + e.getMessage());
+        }
+        return false;
+    }
+
     /**
      * Busca un vehiculo por matricula
      * @param matricula matricula del vehiculo
@@ -59,59 +125,194 @@ public class VehiculoDAO {
                 return null;
             }
 
-            String filtro = "matricula=eq." + DatabaseConnection.encode(matricula);
-            JSONArray resultados = DatabaseConnection.get("vehiculos", filtro);
-
-            if (resultados.length() > 0) {
-                return mapearVehiculo(resultados.getJSONObject(0));
+            Vehiculo enCache = CACHE.obtenerPorClave(matricula);
+            if (enCache != null) {
+                return enCache;
             }
+
+            return primerVehiculo(DatabaseConnection.get("vehiculos", "select=" + COLUMNAS + "&" + filtroMatricula(matricula)));
         } catch (Exception e) {
             System.err.println("Error al buscar vehículo: " + e.getMessage());
         }
         return null;
     }
 
+    /**
+     * Comprueba si existe un vehiculo con la matricula indicada pidiendo solo su id
+     * @param matricula matricula del vehiculo
+     * @return true si existe
+     */
+    public boolean existeMatricula(String matricula) {
+        try {
+            if (matricula == null || matricula.isEmpty()) {
+                return false;
+            }
+            if (CACHE.obtenerPorClave(matricula) != null) {
+                return true;
+            }
+            return DatabaseConnection.existe("vehiculos", filtroMatricula(matricula));
+        } catch (Exception e) {
+            System.err.println("Error al comprobar vehículo: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Busca un vehiculo por matricula sin bloquear
+     * @param matricula matricula del vehiculo
+     * @return futuro con el vehiculo encontrado o null
+     */
+    public CompletableFuture<Vehiculo> buscarPorMatriculaAsync(String matricula) {
+        if (matricula == null || matricula.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Vehiculo enCache = CACHE.obtenerPorClave(matricula);
+        if (enCache != null) {
+            return CompletableFuture.completedFuture(enCache);
+        }
+
+        return DatabaseConnection.getAsync("vehiculos", "select=" + COLUMNAS + "&" + filtroMatricula(matricula))
+                .thenApply(this::primerVehiculo)
+                .exceptionally(e -> {
+                    System.err.println("Error al buscar vehículo: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Inserta varios vehiculos en una sola peticion POST con un array JSON (troceada
+     * en lotes). Los IDs devueltos se asignan a cada vehiculo en el mismo orden.
+     * @param vehiculos vehiculos a insertar
+     * @return resultado con los insertados y los fallidos con su motivo
+     */
+    public ResultadoLote<Vehiculo> insertarLote(List<Vehiculo> vehiculos) {
+        ResultadoLote<Vehiculo> resultado = InsercionPorLotes.insertar("vehiculos", vehiculos,
+                this::esValidoParaInsertar, this::aJson, Vehiculo::setId);
+        recordarTodos(resultado.getInsertados());
+        return resultado;
+    }
+
+    /**
+     * Comprueba que un vehiculo tiene los datos obligatorios para insertarse
+     */
+    private boolean esValidoParaInsertar(Vehiculo vehiculo) {
+        return vehiculo != null && vehiculo.getMatricula() != null &&
+                vehiculo.getPolizaSeguro() != null && vehiculo.getTipo() != null &&
+                vehiculo.getFechaMatriculacion() != null;
+    }
+
+    /**
+     * Convierte un vehiculo en el JSON de insercion
+     */
+    private JSONObject aJson(Vehiculo vehiculo) {
+        JSONObject datos = new JSONObject();
+        datos.put("matricula", vehiculo.getMatricula());
+        datos.put("poliza_seguro", vehiculo.getPolizaSeguro());
+        datos.put("tipo", vehiculo.getTipo().name());
+        datos.put("fecha_matriculacion", vehiculo.getFechaMatriculacion().toString());
+        datos.put("activo", vehiculo.isActivo());
+        return datos;
+    }
+
     /**
      * Obtiene todos los vehiculos activos
      * @return lista de vehiculos activos
      */
     public List<Vehiculo> obtenerActivos() {
-        List<Vehiculo> vehiculos = new ArrayList<>();
         try {
-            String filtro = "activo=eq.true&order=matricula.asc";
-            JSONArray resultados = DatabaseConnection.get("vehiculos", filtro);
-
-            for (int i = 0; i < resultados.length(); i++) {
-                vehiculos.add(mapearVehiculo(resultados.getJSONObject(i)));
-            }
+            return descargarActivos();
         } catch (Exception e) {
             System.err.println("Error al obtener vehículos: " + e.getMessage());
         }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Obtiene todos los vehiculos activos sin ocultar los errores
+     * @return lista de vehiculos activos
+     * @throws Exception si falla la consulta
+     */
+    public List<Vehiculo> descargarActivos() throws Exception {
+        List<Vehiculo> vehiculos = DatabaseConnection.getLista("vehiculos", FILTRO_ACTIVOS, this::mapearVehiculo);
+        recordarTodos(vehiculos);
         return vehiculos;
     }
 
+    /**
+     * Obtiene todos los vehiculos activos sin bloquear
+     * @return futuro con la lista de vehiculos activos
+     */
+    public CompletableFuture<List<Vehiculo>> obtenerActivosAsync() {
+        return DatabaseConnection.getAsync("vehiculos", FILTRO_ACTIVOS)
+                .thenApply(this::mapearVehiculos)
+                .exceptionally(e -> {
+                    System.err.println("Error al obtener vehículos: " + e.getMessage());
+                    return new ArrayList<>();
+                });
+    }
+
+    /**
+     * Obtiene una pagina de vehiculos activos ordenados por matricula.
+     * Usa paginacion por cursor (keyset) sobre la matricula, que es unica.
+     * @param ultimo ultimo vehiculo de la pagina anterior, o null para la primera
+     * @param limite tamaño de pagina
+     * @return pagina de vehiculos
+     */
+    public Pagina<Vehiculo> obtenerActivosPagina(Vehiculo ultimo, int limite) {
+        try {
+            String filtro = FILTRO_ACTIVOS;
+            if (ultimo != null) {
+                filtro += "&matricula=gt." + DatabaseConnection.encode(ultimo.getMatricula());
+            }
+
+            List<Vehiculo> filas = new ArrayList<>();
+            long total = DatabaseConnection.recorrerRango("vehiculos", filtro, 0, limite, ultimo == null,
+                    fila -> filas.add(mapearVehiculo(fila)));
+            recordarTodos(filas);
+            return Pagina.de(filas, limite, total);
+        } catch (Exception e) {
+            System.err.println("Error al obtener pagina de vehículos: " + e.getMessage());
+        }
+        return new Pagina<>(new ArrayList<>(), false, -1);
+    }
+
     /**
      * Obtiene vehiculos activos filtrados por tipo
      * @param tipo tipo de vehiculo
      * @return lista de vehiculos del tipo especificado
      */
     public List<Vehiculo> obtenerPorTipo(TipoVehiculo tipo) {
-        List<Vehiculo> vehiculos = new ArrayList<>();
         try {
             if (tipo == null) {
-                return vehiculos;
+                return new ArrayList<>();
             }
 
-            String filtro = "activo=eq.true&tipo=eq." + tipo.name() + "&order=matricula.asc";
-            JSONArray resultados = DatabaseConnection.get("vehiculos", filtro);
-
-            for (int i = 0; i < resultados.length(); i++) {
-                vehiculos.add(mapearVehiculo(resultados.getJSONObject(i)));
-            }
+            List<Vehiculo> vehiculos = DatabaseConnection.getLista("vehiculos", filtroTipo(tipo), this::mapearVehiculo);
+            recordarTodos(vehiculos);
+            return vehiculos;
         } catch (Exception e) {
             System.err.println("Error al obtener vehículos por tipo: " + e.getMessage());
         }
-        return vehiculos;
+        return new ArrayList<>();
+    }
+
+    /**
+     * Obtiene vehiculos activos filtrados por tipo sin bloquear
+     * @param tipo tipo de vehiculo
+     * @return futuro con la lista de vehiculos del tipo especificado
+     */
+    public CompletableFuture<List<Vehiculo>> obtenerPorTipoAsync(TipoVehiculo tipo) {
+        if (tipo == null) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        return DatabaseConnection.getAsync("vehiculos", filtroTipo(tipo))
+                .thenApply(this::mapearVehiculos)
+                .exceptionally(e -> {
+                    System.err.println("Error al obtener vehículos por tipo: " + e.getMessage());
+                    return new ArrayList<>();
+                });
     }
 
     /**
@@ -139,21 +340,69 @@ public class VehiculoDAO {
             datos.put("activo", vehiculo.isActivo());
 
             String filtro = "id=eq." + vehiculo.getId();
-            JSONObject resultado = DatabaseConnection.patch("vehiculos", filtro, datos);
-
-            return resultado != null;
+            if (DatabaseConnection.patchMinimal("vehiculos", filtro, datos)) {
+                recordar(vehiculo);
+                return true;
+            }
+            CACHE.invalidar(vehiculo.getId());
         } catch (Exception e) {
+            CACHE.invalidar(vehiculo.getId());
             System.err.println("Error al actualizar vehículo: " + e.getMessage());
         }
         return false;
     }
 
+    private static String filtroMatricula(String matricula) {
+        return "matricula=eq." + DatabaseConnection.encode(matricula);
+    }
+
+    private static String filtroTipo(TipoVehiculo tipo) {
+        return "select=" + COLUMNAS + "&activo=eq.true&tipo=eq." + tipo.name() + "&order=matricula.asc";
+    }
+
+    /**
+     * Mapea el primer resultado de una busqueda y lo guarda en cache
+     */
+    private Vehiculo primerVehiculo(JSONArray resultados) {
+        if (resultados.length() == 0) {
+            return null;
+        }
+        Vehiculo encontrado = mapearVehiculo(resultados.getJSONObject(0));
+        recordar(encontrado);
+        return encontrado;
+    }
+
+    /**
+     * Mapea una lista de resultados y la guarda en cache
+     */
+    private List<Vehiculo> mapearVehiculos(JSONArray resultados) {
+        List<Vehiculo> vehiculos = new ArrayList<>(resultados.length());
+        for (int i = 0; i < resultados.length(); i++) {
+            vehiculos.add(mapearVehiculo(resultados.getJSONObject(i)));
+        }
+        recordarTodos(vehiculos);
+        return vehiculos;
+    }
+
+    /**
+     * Guarda el vehiculo en la cache y lo registra en el indice de disponibilidad
+     */
+    private static void recordar(Vehiculo vehiculo) {
+        CACHE.guardar(vehiculo);
+        AlquilerDAO.getIndice().registrarVehiculo(vehiculo);
+    }
+
+    private static void recordarTodos(List<Vehiculo> vehiculos) {
+        CACHE.guardarTodos(vehiculos);
+        AlquilerDAO.getIndice().registrarVehiculos(vehiculos);
+    }
+
     /**
      * Mapea un JSONObject a un objeto Vehiculo
      * @param json JSONObject con datos del vehiculo
      * @return objeto Vehiculo
      */
-    private Vehiculo mapearVehiculo(JSONObject json) {
+    Vehiculo mapearVehiculo(JSONObject json) {
         Vehiculo vehiculo = new Vehiculo();
         vehiculo.setId(json.getInt("id"));
         vehiculo.setMatricula(json.getString("matricula"));
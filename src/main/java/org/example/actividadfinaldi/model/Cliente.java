@@ -1,7 +1,6 @@
 package org.example.actividadfinaldi.model;
 
 import java.time.LocalDate;
-import java.time.Period;
 
 /**
  * Representa un cliente del sistema de alquiler
@@ -14,6 +13,12 @@ public class Cliente {
     private LocalDate fechaNacimiento;
     private boolean activo;
 
+    // Ultimo valor de getEdad() (32 bits bajos) y dia epoch en que se calculo (32 bits altos),
+    // juntos para que otro hilo nunca lea un valor con el dia de otro
+    private volatile long edadDelDia = SIN_CALCULAR;
+
+    private static final long SIN_CALCULAR = Long.MIN_VALUE;
+
     public Cliente() {
         this.activo = true;
     }
@@ -32,16 +37,23 @@ public class Cliente {
      */
     public boolean esMayorDe25() {
         if (fechaNacimiento == null) return false;
-        return Period.between(fechaNacimiento, LocalDate.now()).getYears() >= 25;
+        return getEdad() >= 25;
     }
 
     /**
-     * Calcula la edad del cliente
+     * Calcula la edad del cliente (una vez al dia, ver Reloj)
      * @return edad en años
      */
     public int getEdad() {
         if (fechaNacimiento == null) return 0;
-        return Period.between(fechaNacimiento, LocalDate.now()).getYears();
+        long cache = edadDelDia;
+        long hoy = Reloj.diaEpoch();
+        if (cache >> 32 == hoy) {
+            return (int) cache;
+        }
+        int edad = Reloj.aniosDesde(fechaNacimiento);
+        edadDelDia = hoy << 32 | (edad & 0xFFFFFFFFL);
+        return edad;
     }
 
     // Getters y Setters
@@ -83,6 +95,7 @@ public class Cliente {
 
     public void setFechaNacimiento(LocalDate fechaNacimiento) {
         this.fechaNacimiento = fechaNacimiento;
+        this.edadDelDia = SIN_CALCULAR;
     }
 
     public boolean isActivo() {
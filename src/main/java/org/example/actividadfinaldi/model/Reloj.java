@@ -0,0 +1,84 @@
+package org.example.actividadfinaldi.model;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.Period;
+
+/**
+ * Fecha de hoy para los calculos del modelo (edad, años de uso).
+ *
+ * El reloj se puede sustituir para fijar la fecha en los tests. La fecha se calcula una vez
+ * al dia: mientras el instante actual siga dentro del mismo dia solo se compara un long,
+ * sin consultar la zona horaria. Al cambiar de dia (o de reloj) se recalcula.
+ */
+public final class Reloj {
+
+    private static volatile Clock clock = Clock.systemDefaultZone();
+    private static volatile Dia dia;
+
+    /**
+     * Dia cacheado con los instantes en que empieza y termina
+     */
+    private record Dia(LocalDate fecha, long desdeMillis, long hastaMillis, Clock clock) {
+    }
+
+    private Reloj() {
+    }
+
+    /**
+     * Sustituye el reloj del modelo
+     * @param nuevoClock reloj a usar; null para volver al del sistema
+     */
+    public static void configurar(Clock nuevoClock) {
+        clock = nuevoClock != null ? nuevoClock : Clock.systemDefaultZone();
+        dia = null;
+    }
+
+    public static Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return fecha de hoy segun el reloj configurado
+     */
+    public static LocalDate hoy() {
+        return diaActual().fecha();
+    }
+
+    /**
+     * @return dia de hoy como dia epoch, para comparar rapido si un valor cacheado sigue valiendo
+     */
+    static long diaEpoch() {
+        return diaActual().fecha().toEpochDay();
+    }
+
+    /**
+     * Años cumplidos desde una fecha hasta hoy, como Period.between(fecha, hoy).getYears()
+     */
+    static int aniosDesde(LocalDate fecha) {
+        LocalDate hoy = hoy();
+        if (fecha.isAfter(hoy)) {
+            return Period.between(fecha, hoy).getYears();
+        }
+        int anios = hoy.getYear() - fecha.getYear();
+        return MonthDay.from(hoy).isBefore(MonthDay.from(fecha)) ? anios - 1 : anios;
+    }
+
+    private static Dia diaActual() {
+        Clock actual = clock;
+        long ahora = actual.millis();
+        Dia cacheado = dia;
+        if (cacheado != null && cacheado.clock() == actual
+                && ahora >= cacheado.desdeMillis() && ahora < cacheado.hastaMillis()) {
+            return cacheado;
+        }
+        LocalDate fecha = LocalDate.ofInstant(actual.instant(), actual.getZone());
+        Dia nuevo = new Dia(fecha,
+                fecha.atStartOfDay(actual.getZone()).toInstant().toEpochMilli(),
+                fecha.plusDays(1).atStartOfDay(actual.getZone()).toInstant().toEpochMilli(),
+                actual);
+        dia = nuevo;
+        return nuevo;
+    }
+}
@@ -1,7 +1,6 @@
 package org.example.actividadfinaldi.model;
 
 import java.time.LocalDate;
-import java.time.Period;
 
 /**
  * Representa un vehiculo del sistema de alquiler
@@ -14,6 +13,12 @@ public class Vehiculo {
     private LocalDate fechaMatriculacion;
     private boolean activo;
 
+    // Ultimo valor de getAniosUso() (32 bits bajos) y dia epoch en que se calculo (32 bits altos),
+    // juntos para que otro hilo nunca lea un valor con el dia de otro
+    private volatile long aniosUsoDelDia = SIN_CALCULAR;
+
+    private static final long SIN_CALCULAR = Long.MIN_VALUE;
+
     public Vehiculo() {
         this.activo = true;
     }
@@ -32,16 +37,23 @@ public class Vehiculo {
      */
     public boolean debeSerDadoDeBaja() {
         if (fechaMatriculacion == null) return false;
-        return Period.between(fechaMatriculacion, LocalDate.now()).getYears() >= 10;
+        return getAniosUso() >= 10;
     }
 
     /**
-     * Calcula los años de uso del vehiculo
+     * Calcula los años de uso del vehiculo (una vez al dia, ver Reloj)
      * @return años desde matriculacion
      */
     public int getAniosUso() {
         if (fechaMatriculacion == null) return 0;
-        return Period.between(fechaMatriculacion, LocalDate.now()).getYears();
+        long cache = aniosUsoDelDia;
+        long hoy = Reloj.diaEpoch();
+        if (cache >> 32 == hoy) {
+            return (int) cache;
+        }
+        int aniosUso = Reloj.aniosDesde(fechaMatriculacion);
+        aniosUsoDelDia = hoy << 32 | (aniosUso & 0xFFFFFFFFL);
+        return aniosUso;
     }
 
     // Getters y Setters
@@ -83,6 +95,7 @@ public class Vehiculo {
 
     public void setFechaMatriculacion(LocalDate fechaMatriculacion) {
         this.fechaMatriculacion = fechaMatriculacion;
+        this.aniosUsoDelDia = SIN_CALCULAR;
     }
 
     public boolean isActivo() {
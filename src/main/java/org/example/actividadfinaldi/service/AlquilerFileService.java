@@ -2,54 +2,457 @@ package org.example.actividadfinaldi.service;
 
 import org.example.actividadfinaldi.model.Alquiler;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Servicio para guardar alquileres en archivo de texto
  * Ampliacion A
+ *
+ * Las lineas se encolan y las escribe un hilo propio en grupos (group commit):
+ * un grupo se escribe con una sola llamada al canal y un solo force() cuando
+ * alcanza el tamaño configurado o pasa el intervalo desde su primera linea.
+ * Si la cola se llena, guardarAlquiler espera a que haya sitio.
+ *
+ * Junto a cada grupo se añaden sus entradas al indice (archivo ".idx"), que usa
+ * HistorialAlquileres para buscar sin recorrer el archivo de texto.
+ *
+ * El archivo se divide en segmentos: al cambiar de dia o superar el tamaño maximo,
+ * el archivo activo se sella (ver SegmentosAlquileres) y otro hilo lo comprime.
+ * Un registro de una version anterior, sin indice, se sella entero al arrancar.
  */
 public class AlquilerFileService {
 
-    private static final String ARCHIVO = "alquileres.txt";
+    static final String ARCHIVO = "alquileres.txt";
+
+    private static final int CAPACIDAD_COLA = 1024;
+    private static final int TAMANO_GRUPO = 64;
+    private static final Duration INTERVALO_GRUPO = Duration.ofMillis(200);
+    private static final long TAMANO_SEGMENTO = 4L * 1024 * 1024;
+
+    // Marcas de control en la cola; se comparan por identidad
+    private static final RegistroAlquiler MARCA_VACIAR = marca();
+    private static final RegistroAlquiler MARCA_CERRAR = marca();
+
+    private final Path archivo;
+    private final int tamanoGrupo;
+    private final long intervaloGrupoNanos;
+    private final BlockingQueue<RegistroAlquiler> cola;
+    private final long tamanoSegmento;
+    private final boolean segmentoPorDia;
+    private final Charset charset = Charset.defaultCharset();
+    // guardar() encola con la de lectura y cerrar() pone la marca con la de escritura,
+    // asi nada que se haya aceptado queda en la cola detras de la marca de cierre
+    private final ReadWriteLock cierre = new ReentrantReadWriteLock();
+
+    private Thread escritor;
+    private ExecutorService compresor;
+    private FileChannel canal;
+    private FileChannel canalIndice;
+    private long posicion;
+    // Fecha de registro (segundos) de la primera linea del archivo activo; -1 si esta vacio
+    private long inicioSegmento = -1;
+    private boolean cerrado;
+    private long encoladas;
+    private long escritas;
+
+    public AlquilerFileService() {
+        this(Path.of(ARCHIVO), CAPACIDAD_COLA, TAMANO_GRUPO, INTERVALO_GRUPO);
+    }
 
     /**
-     * Guarda un alquiler en el archivo de texto
+     * @param archivo fichero de registro (se añade al final)
+     * @param capacidadCola lineas pendientes como maximo antes de bloquear a quien guarda
+     * @param tamanoGrupo lineas por escritura como maximo
+     * @param intervaloGrupo espera maxima de una linea antes de escribirse
+     */
+    public AlquilerFileService(Path archivo, int capacidadCola, int tamanoGrupo, Duration intervaloGrupo) {
+        this(archivo, capacidadCola, tamanoGrupo, intervaloGrupo, TAMANO_SEGMENTO, true);
+    }
+
+    /**
+     * @param tamanoSegmento bytes a partir de los que se sella el archivo activo
+     * @param segmentoPorDia si se sella tambien al cambiar el dia de registro
+     */
+    public AlquilerFileService(Path archivo, int capacidadCola, int tamanoGrupo, Duration intervaloGrupo,
+                               long tamanoSegmento, boolean segmentoPorDia) {
+        this.archivo = archivo;
+        this.tamanoGrupo = tamanoGrupo;
+        this.intervaloGrupoNanos = intervaloGrupo.toNanos();
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        this.tamanoSegmento = tamanoSegmento;
+        this.segmentoPorDia = segmentoPorDia;
+    }
+
+    /**
+     * Encola un alquiler para guardarlo en el archivo de texto
      * @param alquiler alquiler a guardar
-     * @return true si se guardo correctamente
+     * @return true si se acepto; false si el servicio esta cerrado
      */
     public boolean guardarAlquiler(Alquiler alquiler) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(ARCHIVO, true))) {
-            String linea = formatearAlquiler(alquiler);
-            writer.write(linea);
-            writer.newLine();
+        return guardar(RegistroAlquiler.de(alquiler, LocalDateTime.now()));
+    }
+
+    /**
+     * Encola un registro con su fecha de registro ya fijada
+     */
+    boolean guardar(RegistroAlquiler registro) {
+        cierre.readLock().lock();
+        try {
+            synchronized (this) {
+                if (cerrado || !arrancarEscritor()) {
+                    return false;
+                }
+                encoladas++;
+            }
+            cola.put(registro);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                encoladas--;
+            }
+            return false;
+        } finally {
+            cierre.readLock().unlock();
+        }
+    }
+
+    /**
+     * Espera a que todo lo encolado hasta ahora este escrito en disco
+     */
+    public void vaciar() {
+        long objetivo;
+        synchronized (this) {
+            if (escritor == null || cerrado) {
+                return;
+            }
+            objetivo = encoladas;
+        }
+        try {
+            cola.put(MARCA_VACIAR);
+            synchronized (this) {
+                while (escritas < objetivo && escritor.isAlive()) {
+                    wait(100);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Escribe lo pendiente y detiene el hilo escritor. Despues no se aceptan mas alquileres.
+     */
+    public void cerrar() {
+        Thread hilo;
+        // Espera a que terminen de encolar los guardar() en curso
+        cierre.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (cerrado) {
+                    return;
+                }
+                cerrado = true;
+                hilo = escritor;
+            }
+            if (hilo == null) {
+                return;
+            }
+            cola.put(MARCA_CERRAR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            cierre.writeLock().unlock();
+        }
+        try {
+            hilo.join(TimeUnit.SECONDS.toMillis(5));
+            // Un segmento sin comprimir se comprime al volver a arrancar
+            compresor.shutdown();
+            compresor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean arrancarEscritor() {
+        if (escritor != null) {
             return true;
+        }
+        migrarRegistroSinIndice();
+        if (!abrirCanales()) {
+            return false;
+        }
+        compresor = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "compresor-alquileres");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        // Segmentos sellados que no llegaron a comprimirse en una ejecucion anterior
+        try {
+            for (SegmentosAlquileres.Segmento segmento : SegmentosAlquileres.leer(archivo)) {
+                if (SegmentosAlquileres.pendienteDeComprimir(archivo, segmento)) {
+                    comprimirEnSegundoPlano(segmento);
+                }
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("Error al leer los segmentos de " + archivo + ": " + e.getMessage());
+        }
+        escritor = new Thread(this::escribirGrupos, "escritor-alquileres");
+        escritor.setDaemon(true);
+        escritor.start();
+        return true;
+    }
+
+    /**
+     * Indexa un registro escrito por una version sin indice y lo sella como un segmento mas,
+     * de modo que el archivo activo empieza vacio en vez de rotarse al escribir la primera linea
+     */
+    private void migrarRegistroSinIndice() {
+        Path indice = IndiceAlquileres.rutaIndice(archivo);
+        if (!Files.exists(archivo) || Files.exists(indice)) {
+            return;
+        }
+        try {
+            try (FileChannel registro = FileChannel.open(archivo, StandardOpenOption.READ);
+                 FileChannel entradas = FileChannel.open(indice, StandardOpenOption.CREATE,
+                         StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                IndiceAlquileres.completar(registro, entradas, charset);
+            }
+            // Sin lineas validas no se sella y el archivo sigue siendo el activo
+            SegmentosAlquileres.sellar(archivo);
+        } catch (IOException e) {
+            System.err.println("Error al migrar " + archivo + ": " + e.getMessage());
+        }
+    }
+
+    private boolean abrirCanales() {
+        try {
+            // Sin APPEND porque tambien se lee; solo escribe este hilo, asi que basta con ir al final
+            canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            canalIndice = FileChannel.open(IndiceAlquileres.rutaIndice(archivo), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            posicion = IndiceAlquileres.completar(canal, canalIndice, charset);
+            canal.position(posicion);
+            canalIndice.position(canalIndice.size());
+            inicioSegmento = -1;
+            if (canalIndice.size() >= IndiceAlquileres.TAMANO_ENTRADA) {
+                ByteBuffer primera = ByteBuffer.allocate(Long.BYTES);
+                canalIndice.read(primera, IndiceAlquileres.DESP_FECHA);
+                inicioSegmento = primera.getLong(0);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error al abrir " + archivo + ": " + e.getMessage());
+            cerrarCanales();
+            return false;
+        }
+    }
+
+    /**
+     * Indica si el archivo activo debe sellarse antes de escribir un registro
+     */
+    private boolean debeRotar(RegistroAlquiler siguiente) {
+        if (inicioSegmento < 0) {
             return false;
         }
+        if (posicion >= tamanoSegmento) {
+            return true;
+        }
+        LocalDate diaSegmento = LocalDateTime.ofEpochSecond(inicioSegmento, 0, ZoneOffset.UTC).toLocalDate();
+        return segmentoPorDia && !diaSegmento.equals(siguiente.getFechaRegistro().toLocalDate());
     }
 
     /**
-     * Formatea un alquiler para guardarlo en archivo
-     * @param alquiler alquiler a formatear
-     * @return linea de texto con datos del alquiler
+     * Sella el archivo activo, encarga su compresion y empieza uno nuevo
      */
-    private String formatearAlquiler(Alquiler alquiler) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        String timestamp = LocalDateTime.now().format(formatter);
+    private void rotar() {
+        cerrarCanales();
+        try {
+            SegmentosAlquileres.Segmento segmento = SegmentosAlquileres.sellar(archivo);
+            if (segmento != null) {
+                comprimirEnSegundoPlano(segmento);
+            }
+        } catch (IOException e) {
+            System.err.println("Error al sellar " + archivo + ": " + e.getMessage());
+        }
+        abrirCanales();
+    }
+
+    private void comprimirEnSegundoPlano(SegmentosAlquileres.Segmento segmento) {
+        Path sellado = archivo.resolveSibling(segmento.getNombre());
+        compresor.execute(() -> {
+            try {
+                SegmentosAlquileres.comprimir(sellado);
+            } catch (IOException e) {
+                System.err.println("Error al comprimir " + sellado + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Bucle del hilo escritor: agrupa lineas y las escribe con un solo force()
+     */
+    private void escribirGrupos() {
+        List<RegistroAlquiler> grupo = new ArrayList<>(tamanoGrupo);
+        boolean seguir = true;
+        try {
+            while (seguir) {
+                RegistroAlquiler siguiente = cola.take();
+                long limite = System.nanoTime() + intervaloGrupoNanos;
+
+                while (siguiente != null) {
+                    if (siguiente == MARCA_CERRAR) {
+                        seguir = false;
+                        break;
+                    }
+                    if (siguiente == MARCA_VACIAR) {
+                        break;
+                    }
+                    grupo.add(siguiente);
+                    if (grupo.size() >= tamanoGrupo) {
+                        break;
+                    }
+                    long restante = limite - System.nanoTime();
+                    siguiente = restante > 0 ? cola.poll(restante, TimeUnit.NANOSECONDS) : cola.poll();
+                }
+
+                escribir(grupo);
+                grupo.clear();
+            }
+            // Al cerrar se escribe lo que quedase detras de la marca
+            List<RegistroAlquiler> resto = new ArrayList<>();
+            cola.drainTo(resto);
+            resto.removeIf(registro -> registro == MARCA_VACIAR || registro == MARCA_CERRAR);
+            escribir(resto);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cerrarCanales();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Escribe un grupo partiendolo por dia de registro, para que cada tramo vaya a su segmento
+     */
+    private void escribir(List<RegistroAlquiler> grupo) {
+        int desde = 0;
+        while (desde < grupo.size()) {
+            int hasta = desde + 1;
+            if (segmentoPorDia) {
+                LocalDate dia = grupo.get(desde).getFechaRegistro().toLocalDate();
+                while (hasta < grupo.size() && grupo.get(hasta).getFechaRegistro().toLocalDate().equals(dia)) {
+                    hasta++;
+                }
+            } else {
+                hasta = grupo.size();
+            }
+            escribirTramo(grupo.subList(desde, hasta));
+            desde = hasta;
+        }
+    }
+
+    private void escribirTramo(List<RegistroAlquiler> grupo) {
+        if (canal == null) {
+            abrirCanales();
+        } else if (debeRotar(grupo.get(0))) {
+            rotar();
+        }
+        if (canal == null) {
+            // No se pudo abrir el archivo; el grupo se pierde pero no bloquea a quien espera en vaciar()
+            terminarGrupo(grupo.size());
+            return;
+        }
+        byte[] salto = System.lineSeparator().getBytes(charset);
+        List<byte[]> lineas = new ArrayList<>(grupo.size());
+        int total = 0;
+        for (RegistroAlquiler registro : grupo) {
+            byte[] linea = registro.aLinea().getBytes(charset);
+            lineas.add(linea);
+            total += linea.length + salto.length;
+        }
+
+        ByteBuffer texto = ByteBuffer.allocate(total);
+        ByteBuffer entradas = ByteBuffer.allocate(grupo.size() * IndiceAlquileres.TAMANO_ENTRADA);
+        long inicioLinea = posicion;
+        for (int i = 0; i < grupo.size(); i++) {
+            byte[] linea = lineas.get(i);
+            IndiceAlquileres.escribirEntrada(entradas, grupo.get(i), inicioLinea, linea.length);
+            texto.put(linea).put(salto);
+            inicioLinea += linea.length + salto.length;
+        }
+        texto.flip();
+        entradas.flip();
+
+        try {
+            // Primero el texto: si se corta antes del indice, completar() lo reindexa al abrir
+            while (texto.hasRemaining()) {
+                canal.write(texto);
+            }
+            canal.force(false);
+            posicion = inicioLinea;
+            while (entradas.hasRemaining()) {
+                canalIndice.write(entradas);
+            }
+            canalIndice.force(false);
+            if (inicioSegmento < 0) {
+                inicioSegmento = IndiceAlquileres.segundos(grupo.get(0).getFechaRegistro());
+            }
+        } catch (IOException e) {
+            System.err.println("Error al guardar alquileres: " + e.getMessage());
+            try {
+                posicion = canal.size();
+            } catch (IOException ignorada) {
+                // El canal ya no es usable; los siguientes grupos tambien fallaran
+            }
+        }
+        terminarGrupo(grupo.size());
+    }
+
+    private synchronized void terminarGrupo(int lineas) {
+        escritas += lineas;
+        notifyAll();
+    }
+
+    private void cerrarCanales() {
+        try {
+            if (canal != null) {
+                canal.close();
+            }
+            if (canalIndice != null) {
+                canalIndice.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error al cerrar " + archivo + ": " + e.getMessage());
+        }
+        canal = null;
+        canalIndice = null;
+    }
 
-        return String.format("%s | Cliente: %s %s (DNI: %s) | Vehiculo: %s | Inicio: %s | Fin: %s | Dias: %d",
-                timestamp,
-                alquiler.getCliente().getNombre(),
-                alquiler.getCliente().getApellidos(),
-                alquiler.getCliente().getDni(),
-                alquiler.getVehiculo().getMatricula(),
-                alquiler.getFechaInicio(),
-                alquiler.getFechaFin(),
-                alquiler.getDuracionDias());
+    private static RegistroAlquiler marca() {
+        return new RegistroAlquiler(LocalDateTime.MIN, "", "", "", null, null, 0);
     }
-}
\ No newline at end of file
+}
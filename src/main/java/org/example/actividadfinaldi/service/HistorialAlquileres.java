@@ -0,0 +1,275 @@
+package org.example.actividadfinaldi.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Consultas sobre el registro de alquileres que escribe AlquilerFileService.
+ *
+ * Lee los indices (archivos ".idx") y, del archivo activo, solo las entradas nuevas
+ * desde la consulta anterior; las lineas que coinciden se leen directamente en su
+ * posicion, sin recorrer los archivos completos. Nada queda mapeado ni abierto entre
+ * consultas, para que el escritor pueda sellar y renombrar los archivos. Los segmentos
+ * sellados cuyo intervalo de fechas (segun el manifiesto) no cae en el buscado no se
+ * abren. El indice guarda hashes, asi que cada linea leida se comprueba antes de devolverla.
+ */
+public class HistorialAlquileres {
+
+    private final Path registro;
+    private final Charset charset = Charset.defaultCharset();
+
+    private List<SegmentosAlquileres.Segmento> segmentos = List.of();
+    private final Map<String, IndiceSegmento> sellados = new HashMap<>();
+    private IndiceSegmento activo = new IndiceSegmento();
+
+    public HistorialAlquileres() {
+        this(Path.of(AlquilerFileService.ARCHIVO));
+    }
+
+    /**
+     * @param registro archivo de registro activo; su indice es el mismo nombre con ".idx"
+     */
+    public HistorialAlquileres(Path registro) {
+        this.registro = registro;
+    }
+
+    /**
+     * Busca los alquileres registrados de un cliente
+     * @param dni DNI del cliente
+     * @return registros en orden de escritura
+     */
+    public synchronized List<RegistroAlquiler> buscarPorDni(String dni) {
+        int hash = IndiceAlquileres.hash(dni);
+        return buscar(Long.MIN_VALUE, Long.MAX_VALUE, indice -> indice.porDni.getOrDefault(hash, List.of()),
+                r -> r.getDni().equals(dni));
+    }
+
+    /**
+     * Busca los alquileres registrados de un vehiculo
+     * @param matricula matricula del vehiculo
+     * @return registros en orden de escritura
+     */
+    public synchronized List<RegistroAlquiler> buscarPorMatricula(String matricula) {
+        int hash = IndiceAlquileres.hash(matricula);
+        return buscar(Long.MIN_VALUE, Long.MAX_VALUE, indice -> indice.porMatricula.getOrDefault(hash, List.of()),
+                r -> r.getMatricula().equals(matricula));
+    }
+
+    /**
+     * Busca los alquileres registrados entre dos momentos (ambos incluidos)
+     * @param desde inicio del intervalo
+     * @param hasta fin del intervalo
+     * @return registros ordenados por fecha de registro dentro de cada segmento
+     */
+    public synchronized List<RegistroAlquiler> buscarEntre(LocalDateTime desde, LocalDateTime hasta) {
+        long inicio = IndiceAlquileres.segundos(desde);
+        long fin = IndiceAlquileres.segundos(hasta);
+        return buscar(inicio, fin, indice -> indice.entre(inicio, fin), r -> true);
+    }
+
+    /**
+     * @return numero de lineas indexadas, sumando todos los segmentos
+     */
+    public synchronized long getTotal() {
+        actualizar();
+        long total = activo.entradas;
+        for (SegmentosAlquileres.Segmento segmento : segmentos) {
+            total += segmento.getLineas();
+        }
+        return total;
+    }
+
+    /**
+     * @return numero de segmentos sellados
+     */
+    public synchronized int getSegmentos() {
+        actualizar();
+        return segmentos.size();
+    }
+
+    private List<RegistroAlquiler> buscar(long inicio, long fin,
+                                          Function<IndiceSegmento, Collection<Integer>> candidatos,
+                                          Predicate<RegistroAlquiler> filtro) {
+        actualizar();
+        List<RegistroAlquiler> resultado = new ArrayList<>();
+        for (SegmentosAlquileres.Segmento segmento : segmentos) {
+            if (!segmento.solapa(inicio, fin)) {
+                continue;
+            }
+            IndiceSegmento indice = indiceSellado(segmento);
+            Collection<Integer> numeros = candidatos.apply(indice);
+            if (numeros.isEmpty()) {
+                continue;
+            }
+            try {
+                ByteBuffer contenido = SegmentosAlquileres.contenido(registro, segmento);
+                if (contenido != null) {
+                    indice.leer(numeros, contenido.limit(), (posicion, longitud) -> {
+                        byte[] bytes = new byte[longitud];
+                        contenido.get((int) posicion, bytes);
+                        return bytes;
+                    }, charset, filtro, resultado);
+                }
+            } catch (IOException e) {
+                System.err.println("Error al leer el segmento " + segmento.getNombre() + ": " + e.getMessage());
+            }
+        }
+
+        Collection<Integer> numeros = candidatos.apply(activo);
+        if (!numeros.isEmpty()) {
+            try (FileChannel canal = FileChannel.open(registro, StandardOpenOption.READ)) {
+                activo.leer(numeros, canal.size(),
+                        (posicion, longitud) -> IndiceAlquileres.leer(canal, posicion, longitud).array(),
+                        charset, filtro, resultado);
+            } catch (IOException e) {
+                System.err.println("Error al leer " + registro + ": " + e.getMessage());
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Relee el manifiesto e incorpora las entradas añadidas al indice activo
+     */
+    private void actualizar() {
+        try {
+            List<SegmentosAlquileres.Segmento> leidos = SegmentosAlquileres.leer(registro);
+            if (leidos.size() != segmentos.size()) {
+                // Se ha sellado el archivo activo: lo que habia leido ahora es un segmento
+                activo = new IndiceSegmento();
+            }
+            segmentos = leidos;
+        } catch (IOException e) {
+            System.err.println("Error al leer los segmentos de " + registro + ": " + e.getMessage());
+        }
+        if (!activo.actualizar(IndiceAlquileres.rutaIndice(registro))) {
+            activo = new IndiceSegmento();
+            activo.actualizar(IndiceAlquileres.rutaIndice(registro));
+        }
+    }
+
+    /**
+     * Indice de un segmento sellado; se carga la primera vez que hace falta
+     */
+    private IndiceSegmento indiceSellado(SegmentosAlquileres.Segmento segmento) {
+        IndiceSegmento indice = sellados.get(segmento.getNombre());
+        if (indice == null) {
+            indice = new IndiceSegmento();
+            indice.actualizar(IndiceAlquileres.rutaIndice(registro.resolveSibling(segmento.getNombre())));
+            if (indice.entradas == segmento.getLineas()) {
+                sellados.put(segmento.getNombre(), indice);
+            }
+        }
+        return indice;
+    }
+
+    /**
+     * Lee la linea que empieza en una posicion y tiene la longitud indicada
+     */
+    private interface LectorLineas {
+        byte[] leer(long posicion, int longitud) throws IOException;
+    }
+
+    /**
+     * Indice en memoria de un archivo del registro (activo o segmento sellado)
+     */
+    private static final class IndiceSegmento {
+
+        // Numero de entrada -> posicion y longitud de su linea
+        private long[] posiciones = new long[64];
+        private int[] longitudes = new int[64];
+        private int entradas;
+
+        private final Map<Integer, List<Integer>> porDni = new HashMap<>();
+        private final Map<Integer, List<Integer>> porMatricula = new HashMap<>();
+        private final NavigableMap<Long, List<Integer>> porFecha = new TreeMap<>();
+
+        /**
+         * Incorpora las entradas añadidas al indice desde la ultima lectura
+         * @return false si el indice ha encogido y hay que leerlo de nuevo
+         */
+        boolean actualizar(Path indice) {
+            if (!Files.exists(indice)) {
+                return entradas == 0;
+            }
+            try (FileChannel canal = FileChannel.open(indice, StandardOpenOption.READ)) {
+                long completas = canal.size() / IndiceAlquileres.TAMANO_ENTRADA;
+                if (completas < entradas) {
+                    return false;
+                }
+                if (completas == entradas) {
+                    return true;
+                }
+                long desde = (long) entradas * IndiceAlquileres.TAMANO_ENTRADA;
+                ByteBuffer nuevas = IndiceAlquileres.leer(canal, desde,
+                        (int) (completas * IndiceAlquileres.TAMANO_ENTRADA - desde));
+                for (int base = 0; base < nuevas.limit(); base += IndiceAlquileres.TAMANO_ENTRADA) {
+                    anadir(nuevas, base);
+                }
+            } catch (IOException e) {
+                System.err.println("Error al leer el indice " + indice + ": " + e.getMessage());
+            }
+            return true;
+        }
+
+        private void anadir(ByteBuffer entrada, int base) {
+            if (entradas == posiciones.length) {
+                posiciones = Arrays.copyOf(posiciones, entradas * 2);
+                longitudes = Arrays.copyOf(longitudes, entradas * 2);
+            }
+            int numero = entradas++;
+            posiciones[numero] = entrada.getLong(base + IndiceAlquileres.DESP_POSICION);
+            longitudes[numero] = entrada.getInt(base + IndiceAlquileres.DESP_LONGITUD);
+            porDni.computeIfAbsent(entrada.getInt(base + IndiceAlquileres.DESP_HASH_DNI), k -> new ArrayList<>())
+                    .add(numero);
+            porMatricula.computeIfAbsent(entrada.getInt(base + IndiceAlquileres.DESP_HASH_MATRICULA),
+                    k -> new ArrayList<>()).add(numero);
+            porFecha.computeIfAbsent(entrada.getLong(base + IndiceAlquileres.DESP_FECHA), k -> new ArrayList<>())
+                    .add(numero);
+        }
+
+        List<Integer> entre(long inicio, long fin) {
+            List<Integer> numeros = new ArrayList<>();
+            for (List<Integer> mismoSegundo : porFecha.subMap(inicio, true, fin, true).values()) {
+                numeros.addAll(mismoSegundo);
+            }
+            return numeros;
+        }
+
+        /**
+         * Lee las lineas indicadas y añade las que cumplen el filtro
+         * @param tamano bytes del archivo; se saltan las entradas que apuntan mas alla
+         */
+        void leer(Collection<Integer> numeros, long tamano, LectorLineas lector, Charset charset,
+                  Predicate<RegistroAlquiler> filtro, List<RegistroAlquiler> resultado) throws IOException {
+            for (int numero : numeros) {
+                long posicion = posiciones[numero];
+                int longitud = longitudes[numero];
+                if (posicion + longitud > tamano) {
+                    continue;
+                }
+                byte[] bytes = lector.leer(posicion, longitud);
+                RegistroAlquiler leido = RegistroAlquiler.desdeLinea(new String(bytes, charset));
+                if (leido != null && filtro.test(leido)) {
+                    resultado.add(leido);
+                }
+            }
+        }
+    }
+}
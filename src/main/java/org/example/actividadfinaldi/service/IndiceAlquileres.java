@@ -0,0 +1,151 @@
+package org.example.actividadfinaldi.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Formato del indice que acompaña al registro de alquileres (archivo ".idx").
+ * Cada linea del registro tiene una entrada de tamaño fijo:
+ * fecha de registro (segundos), posicion y longitud en bytes de la linea,
+ * y hash del DNI y de la matricula. Las entradas van en el orden del registro.
+ */
+final class IndiceAlquileres {
+
+    static final int TAMANO_ENTRADA = 8 + 8 + 4 + 4 + 4;
+
+    static final int DESP_FECHA = 0;
+    static final int DESP_POSICION = 8;
+    static final int DESP_LONGITUD = 16;
+    static final int DESP_HASH_DNI = 20;
+    static final int DESP_HASH_MATRICULA = 24;
+
+    private IndiceAlquileres() {
+    }
+
+    /**
+     * @return ruta del indice de un archivo de registro
+     */
+    static Path rutaIndice(Path registro) {
+        return registro.resolveSibling(registro.getFileName() + ".idx");
+    }
+
+    /**
+     * Fecha de registro como segundos epoch; se guarda en UTC para que el orden no dependa de la zona
+     */
+    static long segundos(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static int hash(String valor) {
+        return valor == null ? 0 : valor.hashCode();
+    }
+
+    /**
+     * Añade al buffer la entrada de una linea
+     */
+    static void escribirEntrada(ByteBuffer destino, RegistroAlquiler registro, long posicion, int longitud) {
+        destino.putLong(segundos(registro.getFechaRegistro()));
+        destino.putLong(posicion);
+        destino.putInt(longitud);
+        destino.putInt(hash(registro.getDni()));
+        destino.putInt(hash(registro.getMatricula()));
+    }
+
+    /**
+     * Indexa las lineas del registro que aun no tienen entrada (registros de versiones
+     * anteriores o escritos justo antes de una caida) y descarta una entrada a medias.
+     * @return posicion del final del registro
+     */
+    static long completar(FileChannel registro, FileChannel indice, Charset charset) throws IOException {
+        long entradas = indice.size() / TAMANO_ENTRADA;
+        if (indice.size() % TAMANO_ENTRADA != 0) {
+            indice.truncate(entradas * TAMANO_ENTRADA);
+        }
+
+        long cubierto = 0;
+        if (entradas > 0) {
+            ByteBuffer ultima = ByteBuffer.allocate(TAMANO_ENTRADA);
+            indice.read(ultima, (entradas - 1) * TAMANO_ENTRADA);
+            ultima.flip();
+            cubierto = finDeLinea(registro, ultima.getLong(DESP_POSICION) + ultima.getInt(DESP_LONGITUD));
+        }
+
+        long fin = registro.size();
+        if (cubierto >= fin) {
+            return fin;
+        }
+
+        ByteBuffer pendiente = leer(registro, cubierto, (int) (fin - cubierto));
+        // El canal puede venir abierto sin APPEND: las entradas nuevas van detras de las existentes
+        indice.position(entradas * TAMANO_ENTRADA);
+        ByteBuffer entradasNuevas = ByteBuffer.allocate(TAMANO_ENTRADA * 256);
+        int inicio = 0;
+        for (int i = 0; i < pendiente.limit(); i++) {
+            if (pendiente.get(i) != '\n') {
+                continue;
+            }
+            int longitud = i - inicio;
+            if (longitud > 0 && pendiente.get(i - 1) == '\r') {
+                longitud--;
+            }
+            byte[] bytes = new byte[longitud];
+            pendiente.get(inicio, bytes);
+            RegistroAlquiler leido = RegistroAlquiler.desdeLinea(new String(bytes, charset));
+            if (leido != null) {
+                if (entradasNuevas.remaining() < TAMANO_ENTRADA) {
+                    volcar(entradasNuevas, indice);
+                }
+                escribirEntrada(entradasNuevas, leido, cubierto + inicio, longitud);
+            }
+            inicio = i + 1;
+        }
+        volcar(entradasNuevas, indice);
+        indice.force(false);
+        return fin;
+    }
+
+    /**
+     * Lee un tramo de un archivo a un buffer en memoria. No se mapea: en Windows un archivo
+     * mapeado no se puede renombrar ni borrar hasta que el GC libera el mapeo, y los
+     * archivos del registro se renombran al sellarlos.
+     */
+    static ByteBuffer leer(FileChannel canal, long desde, int longitud) throws IOException {
+        ByteBuffer destino = ByteBuffer.allocate(longitud);
+        while (destino.hasRemaining()) {
+            if (canal.read(destino, desde + destino.position()) < 0) {
+                break;
+            }
+        }
+        return destino.flip();
+    }
+
+    /**
+     * Avanza desde el final de una linea indexada hasta pasar su salto de linea
+     */
+    private static long finDeLinea(FileChannel registro, long posicion) throws IOException {
+        ByteBuffer byteLeido = ByteBuffer.allocate(1);
+        long actual = posicion;
+        while (actual < registro.size()) {
+            byteLeido.clear();
+            registro.read(byteLeido, actual);
+            actual++;
+            if (byteLeido.get(0) == '\n') {
+                break;
+            }
+        }
+        return actual;
+    }
+
+    private static void volcar(ByteBuffer entradas, FileChannel indice) throws IOException {
+        entradas.flip();
+        while (entradas.hasRemaining()) {
+            indice.write(entradas);
+        }
+        entradas.clear();
+    }
+}
@@ -0,0 +1,294 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Indice en memoria de la ocupacion de cada vehiculo.
+ * Por vehiculo guarda los periodos ocupados [inicio, fin) como intervalos disjuntos
+ * ordenados por fecha de inicio, de modo que comprobar si un periodo esta libre
+ * cuesta O(log n) en el numero de alquileres del vehiculo.
+ * El dia de fin queda libre: un alquiler puede empezar el dia en que termina otro.
+ *
+ * Una carga completa de los alquileres activos reconstruye el indice (reemplazar), asi que
+ * los alquileres terminados o borrados fuera de la aplicacion dejan de ocupar el vehiculo.
+ * Las reservas aun no confirmadas por la BD, y las confirmadas despues de empezar la carga,
+ * se conservan al reconstruirlo.
+ */
+public class IndiceDisponibilidad {
+
+    // vehiculoId -> (inicio -> fin) de los periodos ocupados, disjuntos
+    private final Map<Integer, TreeMap<LocalDate, LocalDate>> ocupacion = new HashMap<>();
+    private final Map<TipoVehiculo, Map<Integer, Vehiculo>> vehiculosPorTipo = new EnumMap<>(TipoVehiculo.class);
+    // Reservas que aun no estan en la BD, por identidad
+    private final Map<Alquiler, Boolean> enCurso = new IdentityHashMap<>();
+    // Reservas ya confirmadas -> System.nanoTime() de la confirmacion, hasta que las traiga una carga completa
+    private final Map<Alquiler, Long> confirmadas = new IdentityHashMap<>();
+
+    /**
+     * Registra un vehiculo de la flota; los inactivos se retiran de las busquedas por tipo
+     * @param vehiculo vehiculo a registrar
+     */
+    public synchronized void registrarVehiculo(Vehiculo vehiculo) {
+        if (vehiculo == null || vehiculo.getId() == null) {
+            return;
+        }
+        for (Map<Integer, Vehiculo> vehiculos : vehiculosPorTipo.values()) {
+            vehiculos.remove(vehiculo.getId());
+        }
+        if (vehiculo.isActivo() && vehiculo.getTipo() != null) {
+            vehiculosPorTipo.computeIfAbsent(vehiculo.getTipo(), tipo -> new LinkedHashMap<>())
+                    .put(vehiculo.getId(), vehiculo);
+        }
+    }
+
+    /**
+     * Registra varios vehiculos de la flota
+     * @param vehiculos vehiculos a registrar
+     */
+    public synchronized void registrarVehiculos(Collection<Vehiculo> vehiculos) {
+        for (Vehiculo vehiculo : vehiculos) {
+            registrarVehiculo(vehiculo);
+        }
+    }
+
+    /**
+     * Incorpora alquileres ya existentes en la base de datos.
+     * No rechaza solapes: si los datos ya los tienen, los periodos se fusionan.
+     * @param alquileres alquileres cargados; los inactivos se ignoran
+     */
+    public synchronized void cargar(Collection<Alquiler> alquileres) {
+        for (Alquiler alquiler : alquileres) {
+            if (esIndexable(alquiler)) {
+                registrarVehiculo(alquiler.getVehiculo());
+                anadir(periodos(alquiler.getVehiculo().getId()),
+                        alquiler.getFechaInicio(), alquiler.getFechaFin());
+            }
+        }
+    }
+
+    /**
+     * Incorpora el resultado de una carga parcial (una pagina, los de un cliente...).
+     * Como no trae todos los alquileres no puede quitar los que falten: añade los activos y
+     * quita el periodo exacto de los que vienen inactivos, salvo si es el de una reserva propia.
+     * @param alquileres alquileres cargados
+     */
+    public synchronized void actualizar(Collection<Alquiler> alquileres) {
+        for (Alquiler alquiler : alquileres) {
+            if (alquiler == null || alquiler.isActivo() || !alquiler.fechasValidas()
+                    || alquiler.getVehiculo() == null || esReservaPropia(alquiler)) {
+                continue;
+            }
+            TreeMap<LocalDate, LocalDate> periodos = ocupacion.get(alquiler.getVehiculo().getId());
+            if (periodos != null) {
+                periodos.remove(alquiler.getFechaInicio(), alquiler.getFechaFin());
+            }
+        }
+        cargar(alquileres);
+    }
+
+    /**
+     * Reconstruye el indice con el resultado de una carga completa de los alquileres activos.
+     * Se conservan las reservas en curso y las confirmadas despues de inicioCarga que no
+     * vienen en la carga, porque la consulta pudo leer la tabla antes de que llegaran.
+     * @param alquileres todos los alquileres activos
+     * @param inicioCarga System.nanoTime() de antes de enviar la consulta
+     */
+    public synchronized void reemplazar(Collection<Alquiler> alquileres, long inicioCarga) {
+        Set<Integer> cargados = new HashSet<>();
+        for (Alquiler alquiler : alquileres) {
+            cargados.add(alquiler.getId());
+        }
+        confirmadas.entrySet().removeIf(confirmada -> confirmada.getValue() - inicioCarga < 0
+                || cargados.contains(confirmada.getKey().getId()));
+
+        ocupacion.clear();
+        cargar(alquileres);
+        cargar(enCurso.keySet());
+        cargar(confirmadas.keySet());
+    }
+
+    /**
+     * Reserva el periodo de un alquiler nuevo si el vehiculo esta libre.
+     * Comprobacion y reserva son atomicas.
+     * @param alquiler alquiler a reservar
+     * @return true si se reservo, false si solapa con otro alquiler
+     */
+    public synchronized boolean reservar(Alquiler alquiler) {
+        if (!esIndexable(alquiler)) {
+            return false;
+        }
+        Integer vehiculoId = alquiler.getVehiculo().getId();
+        if (!estaLibre(vehiculoId, alquiler.getFechaInicio(), alquiler.getFechaFin())) {
+            return false;
+        }
+        anadir(periodos(vehiculoId), alquiler.getFechaInicio(), alquiler.getFechaFin());
+        enCurso.put(alquiler, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Ocupa el periodo de alquileres aun no confirmados por la BD sin comprobar solapes
+     * (por ejemplo los recuperados de un diario), como si se hubieran reservado
+     * @param alquileres alquileres pendientes
+     */
+    public synchronized void retener(Collection<Alquiler> alquileres) {
+        for (Alquiler alquiler : alquileres) {
+            if (esIndexable(alquiler)) {
+                enCurso.put(alquiler, Boolean.TRUE);
+            }
+        }
+        cargar(alquileres);
+    }
+
+    /**
+     * Indica que una reserva ya esta en la BD. Sigue ocupando el vehiculo aunque una carga
+     * completa empezada antes no la traiga.
+     * @param alquiler alquiler reservado
+     */
+    public synchronized void confirmar(Alquiler alquiler) {
+        if (enCurso.remove(alquiler) != null) {
+            confirmadas.put(alquiler, System.nanoTime());
+        }
+    }
+
+    /**
+     * Libera el periodo de un alquiler (por ejemplo si su insercion fallo)
+     * @param alquiler alquiler a liberar
+     */
+    public synchronized void liberar(Alquiler alquiler) {
+        if (!esIndexable(alquiler)) {
+            return;
+        }
+        enCurso.remove(alquiler);
+        confirmadas.remove(alquiler);
+        TreeMap<LocalDate, LocalDate> periodos = ocupacion.get(alquiler.getVehiculo().getId());
+        if (periodos == null) {
+            return;
+        }
+        LocalDate inicio = alquiler.getFechaInicio();
+        LocalDate fin = alquiler.getFechaFin();
+
+        Map.Entry<LocalDate, LocalDate> previo;
+        List<LocalDate[]> restos = new ArrayList<>();
+        while ((previo = periodos.lowerEntry(fin)) != null && previo.getValue().isAfter(inicio)) {
+            periodos.remove(previo.getKey());
+            if (previo.getKey().isBefore(inicio)) {
+                restos.add(new LocalDate[]{previo.getKey(), inicio});
+            }
+            if (previo.getValue().isAfter(fin)) {
+                restos.add(new LocalDate[]{fin, previo.getValue()});
+            }
+        }
+        for (LocalDate[] resto : restos) {
+            periodos.put(resto[0], resto[1]);
+        }
+    }
+
+    /**
+     * Comprueba si un vehiculo esta libre en [inicio, fin)
+     * @param vehiculoId ID del vehiculo
+     * @param inicio primer dia
+     * @param fin dia de devolucion (no incluido)
+     * @return true si ningun alquiler conocido solapa con el periodo
+     */
+    public synchronized boolean estaLibre(Integer vehiculoId, LocalDate inicio, LocalDate fin) {
+        TreeMap<LocalDate, LocalDate> periodos = ocupacion.get(vehiculoId);
+        if (periodos == null) {
+            return true;
+        }
+        // Al ser disjuntos, el periodo que empieza justo antes de fin es el que termina mas tarde
+        Map.Entry<LocalDate, LocalDate> previo = periodos.lowerEntry(fin);
+        return previo == null || !previo.getValue().isAfter(inicio);
+    }
+
+    /**
+     * Devuelve los vehiculos activos de un tipo libres en [inicio, fin)
+     * @param tipo tipo de vehiculo
+     * @param inicio primer dia
+     * @param fin dia de devolucion (no incluido)
+     * @return vehiculos libres
+     */
+    public synchronized List<Vehiculo> vehiculosLibres(TipoVehiculo tipo, LocalDate inicio, LocalDate fin) {
+        List<Vehiculo> libres = new ArrayList<>();
+        Map<Integer, Vehiculo> vehiculos = vehiculosPorTipo.get(tipo);
+        if (vehiculos == null) {
+            return libres;
+        }
+        for (Vehiculo vehiculo : vehiculos.values()) {
+            if (estaLibre(vehiculo.getId(), inicio, fin)) {
+                libres.add(vehiculo);
+            }
+        }
+        return libres;
+    }
+
+    /**
+     * Vacia el indice
+     */
+    public synchronized void limpiar() {
+        ocupacion.clear();
+        vehiculosPorTipo.clear();
+        enCurso.clear();
+        confirmadas.clear();
+    }
+
+    /**
+     * Indica si hay una reserva en curso o recien confirmada del mismo vehiculo y periodo
+     */
+    private boolean esReservaPropia(Alquiler alquiler) {
+        for (Set<Alquiler> reservas : List.of(enCurso.keySet(), confirmadas.keySet())) {
+            for (Alquiler reserva : reservas) {
+                if (Objects.equals(alquiler.getVehiculo().getId(), reserva.getVehiculo().getId())
+                        && alquiler.getFechaInicio().equals(reserva.getFechaInicio())
+                        && alquiler.getFechaFin().equals(reserva.getFechaFin())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private TreeMap<LocalDate, LocalDate> periodos(Integer vehiculoId) {
+        return ocupacion.computeIfAbsent(vehiculoId, id -> new TreeMap<>());
+    }
+
+    /**
+     * Añade [inicio, fin) fusionandolo con los periodos que solapa
+     */
+    private static void anadir(TreeMap<LocalDate, LocalDate> periodos, LocalDate inicio, LocalDate fin) {
+        LocalDate nuevoInicio = inicio;
+        LocalDate nuevoFin = fin;
+        Map.Entry<LocalDate, LocalDate> previo;
+        while ((previo = periodos.lowerEntry(nuevoFin)) != null && previo.getValue().isAfter(nuevoInicio)) {
+            periodos.remove(previo.getKey());
+            if (previo.getKey().isBefore(nuevoInicio)) {
+                nuevoInicio = previo.getKey();
+            }
+            if (previo.getValue().isAfter(nuevoFin)) {
+                nuevoFin = previo.getValue();
+            }
+        }
+        periodos.put(nuevoInicio, nuevoFin);
+    }
+
+    private static boolean esIndexable(Alquiler alquiler) {
+        return alquiler != null && alquiler.isActivo() && alquiler.fechasValidas()
+                && alquiler.getVehiculo() != null && alquiler.getVehiculo().getId() != null;
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Registro de un alquiler en el archivo de texto.
+ * Cada registro es una linea con campos etiquetados y separados por " | ":
+ * fecha de registro | Cliente: nombre apellidos (DNI: dni) | Vehiculo: matricula
+ * | Inicio: fecha | Fin: fecha | Dias: n
+ */
+public class RegistroAlquiler {
+
+    static final DateTimeFormatter FORMATO_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Pattern FORMATO_LINEA = Pattern.compile(
+            "(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}) \\| Cliente: (.*) \\(DNI: ([^)]*)\\)"
+                    + " \\| Vehiculo: (.*) \\| Inicio: (\\S+) \\| Fin: (\\S+) \\| Dias: (-?\\d+)");
+
+    private final LocalDateTime fechaRegistro;
+    private final String cliente;
+    private final String dni;
+    private final String matricula;
+    private final LocalDate fechaInicio;
+    private final LocalDate fechaFin;
+    private final long dias;
+
+    public RegistroAlquiler(LocalDateTime fechaRegistro, String cliente, String dni, String matricula,
+                            LocalDate fechaInicio, LocalDate fechaFin, long dias) {
+        this.fechaRegistro = fechaRegistro.withNano(0);
+        this.cliente = cliente;
+        this.dni = dni;
+        this.matricula = matricula;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.dias = dias;
+    }
+
+    /**
+     * Crea el registro de un alquiler
+     * @param alquiler alquiler a registrar
+     * @param fechaRegistro momento del registro
+     * @return registro
+     */
+    public static RegistroAlquiler de(Alquiler alquiler, LocalDateTime fechaRegistro) {
+        return new RegistroAlquiler(fechaRegistro,
+                limpiar(alquiler.getCliente().getNombre() + " " + alquiler.getCliente().getApellidos()),
+                limpiar(alquiler.getCliente().getDni()),
+                limpiar(alquiler.getVehiculo().getMatricula()),
+                alquiler.getFechaInicio(),
+                alquiler.getFechaFin(),
+                alquiler.getDuracionDias());
+    }
+
+    /**
+     * @return linea de texto del registro, sin salto de linea
+     */
+    public String aLinea() {
+        return String.format("%s | Cliente: %s (DNI: %s) | Vehiculo: %s | Inicio: %s | Fin: %s | Dias: %d",
+                fechaRegistro.format(FORMATO_TIMESTAMP),
+                cliente,
+                dni,
+                matricula,
+                fechaInicio,
+                fechaFin,
+                dias);
+    }
+
+    /**
+     * Interpreta una linea del archivo
+     * @param linea linea sin salto de linea
+     * @return registro, o null si la linea no tiene el formato esperado
+     */
+    public static RegistroAlquiler desdeLinea(String linea) {
+        Matcher campos = FORMATO_LINEA.matcher(linea);
+        if (!campos.matches()) {
+            return null;
+        }
+        try {
+            return new RegistroAlquiler(
+                    LocalDateTime.parse(campos.group(1), FORMATO_TIMESTAMP),
+                    campos.group(2),
+                    campos.group(3),
+                    campos.group(4),
+                    LocalDate.parse(campos.group(5)),
+                    LocalDate.parse(campos.group(6)),
+                    Long.parseLong(campos.group(7)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Evita que un campo rompa el formato de la linea
+     */
+    private static String limpiar(String campo) {
+        return campo == null ? "" : campo.replaceAll("[|\\r\\n]", " ");
+    }
+
+    public LocalDateTime getFechaRegistro() {
+        return fechaRegistro;
+    }
+
+    /**
+     * @return nombre y apellidos del cliente
+     */
+    public String getCliente() {
+        return cliente;
+    }
+
+    public String getDni() {
+        return dni;
+    }
+
+    public String getMatricula() {
+        return matricula;
+    }
+
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+
+    public long getDias() {
+        return dias;
+    }
+
+    @Override
+    public String toString() {
+        return aLinea();
+    }
+}
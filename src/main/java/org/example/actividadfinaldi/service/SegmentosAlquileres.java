@@ -0,0 +1,218 @@
+package org.example.actividadfinaldi.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Segmentos cerrados del registro de alquileres.
+ *
+ * El archivo activo (alquileres.txt) se sella renombrandolo junto con su indice a
+ * "alquileres.AAAAMMDD-HHmmss.txt", y despues se comprime a ".txt.gz". El indice del
+ * segmento no se comprime: sus posiciones se refieren al texto sin comprimir.
+ * El manifiesto ("alquileres.txt.segmentos") guarda una linea por segmento con
+ * su nombre, las fechas de registro minima y maxima (segundos) y su numero de lineas.
+ */
+final class SegmentosAlquileres {
+
+    static final String EXTENSION_COMPRIMIDO = ".gz";
+
+    private static final DateTimeFormatter FORMATO_NOMBRE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private SegmentosAlquileres() {
+    }
+
+    /**
+     * Datos de un segmento sellado
+     */
+    static final class Segmento {
+
+        private final String nombre;
+        private final long desde;
+        private final long hasta;
+        private final long lineas;
+
+        Segmento(String nombre, long desde, long hasta, long lineas) {
+            this.nombre = nombre;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.lineas = lineas;
+        }
+
+        String getNombre() {
+            return nombre;
+        }
+
+        long getDesde() {
+            return desde;
+        }
+
+        long getHasta() {
+            return hasta;
+        }
+
+        long getLineas() {
+            return lineas;
+        }
+
+        /**
+         * @return true si alguna linea del segmento puede estar entre las dos fechas (segundos)
+         */
+        boolean solapa(long inicio, long fin) {
+            return hasta >= inicio && desde <= fin;
+        }
+    }
+
+    static Path rutaManifiesto(Path activo) {
+        return activo.resolveSibling(activo.getFileName() + ".segmentos");
+    }
+
+    /**
+     * Lee el manifiesto; si no existe no hay segmentos sellados
+     */
+    static List<Segmento> leer(Path activo) throws IOException {
+        Path manifiesto = rutaManifiesto(activo);
+        List<Segmento> segmentos = new ArrayList<>();
+        if (!Files.exists(manifiesto)) {
+            return segmentos;
+        }
+        for (String linea : Files.readAllLines(manifiesto, StandardCharsets.UTF_8)) {
+            String[] campos = linea.trim().split(" ");
+            if (campos.length != 4) {
+                continue;
+            }
+            try {
+                segmentos.add(new Segmento(campos[0], Long.parseLong(campos[1]),
+                        Long.parseLong(campos[2]), Long.parseLong(campos[3])));
+            } catch (NumberFormatException e) {
+                System.err.println("Linea del manifiesto ignorada: " + linea);
+            }
+        }
+        return segmentos;
+    }
+
+    /**
+     * Sella el archivo activo: lo renombra con su indice y lo añade al manifiesto.
+     * Los canales del archivo activo deben estar cerrados.
+     * @return segmento sellado, o null si el activo no tenia lineas indexadas
+     */
+    static Segmento sellar(Path activo) throws IOException {
+        Path indice = IndiceAlquileres.rutaIndice(activo);
+        long desde = Long.MAX_VALUE;
+        long hasta = Long.MIN_VALUE;
+        long lineas;
+        try (FileChannel canal = FileChannel.open(indice, StandardOpenOption.READ)) {
+            lineas = canal.size() / IndiceAlquileres.TAMANO_ENTRADA;
+            if (lineas == 0) {
+                return null;
+            }
+            ByteBuffer entradas = IndiceAlquileres.leer(canal, 0, (int) (lineas * IndiceAlquileres.TAMANO_ENTRADA));
+            for (int base = 0; base < entradas.limit(); base += IndiceAlquileres.TAMANO_ENTRADA) {
+                long fecha = entradas.getLong(base + IndiceAlquileres.DESP_FECHA);
+                desde = Math.min(desde, fecha);
+                hasta = Math.max(hasta, fecha);
+            }
+        }
+
+        String nombre = nombreLibre(activo, desde);
+        Path sellado = activo.resolveSibling(nombre);
+        Files.move(indice, IndiceAlquileres.rutaIndice(sellado), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(activo, sellado, StandardCopyOption.ATOMIC_MOVE);
+
+        Segmento segmento = new Segmento(nombre, desde, hasta, lineas);
+        anadirAlManifiesto(activo, segmento);
+        return segmento;
+    }
+
+    /**
+     * Comprime un segmento sellado y borra el texto original.
+     * El ".gz" aparece completo (movimiento atomico) antes de borrar el original,
+     * asi que un lector siempre encuentra una de las dos versiones.
+     */
+    static void comprimir(Path sellado) throws IOException {
+        if (!Files.exists(sellado)) {
+            return;
+        }
+        Path comprimido = sellado.resolveSibling(sellado.getFileName() + EXTENSION_COMPRIMIDO);
+        Path temporal = comprimido.resolveSibling(comprimido.getFileName() + ".tmp");
+        try (InputStream entrada = Files.newInputStream(sellado);
+             OutputStream salida = new GZIPOutputStream(Files.newOutputStream(temporal))) {
+            entrada.transferTo(salida);
+        }
+        Files.move(temporal, comprimido, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(sellado);
+    }
+
+    /**
+     * Contenido de un segmento, leido o descomprimido en memoria. No se mapea porque
+     * el compresor borra el texto sin comprimir mientras se puede estar consultando.
+     * @return contenido, o null si el segmento ya no existe
+     */
+    static ByteBuffer contenido(Path activo, Segmento segmento) throws IOException {
+        Path sellado = activo.resolveSibling(segmento.getNombre());
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(sellado));
+        } catch (NoSuchFileException e) {
+            // Ya comprimido
+        }
+        Path comprimido = sellado.resolveSibling(segmento.getNombre() + EXTENSION_COMPRIMIDO);
+        if (!Files.exists(comprimido)) {
+            return null;
+        }
+        try (InputStream entrada = new GZIPInputStream(Files.newInputStream(comprimido))) {
+            return ByteBuffer.wrap(entrada.readAllBytes());
+        }
+    }
+
+    /**
+     * @return true si el segmento sigue sin comprimir
+     */
+    static boolean pendienteDeComprimir(Path activo, Segmento segmento) {
+        return Files.exists(activo.resolveSibling(segmento.getNombre()));
+    }
+
+    private static synchronized void anadirAlManifiesto(Path activo, Segmento segmento) throws IOException {
+        Path manifiesto = rutaManifiesto(activo);
+        Path temporal = manifiesto.resolveSibling(manifiesto.getFileName() + ".tmp");
+        List<String> lineas = Files.exists(manifiesto)
+                ? new ArrayList<>(Files.readAllLines(manifiesto, StandardCharsets.UTF_8))
+                : new ArrayList<>();
+        lineas.add(segmento.getNombre() + " " + segmento.getDesde() + " " + segmento.getHasta()
+                + " " + segmento.getLineas());
+        Files.write(temporal, lineas, StandardCharsets.UTF_8);
+        Files.move(temporal, manifiesto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Nombre del segmento a partir de la primera fecha de registro, sin pisar uno existente
+     */
+    private static String nombreLibre(Path activo, long desde) {
+        String archivo = activo.getFileName().toString();
+        int punto = archivo.lastIndexOf('.');
+        String base = punto > 0 ? archivo.substring(0, punto) : archivo;
+        String extension = punto > 0 ? archivo.substring(punto) : "";
+        String fecha = LocalDateTime.ofEpochSecond(desde, 0, ZoneOffset.UTC).format(FORMATO_NOMBRE);
+
+        String nombre = base + "." + fecha + extension;
+        for (int n = 1; Files.exists(activo.resolveSibling(nombre))
+                || Files.exists(activo.resolveSibling(nombre + EXTENSION_COMPRIMIDO)); n++) {
+            nombre = base + "." + fecha + "-" + n + extension;
+        }
+        return nombre;
+    }
+}
@@ -0,0 +1,225 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copia local en binario de clientes, vehiculos y alquileres para mostrar datos
+ * al arrancar sin esperar a la red. Se lee entera en memoria de una vez: un fichero
+ * mapeado seguiria abierto hasta que lo liberase el GC y en Windows impediria
+ * sustituirlo al guardar la siguiente copia.
+ *
+ * Formato: cabecera (magic, version, fecha de guardado) y despues cada tabla como
+ * un entero con el numero de filas seguido de las filas. Las fechas van como dia
+ * epoch (long) y los textos como longitud + bytes UTF-8.
+ */
+public class SnapshotLocal {
+
+    private static final String ARCHIVO = "snapshot.bin";
+    private static final int MAGIC = 0x414C5153; // "ALQS"
+    private static final short VERSION = 1;
+
+    private final Path ruta;
+
+    public SnapshotLocal() {
+        this(Path.of(ARCHIVO));
+    }
+
+    public SnapshotLocal(Path ruta) {
+        this.ruta = ruta;
+    }
+
+    /**
+     * Datos leidos de la copia local; los alquileres comparten las instancias
+     * de cliente y vehiculo de las otras dos listas, que incluyen tambien los
+     * inactivos a los que hace referencia algun alquiler
+     */
+    public static class Datos {
+        private final List<Cliente> clientes;
+        private final List<Vehiculo> vehiculos;
+        private final List<Alquiler> alquileres;
+        private final long fechaGuardado;
+
+        public Datos(List<Cliente> clientes, List<Vehiculo> vehiculos, List<Alquiler> alquileres, long fechaGuardado) {
+            this.clientes = clientes;
+            this.vehiculos = vehiculos;
+            this.alquileres = alquileres;
+            this.fechaGuardado = fechaGuardado;
+        }
+
+        public List<Cliente> getClientes() {
+            return clientes;
+        }
+
+        public List<Vehiculo> getVehiculos() {
+            return vehiculos;
+        }
+
+        public List<Alquiler> getAlquileres() {
+            return alquileres;
+        }
+
+        /**
+         * @return instante de guardado en milisegundos epoch
+         */
+        public long getFechaGuardado() {
+            return fechaGuardado;
+        }
+    }
+
+    /**
+     * Guarda la copia local. Se escribe en un fichero temporal que despues
+     * sustituye al anterior, para no dejar nunca una copia a medias.
+     */
+    public void guardar(List<Cliente> clientes, List<Vehiculo> vehiculos, List<Alquiler> alquileres) throws IOException {
+        // Los clientes y vehiculos de los alquileres pueden no estar entre los activos
+        Map<Integer, Cliente> todosClientes = new LinkedHashMap<>();
+        Map<Integer, Vehiculo> todosVehiculos = new LinkedHashMap<>();
+        for (Cliente cliente : clientes) {
+            todosClientes.put(cliente.getId(), cliente);
+        }
+        for (Vehiculo vehiculo : vehiculos) {
+            todosVehiculos.put(vehiculo.getId(), vehiculo);
+        }
+        for (Alquiler alquiler : alquileres) {
+            todosClientes.putIfAbsent(alquiler.getCliente().getId(), alquiler.getCliente());
+            todosVehiculos.putIfAbsent(alquiler.getVehiculo().getId(), alquiler.getVehiculo());
+        }
+
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        try (DataOutputStream salida = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+            salida.writeInt(MAGIC);
+            salida.writeShort(VERSION);
+            salida.writeLong(System.currentTimeMillis());
+
+            salida.writeInt(todosClientes.size());
+            for (Cliente cliente : todosClientes.values()) {
+                salida.writeInt(cliente.getId());
+                escribirTexto(salida, cliente.getNombre());
+                escribirTexto(salida, cliente.getApellidos());
+                escribirTexto(salida, cliente.getDni());
+                salida.writeLong(cliente.getFechaNacimiento().toEpochDay());
+                salida.writeBoolean(cliente.isActivo());
+            }
+
+            salida.writeInt(todosVehiculos.size());
+            for (Vehiculo vehiculo : todosVehiculos.values()) {
+                salida.writeInt(vehiculo.getId());
+                escribirTexto(salida, vehiculo.getMatricula());
+                escribirTexto(salida, vehiculo.getPolizaSeguro());
+                salida.writeByte(vehiculo.getTipo().ordinal());
+                salida.writeLong(vehiculo.getFechaMatriculacion().toEpochDay());
+                salida.writeBoolean(vehiculo.isActivo());
+            }
+
+            salida.writeInt(alquileres.size());
+            for (Alquiler alquiler : alquileres) {
+                salida.writeInt(alquiler.getId());
+                salida.writeInt(alquiler.getCliente().getId());
+                salida.writeInt(alquiler.getVehiculo().getId());
+                salida.writeLong(alquiler.getFechaInicio().toEpochDay());
+                salida.writeLong(alquiler.getFechaFin().toEpochDay());
+                salida.writeBoolean(alquiler.isActivo());
+            }
+        }
+        Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee la copia local
+     * @return datos guardados, o null si no hay copia o no se puede leer
+     */
+    public Datos cargar() {
+        if (!Files.isRegularFile(ruta)) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(ruta));
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                System.err.println("Copia local con formato desconocido, se ignora");
+                return null;
+            }
+            long fechaGuardado = buffer.getLong();
+
+            int numClientes = buffer.getInt();
+            List<Cliente> clientes = new ArrayList<>(numClientes);
+            Map<Integer, Cliente> clientesPorId = new HashMap<>();
+            for (int i = 0; i < numClientes; i++) {
+                Cliente cliente = new Cliente();
+                cliente.setId(buffer.getInt());
+                cliente.setNombre(leerTexto(buffer));
+                cliente.setApellidos(leerTexto(buffer));
+                cliente.setDni(leerTexto(buffer));
+                cliente.setFechaNacimiento(LocalDate.ofEpochDay(buffer.getLong()));
+                cliente.setActivo(buffer.get() != 0);
+                clientes.add(cliente);
+                clientesPorId.put(cliente.getId(), cliente);
+            }
+
+            int numVehiculos = buffer.getInt();
+            List<Vehiculo> vehiculos = new ArrayList<>(numVehiculos);
+            Map<Integer, Vehiculo> vehiculosPorId = new HashMap<>();
+            TipoVehiculo[] tipos = TipoVehiculo.values();
+            for (int i = 0; i < numVehiculos; i++) {
+                Vehiculo vehiculo = new Vehiculo();
+                vehiculo.setId(buffer.getInt());
+                vehiculo.setMatricula(leerTexto(buffer));
+                vehiculo.setPolizaSeguro(leerTexto(buffer));
+                vehiculo.setTipo(tipos[buffer.get()]);
+                vehiculo.setFechaMatriculacion(LocalDate.ofEpochDay(buffer.getLong()));
+                vehiculo.setActivo(buffer.get() != 0);
+                vehiculos.add(vehiculo);
+                vehiculosPorId.put(vehiculo.getId(), vehiculo);
+            }
+
+            int numAlquileres = buffer.getInt();
+            List<Alquiler> alquileres = new ArrayList<>(numAlquileres);
+            for (int i = 0; i < numAlquileres; i++) {
+                Alquiler alquiler = new Alquiler();
+                alquiler.setId(buffer.getInt());
+                alquiler.setCliente(clientesPorId.get(buffer.getInt()));
+                alquiler.setVehiculo(vehiculosPorId.get(buffer.getInt()));
+                alquiler.setFechaInicio(LocalDate.ofEpochDay(buffer.getLong()));
+                alquiler.setFechaFin(LocalDate.ofEpochDay(buffer.getLong()));
+                alquiler.setActivo(buffer.get() != 0);
+                if (alquiler.getCliente() != null && alquiler.getVehiculo() != null) {
+                    alquileres.add(alquiler);
+                }
+            }
+            return new Datos(clientes, vehiculos, alquileres, fechaGuardado);
+        } catch (Exception e) {
+            System.err.println("Error al leer la copia local: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static String leerTexto(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
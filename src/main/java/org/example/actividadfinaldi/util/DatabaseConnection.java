@@ -2,51 +2,611 @@ package org.example.actividadfinaldi.util;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Gestiona la conexión con Supabase mediante API REST
  */
 public class DatabaseConnection {
 
-    private static final HttpClient client = HttpClient.newHttpClient();
+    private static volatile Executor executor;
+    private static volatile Duration timeoutConexion = Duration.ofSeconds(10);
+    private static volatile Duration timeoutPeticion = Duration.ofSeconds(30);
+    private static volatile HttpClient client = construirCliente();
+
+    /**
+     * GET identicos en curso, por URL: quien llega mientras otro espera comparte su respuesta
+     */
+    private static final SingleFlight<String, JSONArray> GETS_EN_CURSO = new SingleFlight<>();
+
+    /**
+     * Listas mapeadas en curso, por URL y mapeador
+     */
+    private static final SingleFlight<String, List<?>> LISTAS_EN_CURSO = new SingleFlight<>();
+
+    /**
+     * Latencias, codigos de estado y bytes de todas las peticiones
+     */
+    private static final MetricasPeticiones METRICAS = new MetricasPeticiones();
+
+    private static volatile PoliticaReintentos reintentos = PoliticaReintentos.POR_DEFECTO;
+
+    /**
+     * Peticiones simultaneas a Supabase, con prioridad para las interactivas
+     */
+    private static volatile LimitadorConcurrencia limitador = nuevoLimitador();
+
+    private static final int UMBRAL_FALLOS_DISYUNTOR = 5;
+    private static final Duration APERTURA_DISYUNTOR = Duration.ofSeconds(10);
+
+    private static volatile int umbralFallosDisyuntor = UMBRAL_FALLOS_DISYUNTOR;
+    private static volatile Duration aperturaDisyuntor = APERTURA_DISYUNTOR;
+
+    /**
+     * Un disyuntor por endpoint (servidor y tabla)
+     */
+    private static final Map<String, Disyuntor> DISYUNTORES = new ConcurrentHashMap<>();
 
     // IMPORTANTE: Cambia esta URL por la de tu proyecto Supabase
     private static final String BASE_URL = "https://abwizvhfubnachixobdj.supabase.co/rest/v1";
 
+    private static volatile String baseUrl = BASE_URL;
+
     // IMPORTANTE: Obtén tu anon key desde Project Settings > API > anon public
     private static final String ANON_KEY = "sb_publishable_F5GEPGmK7xgf3PmrV6z5gQ_RieoQA7y";
 
+    /**
+     * Convierte la respuesta HTTP en el resultado de cada operación
+     */
+    @FunctionalInterface
+    private interface ProcesadorRespuesta<T> {
+        T procesar(HttpResponse<String> response) throws Exception;
+    }
+
+    /**
+     * Un envio de la peticion; se repite en cada reintento
+     */
+    @FunctionalInterface
+    private interface Intento<R> {
+        HttpResponse<R> enviar() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Configura el executor usado por las peticiones asíncronas y sus continuaciones.
+     * Con null se vuelve al executor por defecto del HttpClient.
+     * @param nuevoExecutor executor a usar
+     */
+    public static synchronized void configurarExecutor(Executor nuevoExecutor) {
+        executor = nuevoExecutor;
+        client = construirCliente();
+    }
+
+    /**
+     * @return metricas de las peticiones enviadas (tambien publicadas por JMX con registrarMBean)
+     */
+    public static MetricasPeticiones getMetricas() {
+        return METRICAS;
+    }
+
+    /**
+     * Cambia la URL de la API REST (por ejemplo, a un servidor local de pruebas).
+     * Con null se vuelve a la URL del proyecto Supabase.
+     * @param url URL base sin barra final, p. ej. "http://localhost:3000/rest/v1"
+     */
+    public static void configurarBaseUrl(String url) {
+        baseUrl = url != null ? url : BASE_URL;
+    }
+
+    /**
+     * Configura los reintentos de las peticiones idempotentes
+     * @param politica politica a usar; null para la politica por defecto
+     */
+    public static void configurarReintentos(PoliticaReintentos politica) {
+        reintentos = politica != null ? politica : PoliticaReintentos.POR_DEFECTO;
+    }
+
+    /**
+     * Sustituye el limitador de peticiones simultaneas
+     * @param nuevoLimitador limitador a usar; null para uno nuevo con los valores por defecto
+     */
+    public static void configurarLimitador(LimitadorConcurrencia nuevoLimitador) {
+        limitador = nuevoLimitador != null ? nuevoLimitador : nuevoLimitador();
+    }
+
+    /**
+     * @return limitador de peticiones simultaneas (limite actual y peticiones esperando)
+     */
+    public static LimitadorConcurrencia getLimitador() {
+        return limitador;
+    }
+
+    /**
+     * Empieza en 8 peticiones simultaneas y se adapta entre 2 y 32 segun la latencia
+     */
+    private static LimitadorConcurrencia nuevoLimitador() {
+        return new LimitadorConcurrencia(8, 2, 32);
+    }
+
+    /**
+     * Configura los disyuntores de los endpoints y los reinicia a cerrado
+     * @param umbralFallos fallos seguidos que abren el disyuntor de un endpoint
+     * @param apertura tiempo que pasa abierto antes de dejar pasar una peticion de prueba
+     */
+    public static void configurarDisyuntor(int umbralFallos, Duration apertura) {
+        umbralFallosDisyuntor = umbralFallos;
+        aperturaDisyuntor = apertura;
+        DISYUNTORES.clear();
+    }
+
+    /**
+     * Configura los tiempos máximos de conexión y de cada petición.
+     * Una petición que supera su tiempo falla con HttpTimeoutException.
+     * @param conexion tiempo máximo para establecer la conexión
+     * @param peticion tiempo máximo hasta recibir las cabeceras de la respuesta
+     */
+    public static synchronized void configurarTimeouts(Duration conexion, Duration peticion) {
+        timeoutConexion = conexion;
+        timeoutPeticion = peticion;
+        client = construirCliente();
+    }
+
+    /**
+     * Cliente HTTP/2 (multiplexa las peticiones concurrentes en una conexión);
+     * si el servidor no lo admite se negocia HTTP/1.1
+     */
+    private static HttpClient construirCliente() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(timeoutConexion);
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
     /**
      * Crea un constructor base de peticiones HTTP con los headers necesarios
      */
     private static HttpRequest.Builder baseRequest(String url) {
+        return baseRequest(url, "return=representation");
+    }
+
+    /**
+     * Crea un constructor base de peticiones HTTP con la cabecera Prefer indicada
+     */
+    private static HttpRequest.Builder baseRequest(String url, String prefer) {
         return HttpRequest.newBuilder()
                 .uri(URI.create(url))
+                .timeout(timeoutPeticion)
+                .header("Accept-Encoding", "gzip, deflate")
                 .header("apikey", ANON_KEY)
                 .header("Authorization", "Bearer " + ANON_KEY)
                 .header("Content-Type", "application/json")
-                .header("Prefer", "return=representation");
+                .header("Prefer", prefer);
+    }
+
+    /**
+     * Envía una petición bloqueando el hilo actual
+     */
+    private static <T> T enviar(HttpRequest request, ProcesadorRespuesta<T> procesador) throws Exception {
+        return procesador.procesar(conReintentos(request, () -> enviarTexto(request)));
+    }
+
+    /**
+     * Un intento de envío con el cuerpo como texto, medido en las métricas
+     */
+    private static HttpResponse<String> enviarTexto(HttpRequest request) throws IOException, InterruptedException {
+        MetricasPeticiones.Medicion medicion = METRICAS.iniciar(request, limitador.adquirir(Prioridad.actual()));
+        HttpResponse<String> response;
+        try {
+            response = client.send(request, info -> cuerpoTexto(info, medicion));
+        } catch (IOException e) {
+            medicion.terminar(0);
+            throw e;
+        } catch (InterruptedException e) {
+            medicion.terminar(LimitadorConcurrencia.CANCELADA);
+            throw e;
+        }
+        medicion.terminar(response.statusCode());
+        return response;
+    }
+
+    /**
+     * Un intento de envío con el cuerpo en streaming; la medición termina al cerrar el cuerpo
+     */
+    private static HttpResponse<InputStream> enviarStream(HttpRequest request) throws IOException, InterruptedException {
+        MetricasPeticiones.Medicion medicion = METRICAS.iniciar(request, limitador.adquirir(Prioridad.actual()));
+        try {
+            return client.send(request, info -> HttpResponse.BodySubscribers.mapping(
+                    HttpResponse.BodySubscribers.ofInputStream(), cuerpo -> medicion.contar(cuerpo, info.statusCode())));
+        } catch (IOException e) {
+            medicion.terminar(0);
+            throw e;
+        } catch (InterruptedException e) {
+            medicion.terminar(LimitadorConcurrencia.CANCELADA);
+            throw e;
+        }
+    }
+
+    /**
+     * Envía una petición sin bloquear; los errores completan el futuro excepcionalmente
+     */
+    private static <T> CompletableFuture<T> enviarAsync(HttpRequest request, ProcesadorRespuesta<T> procesador) {
+        // La prioridad se toma del hilo que llama: las continuaciones corren en otros hilos
+        return intentoAsync(request, Prioridad.actual(), disyuntor(request), reintentos, 1)
+                .thenApply(response -> {
+                    try {
+                        return procesador.procesar(response);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Envía la petición repitiéndola mientras falle de forma transitoria y la política lo permita.
+     * Si el disyuntor del endpoint está abierto falla al momento sin enviarla.
+     */
+    private static <R> HttpResponse<R> conReintentos(HttpRequest request, Intento<R> intento) throws Exception {
+        PoliticaReintentos politica = reintentos;
+        Disyuntor disyuntor = disyuntor(request);
+        for (int numero = 1; ; numero++) {
+            if (!disyuntor.permitir()) {
+                METRICAS.contarRechazada();
+                throw disyuntorAbierto(request);
+            }
+            HttpResponse<R> response = null;
+            IOException error = null;
+            try {
+                response = intento.enviar();
+            } catch (IOException e) {
+                error = e;
+            }
+
+            long espera = resultadoIntento(request, politica, disyuntor, numero, response, error);
+            if (espera < 0) {
+                if (error != null) {
+                    throw error;
+                }
+                return response;
+            }
+            if (response != null && response.body() instanceof Closeable cuerpo) {
+                cuerpo.close();
+            }
+            METRICAS.contarReintento();
+            Thread.sleep(espera);
+        }
+    }
+
+    /**
+     * Versión asíncrona de conReintentos: las esperas no ocupan ningún hilo
+     */
+    private static CompletableFuture<HttpResponse<String>> intentoAsync(HttpRequest request, Prioridad prioridad,
+                                                                       Disyuntor disyuntor,
+                                                                       PoliticaReintentos politica, int numero) {
+        if (!disyuntor.permitir()) {
+            METRICAS.contarRechazada();
+            return CompletableFuture.failedFuture(disyuntorAbierto(request));
+        }
+        return limitador.adquirirAsync(prioridad)
+                .thenCompose(permiso -> intentoAsync(request, permiso, prioridad, disyuntor, politica, numero));
+    }
+
+    private static CompletableFuture<HttpResponse<String>> intentoAsync(HttpRequest request,
+                                                                       LimitadorConcurrencia.Permiso permiso,
+                                                                       Prioridad prioridad, Disyuntor disyuntor,
+                                                                       PoliticaReintentos politica, int numero) {
+        MetricasPeticiones.Medicion medicion = METRICAS.iniciar(request, permiso);
+        return client.sendAsync(request, info -> cuerpoTexto(info, medicion))
+                .handle((response, fallo) -> {
+                    Throwable causa = fallo instanceof CompletionException && fallo.getCause() != null
+                            ? fallo.getCause() : fallo;
+                    medicion.terminar(response != null ? response.statusCode()
+                            : causa instanceof CancellationException ? LimitadorConcurrencia.CANCELADA : 0);
+                    IOException error = causa instanceof IOException e ? e : null;
+                    long espera = causa != null && error == null
+                            ? -1 : resultadoIntento(request, politica, disyuntor, numero, response, error);
+                    if (espera < 0) {
+                        return causa != null ? CompletableFuture.<HttpResponse<String>>failedFuture(causa)
+                                : CompletableFuture.completedFuture(response);
+                    }
+                    METRICAS.contarReintento();
+                    Executor retardado = CompletableFuture.delayedExecutor(espera, TimeUnit.MILLISECONDS,
+                            executor != null ? executor : ForkJoinPool.commonPool());
+                    return CompletableFuture.supplyAsync(() -> numero + 1, retardado)
+                            .thenCompose(siguiente -> intentoAsync(request, prioridad, disyuntor, politica, siguiente));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Anota el resultado de un intento en el disyuntor y decide si se repite.
+     * Cuentan como fallo los errores de red y los códigos de fallo transitorio; el resto
+     * de respuestas (incluidas 4xx como 404 o 409) demuestran que el servidor responde.
+     * @return milisegundos a esperar antes de repetir, o -1 si no se repite
+     */
+    private static long resultadoIntento(HttpRequest request, PoliticaReintentos politica, Disyuntor disyuntor,
+                                         int numero, HttpResponse<?> response, IOException error) {
+        boolean fallo = error != null || PoliticaReintentos.esCodigoReintentable(response.statusCode());
+        if (!fallo) {
+            disyuntor.exito();
+            return -1;
+        }
+        disyuntor.fallo();
+        boolean reintentable = error == null || PoliticaReintentos.esErrorReintentable(error);
+        if (!reintentable || numero >= politica.getMaxIntentos() || !PoliticaReintentos.esIdempotente(request)) {
+            return -1;
+        }
+        return politica.espera(numero, response);
+    }
+
+    private static Disyuntor disyuntor(HttpRequest request) {
+        String endpoint = request.uri().getAuthority() + request.uri().getPath();
+        return DISYUNTORES.computeIfAbsent(endpoint,
+                k -> new Disyuntor(umbralFallosDisyuntor, aperturaDisyuntor));
+    }
+
+    private static Exception disyuntorAbierto(HttpRequest request) {
+        return new Exception("Servicio no disponible (" + request.uri().getPath()
+                + "): demasiados fallos seguidos, se reintentará más tarde");
+    }
+
+    /**
+     * Lee el cuerpo completo como texto, descomprimiéndolo según Content-Encoding
+     */
+    private static HttpResponse.BodySubscriber<String> cuerpoTexto(HttpResponse.ResponseInfo info,
+                                                                   MetricasPeticiones.Medicion medicion) {
+        String codificacion = info.headers().firstValue("Content-Encoding").orElse(null);
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+            medicion.recibidos(bytes.length);
+            try (InputStream entrada = descomprimir(new ByteArrayInputStream(bytes), codificacion)) {
+                return new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Devuelve el cuerpo de una respuesta en streaming ya descomprimido
+     * @param original cuerpo tal como llega; quien llama lo cierra aunque esto falle
+     */
+    private static InputStream cuerpoStream(HttpResponse<InputStream> response, InputStream original)
+            throws IOException {
+        return descomprimir(original, response.headers().firstValue("Content-Encoding").orElse(null));
+    }
+
+    /**
+     * Envuelve un flujo comprimido con gzip o deflate; sin codificación lo devuelve tal cual
+     * @param codificacion valor de la cabecera Content-Encoding, o null
+     */
+    static InputStream descomprimir(InputStream entrada, String codificacion) throws IOException {
+        if (codificacion == null) {
+            return entrada;
+        }
+        return switch (codificacion.trim().toLowerCase()) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(entrada);
+            case "deflate" -> new InflaterInputStream(entrada);
+            default -> entrada;
+        };
     }
 
     /**
-     * Realiza una petición GET a Supabase
+     * Realiza una petición GET a Supabase.
+     * Si ya hay un GET idéntico en curso se espera a ese y se comparte su resultado,
+     * que por tanto no debe modificarse.
      */
     public static JSONArray get(String tabla, String filtro) throws Exception {
-        String url = BASE_URL + "/" + tabla;
+        HttpRequest request = peticionGet(tabla, filtro);
+        return GETS_EN_CURSO.ejecutar(request.uri().toString(),
+                () -> enviar(request, DatabaseConnection::respuestaGet));
+    }
+
+    /**
+     * Realiza una petición GET a Supabase sin bloquear, compartiendo un GET idéntico en curso
+     */
+    public static CompletableFuture<JSONArray> getAsync(String tabla, String filtro) {
+        HttpRequest request = peticionGet(tabla, filtro);
+        return GETS_EN_CURSO.ejecutarAsync(request.uri().toString(),
+                () -> enviarAsync(request, DatabaseConnection::respuestaGet));
+    }
+
+    /**
+     * @return peticiones GET que no se enviaron por unirse a otra idéntica en curso
+     */
+    public static long getPeticionesAhorradas() {
+        return GETS_EN_CURSO.getAhorradas() + LISTAS_EN_CURSO.getAhorradas();
+    }
+
+    /**
+     * @return peticiones GET agrupables que se enviaron realmente
+     */
+    public static long getPeticionesEnviadas() {
+        return GETS_EN_CURSO.getEjecutadas() + LISTAS_EN_CURSO.getEjecutadas();
+    }
+
+    /**
+     * Comprueba si existe alguna fila que cumpla el filtro pidiendo solo el id de una fila
+     * @return true si hay al menos una fila
+     */
+    public static boolean existe(String tabla, String filtro) throws Exception {
+        return enviar(peticionExiste(tabla, filtro), DatabaseConnection::respuestaExiste);
+    }
+
+    /**
+     * Comprueba si existe alguna fila que cumpla el filtro sin bloquear
+     */
+    public static CompletableFuture<Boolean> existeAsync(String tabla, String filtro) {
+        return enviarAsync(peticionExiste(tabla, filtro), DatabaseConnection::respuestaExiste);
+    }
+
+    private static HttpRequest peticionExiste(String tabla, String filtro) {
+        return peticionGet(tabla, "select=id&limit=1&" + filtro);
+    }
+
+    private static boolean respuestaExiste(HttpResponse<String> response) throws Exception {
+        return respuestaGet(response).length() > 0;
+    }
+
+    /**
+     * Realiza una petición GET a Supabase leyendo la respuesta en streaming.
+     * Cada fila se entrega al consumidor según llega, sin construir el JSONArray completo,
+     * de modo que la memoria usada queda acotada a una fila.
+     */
+    public static void recorrer(String tabla, String filtro, Consumer<JSONObject> consumidor) throws Exception {
+        HttpRequest request = peticionGet(tabla, filtro);
+        HttpResponse<InputStream> response = conReintentos(request, () -> enviarStream(request));
+
+        // Se mide hasta leer la ultima fila (al cerrar el cuerpo), no solo hasta recibir las cabeceras.
+        // El original se cierra aparte: si la cabecera gzip es invalida no se llega a envolver.
+        try (InputStream original = response.body();
+             InputStream cuerpo = cuerpoStream(response, original)) {
+            if (response.statusCode() != 200) {
+                throw new Exception("Error en GET: " + response.statusCode());
+            }
+            leerArray(new InputStreamReader(cuerpo, StandardCharsets.UTF_8), consumidor);
+        }
+    }
+
+    /**
+     * Realiza una petición GET a Supabase mapeando cada fila según llega.
+     * Las llamadas idénticas en curso (misma URL y mismo mapeador) comparten la petición
+     * y las entidades mapeadas; cada una recibe su propia lista.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> getLista(String tabla, String filtro, Function<JSONObject, T> mapeador) throws Exception {
+        // El mapeador se identifica por su clase: cada referencia a método tiene la suya
+        String clave = peticionGet(tabla, filtro).uri() + "#" + mapeador.getClass().getName();
+        List<T> compartida = (List<T>) LISTAS_EN_CURSO.ejecutar(clave, () -> {
+            List<T> lista = new ArrayList<>();
+            recorrer(tabla, filtro, fila -> lista.add(mapeador.apply(fila)));
+            return lista;
+        });
+        return new ArrayList<>(compartida);
+    }
+
+    /**
+     * Realiza una petición GET de un rango de filas (cabeceras Range / Content-Range)
+     * leyendo la respuesta en streaming
+     * @param desde primera fila (incluida)
+     * @param hasta ultima fila (incluida)
+     * @param contar si se pide al servidor el recuento total
+     * @return total de filas según Content-Range, o -1 si el servidor no lo indica
+     */
+    public static long recorrerRango(String tabla, String filtro, int desde, int hasta, boolean contar,
+                                     Consumer<JSONObject> consumidor) throws Exception {
+        String url = baseUrl + "/" + tabla;
         if (filtro != null && !filtro.isEmpty()) {
             url += "?" + filtro;
         }
+        HttpRequest request = baseRequest(url, contar ? "count=exact" : "count=none")
+                .header("Range-Unit", "items")
+                .header("Range", desde + "-" + hasta)
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response = conReintentos(request, () -> enviarStream(request));
+
+        try (InputStream original = response.body();
+             InputStream cuerpo = cuerpoStream(response, original)) {
+            if (response.statusCode() != 200 && response.statusCode() != 206) {
+                throw new Exception("Error en GET: " + response.statusCode());
+            }
+            leerArray(new InputStreamReader(cuerpo, StandardCharsets.UTF_8), consumidor);
+        }
+        return totalDeContentRange(response.headers().firstValue("Content-Range").orElse(null));
+    }
 
-        HttpRequest request = baseRequest(url).GET().build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Extrae el total de una cabecera Content-Range ("0-49/1234" o "0-49/*")
+     * @return total o -1 si no se conoce
+     */
+    static long totalDeContentRange(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int barra = contentRange.indexOf('/');
+        if (barra < 0 || barra == contentRange.length() - 1) {
+            return -1;
+        }
+        String total = contentRange.substring(barra + 1).trim();
+        try {
+            return Long.parseLong(total);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Lee un array JSON de objetos de forma incremental
+     * @param lector origen del JSON
+     * @param consumidor recibe cada objeto del array
+     */
+    static void leerArray(Reader lector, Consumer<JSONObject> consumidor) {
+        JSONTokener tokener = new JSONTokener(lector);
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("Se esperaba un array JSON");
+        }
+        if (tokener.nextClean() == ']') {
+            return;
+        }
+        tokener.back();
+
+        while (true) {
+            Object valor = tokener.nextValue();
+            if (!(valor instanceof JSONObject)) {
+                throw tokener.syntaxError("Se esperaba un objeto JSON");
+            }
+            consumidor.accept((JSONObject) valor);
+
+            char siguiente = tokener.nextClean();
+            if (siguiente == ']') {
+                return;
+            }
+            if (siguiente != ',') {
+                throw tokener.syntaxError("Se esperaba ',' o ']'");
+            }
+        }
+    }
+
+    static HttpRequest peticionGet(String tabla, String filtro) {
+        String url = baseUrl + "/" + tabla;
+        if (filtro != null && !filtro.isEmpty()) {
+            url += "?" + filtro;
+        }
+        return baseRequest(url).GET().build();
+    }
 
+    private static JSONArray respuestaGet(HttpResponse<String> response) throws Exception {
         if (response.statusCode() == 200) {
             return new JSONArray(response.body());
         }
@@ -57,33 +617,142 @@ public class DatabaseConnection {
      * Realiza una petición POST a Supabase
      */
     public static JSONObject post(String tabla, JSONObject datos) throws Exception {
-        String url = BASE_URL + "/" + tabla;
+        return post(tabla, datos, null);
+    }
+
+    /**
+     * Realiza una petición POST a Supabase devolviendo solo las columnas indicadas
+     * @param columnas columnas de la fila devuelta separadas por comas (p. ej. "id"); null para todas
+     */
+    public static JSONObject post(String tabla, JSONObject datos, String columnas) throws Exception {
+        return enviar(peticionPost(tabla, datos, columnas), DatabaseConnection::respuestaPost);
+    }
+
+    /**
+     * Realiza una petición POST a Supabase sin bloquear
+     */
+    public static CompletableFuture<JSONObject> postAsync(String tabla, JSONObject datos) {
+        return enviarAsync(peticionPost(tabla, datos, null), DatabaseConnection::respuestaPost);
+    }
+
+    /**
+     * Realiza una petición POST a Supabase con varias filas (array JSON) en una sola petición
+     * @return filas insertadas, en el mismo orden que se enviaron
+     */
+    public static JSONArray postLote(String tabla, JSONArray datos) throws Exception {
+        return postLote(tabla, datos, null);
+    }
 
+    /**
+     * Realiza una petición POST con varias filas devolviendo solo las columnas indicadas
+     * @param columnas columnas de las filas devueltas separadas por comas; null para todas
+     */
+    public static JSONArray postLote(String tabla, JSONArray datos, String columnas) throws Exception {
+        String url = conColumnas(baseUrl + "/" + tabla, columnas);
         HttpRequest request = baseRequest(url)
                 .POST(HttpRequest.BodyPublishers.ofString(datos.toString()))
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return enviar(request, response -> {
+            if (response.statusCode() == 201) {
+                return new JSONArray(response.body());
+            }
+            throw new ErrorHttp(response.statusCode(), "Error en POST: " + response.statusCode() + " - " + response.body());
+        });
+    }
+
+    /**
+     * Realiza una inserción con resolución de conflictos en la columna única indicada
+     * (on_conflict), en una sola petición atómica
+     * @param columnaConflicto columna con restricción UNIQUE (dni, matricula...)
+     * @param ignorarDuplicados true: si ya existe no se toca (insertar si no existe);
+     *                          false: si ya existe se actualiza (upsert)
+     * @return filas insertadas o actualizadas; vacío si se ignoró un duplicado
+     */
+    public static JSONArray upsert(String tabla, JSONObject datos, String columnaConflicto,
+                                   boolean ignorarDuplicados) throws Exception {
+        return upsert(tabla, datos, columnaConflicto, ignorarDuplicados, null);
+    }
+
+    /**
+     * Igual que {@link #upsert(String, JSONObject, String, boolean)} devolviendo solo las columnas indicadas
+     * @param columnas columnas de las filas devueltas separadas por comas; null para todas
+     */
+    public static JSONArray upsert(String tabla, JSONObject datos, String columnaConflicto,
+                                   boolean ignorarDuplicados, String columnas) throws Exception {
+        String url = conColumnas(baseUrl + "/" + tabla + "?on_conflict=" + encode(columnaConflicto), columnas);
+        String resolucion = ignorarDuplicados ? "resolution=ignore-duplicates" : "resolution=merge-duplicates";
+
+        // Solo se reintenta con merge-duplicates (ver PoliticaReintentos.esIdempotente)
+        HttpRequest request = baseRequest(url, resolucion + ",return=representation")
+                .POST(HttpRequest.BodyPublishers.ofString(datos.toString()))
+                .build();
+
+        return enviar(request, response -> {
+            if (response.statusCode() == 201 || response.statusCode() == 200) {
+                return new JSONArray(response.body());
+            }
+            throw new Exception("Error en POST: " + response.statusCode() + " - " + response.body());
+        });
+    }
+
+    static HttpRequest peticionPost(String tabla, JSONObject datos, String columnas) {
+        String url = conColumnas(baseUrl + "/" + tabla, columnas);
+        return baseRequest(url)
+                .POST(HttpRequest.BodyPublishers.ofString(datos.toString()))
+                .build();
+    }
 
+    private static JSONObject respuestaPost(HttpResponse<String> response) throws Exception {
         if (response.statusCode() == 201) {
             JSONArray arr = new JSONArray(response.body());
             return arr.length() > 0 ? arr.getJSONObject(0) : null;
         }
-        throw new Exception("Error en POST: " + response.statusCode() + " - " + response.body());
+        throw new ErrorHttp(response.statusCode(), "Error en POST: " + response.statusCode() + " - " + response.body());
     }
 
     /**
      * Realiza una petición PATCH a Supabase
      */
     public static JSONObject patch(String tabla, String filtro, JSONObject datos) throws Exception {
-        String url = BASE_URL + "/" + tabla + "?" + filtro;
+        return enviar(peticionPatch(tabla, filtro, datos), DatabaseConnection::respuestaPatch);
+    }
 
-        HttpRequest request = baseRequest(url)
+    /**
+     * Realiza una petición PATCH a Supabase sin bloquear
+     */
+    public static CompletableFuture<JSONObject> patchAsync(String tabla, String filtro, JSONObject datos) {
+        return enviarAsync(peticionPatch(tabla, filtro, datos), DatabaseConnection::respuestaPatch);
+    }
+
+    /**
+     * Realiza una petición PATCH sin devolver las filas (Prefer: return=minimal).
+     * El número de filas afectadas llega en la cabecera Content-Range.
+     * @return true si se actualizó alguna fila
+     */
+    public static boolean patchMinimal(String tabla, String filtro, JSONObject datos) throws Exception {
+        String url = baseUrl + "/" + tabla + "?" + filtro;
+        HttpRequest request = baseRequest(url, "return=minimal,count=exact")
                 .method("PATCH", HttpRequest.BodyPublishers.ofString(datos.toString()))
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return enviar(request, response -> {
+            if (response.statusCode() == 204 || response.statusCode() == 200) {
+                long afectadas = totalDeContentRange(response.headers().firstValue("Content-Range").orElse(null));
+                return afectadas != 0;
+            }
+            throw new Exception("Error en PATCH: " + response.statusCode());
+        });
+    }
+
+    private static HttpRequest peticionPatch(String tabla, String filtro, JSONObject datos) {
+        String url = baseUrl + "/" + tabla + "?" + filtro;
+        return baseRequest(url)
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(datos.toString()))
+                .build();
+    }
 
+    private static JSONObject respuestaPatch(HttpResponse<String> response) throws Exception {
         if (response.statusCode() == 200) {
             JSONArray arr = new JSONArray(response.body());
             return arr.length() > 0 ? arr.getJSONObject(0) : null;
@@ -95,17 +764,37 @@ public class DatabaseConnection {
      * Realiza una petición DELETE a Supabase
      */
     public static boolean delete(String tabla, String filtro) throws Exception {
-        String url = BASE_URL + "/" + tabla + "?" + filtro;
+        return enviar(peticionDelete(tabla, filtro), DatabaseConnection::respuestaDelete);
+    }
 
-        HttpRequest request = baseRequest(url)
+    /**
+     * Realiza una petición DELETE a Supabase sin bloquear
+     */
+    public static CompletableFuture<Boolean> deleteAsync(String tabla, String filtro) {
+        return enviarAsync(peticionDelete(tabla, filtro), DatabaseConnection::respuestaDelete);
+    }
+
+    private static HttpRequest peticionDelete(String tabla, String filtro) {
+        String url = baseUrl + "/" + tabla + "?" + filtro;
+        return baseRequest(url)
                 .DELETE()
                 .build();
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
+    private static boolean respuestaDelete(HttpResponse<String> response) {
         return response.statusCode() == 204 || response.statusCode() == 200;
     }
 
+    /**
+     * Añade la proyección select= a una URL si se indican columnas
+     */
+    static String conColumnas(String url, String columnas) {
+        if (columnas == null || columnas.isEmpty()) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "select=" + columnas;
+    }
+
     /**
      * Codifica un valor para usarlo en URLs
      */
@@ -113,6 +802,15 @@ public class DatabaseConnection {
         return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
 
+    /**
+     * Codifica un valor para usarlo dentro de filtros lógicos or=(...)/and=(...),
+     * entrecomillándolo para que comas y paréntesis no rompan la expresión
+     */
+    public static String encodeValorLogico(String value) {
+        String entrecomillado = "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        return encode(entrecomillado);
+    }
+
     /**
      * Inicializa las tablas en la base de datos
      * NOTA: Con Supabase REST API, las tablas deben crearse desde el panel web
@@ -0,0 +1,64 @@
+package org.example.actividadfinaldi.util;
+
+import java.time.Duration;
+
+/**
+ * Disyuntor (circuit breaker) de un endpoint.
+ * Tras varios fallos seguidos se abre y las peticiones fallan al momento sin llegar a la red.
+ * Pasado el tiempo de apertura deja pasar una sola peticion de prueba: si va bien se
+ * cierra y si falla vuelve a abrirse otro periodo.
+ */
+final class Disyuntor {
+
+    enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final int umbralFallos;
+    private final long aperturaNanos;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long desde;
+
+    /**
+     * @param umbralFallos fallos seguidos que abren el disyuntor
+     * @param apertura tiempo abierto antes de probar de nuevo
+     */
+    Disyuntor(int umbralFallos, Duration apertura) {
+        this.umbralFallos = umbralFallos;
+        this.aperturaNanos = apertura.toNanos();
+    }
+
+    /**
+     * Indica si se puede enviar una peticion. Estando abierto y pasado el tiempo de apertura,
+     * la peticion que pregunta se convierte en la de prueba.
+     */
+    synchronized boolean permitir() {
+        if (estado == Estado.CERRADO) {
+            return true;
+        }
+        // Una prueba sin resultado durante todo un periodo se da por perdida y se permite otra
+        if (System.nanoTime() - desde < aperturaNanos) {
+            return false;
+        }
+        estado = Estado.SEMIABIERTO;
+        desde = System.nanoTime();
+        return true;
+    }
+
+    synchronized void exito() {
+        estado = Estado.CERRADO;
+        fallosSeguidos = 0;
+    }
+
+    synchronized void fallo() {
+        fallosSeguidos++;
+        if (estado == Estado.SEMIABIERTO || fallosSeguidos >= umbralFallos) {
+            estado = Estado.ABIERTO;
+            desde = System.nanoTime();
+        }
+    }
+
+    synchronized Estado getEstado() {
+        return estado;
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.actividadfinaldi.util;
+
+import javafx.concurrent.Task;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ejecuta el trabajo de acceso a datos fuera del hilo de JavaFX.
+ * Todas las tareas comparten un pool acotado de hilos daemon; si la cola se llena
+ * la tarea rechazada se cancela en lugar de bloquear la interfaz.
+ */
+public final class EjecutorTareas {
+
+    private static final int HILOS = 4;
+    private static final int CAPACIDAD_COLA = 64;
+
+    private static final AtomicInteger contador = new AtomicInteger();
+
+    private static final ThreadPoolExecutor EXECUTOR = crearExecutor();
+
+    private EjecutorTareas() {
+    }
+
+    private static ThreadPoolExecutor crearExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                HILOS, HILOS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(CAPACIDAD_COLA),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "tareas-bd-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                (tarea, ejecutor) -> {
+                    System.err.println("Cola de tareas llena, se descarta una tarea");
+                    if (tarea instanceof FutureTask<?> futura) {
+                        futura.cancel(false);
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Devuelve el executor compartido (para Service de JavaFX o CompletableFuture)
+     * @return executor acotado
+     */
+    public static Executor getExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Ejecuta un trabajo en segundo plano y entrega el resultado en el hilo de JavaFX
+     * @param trabajo trabajo a ejecutar fuera del hilo de JavaFX
+     * @param alTerminar recibe el resultado en el hilo de JavaFX
+     * @param alFallar recibe la excepción en el hilo de JavaFX
+     * @return tarea lanzada, por si se quiere cancelar
+     */
+    public static <T> Task<T> ejecutar(Callable<T> trabajo, Consumer<T> alTerminar, Consumer<Throwable> alFallar) {
+        Task<T> tarea = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return trabajo.call();
+            }
+        };
+        tarea.setOnSucceeded(e -> alTerminar.accept(tarea.getValue()));
+        tarea.setOnFailed(e -> alFallar.accept(tarea.getException()));
+        tarea.setOnCancelled(e -> alFallar.accept(new IllegalStateException("Operación cancelada")));
+        EXECUTOR.execute(tarea);
+        return tarea;
+    }
+
+    /**
+     * Detiene el pool, interrumpiendo las tareas en curso
+     */
+    public static void cerrar() {
+        EXECUTOR.shutdownNow();
+    }
+}
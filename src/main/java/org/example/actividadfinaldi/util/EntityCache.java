@@ -0,0 +1,199 @@
+package org.example.actividadfinaldi.util;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache en memoria de entidades, acotada y segura entre hilos.
+ * Indexa cada entidad por su ID y por una clave natural (DNI, matricula...),
+ * expira las entradas tras un TTL y desaloja la menos usada al llenarse (LRU).
+ */
+public class EntityCache<V> {
+
+    private final int capacidad;
+    private final long ttlNanos;
+    private final Function<V, Integer> funcionId;
+    private final Function<V, String> funcionClave;
+    private final LongSupplier reloj;
+
+    // LinkedHashMap en orden de acceso: el primer elemento es el menos usado
+    private final LinkedHashMap<Integer, Entrada<V>> porId = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> porClave = new HashMap<>();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    /**
+     * Crea una cache
+     * @param capacidad numero maximo de entidades
+     * @param ttl tiempo de vida de cada entrada
+     * @param funcionId obtiene el ID de la entidad
+     * @param funcionClave obtiene la clave natural de la entidad
+     */
+    public EntityCache(int capacidad, Duration ttl, Function<V, Integer> funcionId,
+                       Function<V, String> funcionClave) {
+        this(capacidad, ttl, funcionId, funcionClave, System::nanoTime);
+    }
+
+    EntityCache(int capacidad, Duration ttl, Function<V, Integer> funcionId,
+                Function<V, String> funcionClave, LongSupplier reloj) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva");
+        }
+        this.capacidad = capacidad;
+        this.ttlNanos = ttl.toNanos();
+        this.funcionId = Objects.requireNonNull(funcionId);
+        this.funcionClave = Objects.requireNonNull(funcionClave);
+        this.reloj = reloj;
+    }
+
+    /**
+     * Busca una entidad por su ID
+     * @param id ID de la entidad
+     * @return entidad o null si no esta o ha expirado
+     */
+    public synchronized V obtenerPorId(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        Entrada<V> entrada = porId.get(id);
+        if (entrada == null) {
+            fallos.incrementAndGet();
+            return null;
+        }
+        if (entrada.expiraEn - reloj.getAsLong() <= 0) {
+            eliminar(id, entrada);
+            fallos.incrementAndGet();
+            return null;
+        }
+        aciertos.incrementAndGet();
+        return entrada.valor;
+    }
+
+    /**
+     * Busca una entidad por su clave natural
+     * @param clave DNI, matricula...
+     * @return entidad o null si no esta o ha expirado
+     */
+    public synchronized V obtenerPorClave(String clave) {
+        if (clave == null) {
+            return null;
+        }
+        Integer id = porClave.get(clave);
+        if (id == null) {
+            fallos.incrementAndGet();
+            return null;
+        }
+        return obtenerPorId(id);
+    }
+
+    /**
+     * Guarda o reemplaza una entidad. Las entidades sin ID se ignoran.
+     * @param valor entidad a guardar
+     */
+    public synchronized void guardar(V valor) {
+        Integer id = valor == null ? null : funcionId.apply(valor);
+        if (id == null) {
+            return;
+        }
+        Entrada<V> anterior = porId.remove(id);
+        if (anterior != null) {
+            porClave.remove(anterior.clave, id);
+        }
+
+        String clave = funcionClave.apply(valor);
+        porId.put(id, new Entrada<>(valor, clave, reloj.getAsLong() + ttlNanos));
+        if (clave != null) {
+            porClave.put(clave, id);
+        }
+
+        Iterator<Map.Entry<Integer, Entrada<V>>> it = porId.entrySet().iterator();
+        while (porId.size() > capacidad && it.hasNext()) {
+            Map.Entry<Integer, Entrada<V>> masAntigua = it.next();
+            it.remove();
+            porClave.remove(masAntigua.getValue().clave, masAntigua.getKey());
+            desalojos.incrementAndGet();
+        }
+    }
+
+    /**
+     * Guarda varias entidades
+     * @param valores entidades a guardar
+     */
+    public synchronized void guardarTodos(Collection<? extends V> valores) {
+        for (V valor : valores) {
+            guardar(valor);
+        }
+    }
+
+    /**
+     * Elimina una entidad de la cache
+     * @param id ID de la entidad
+     */
+    public synchronized void invalidar(Integer id) {
+        if (id == null) {
+            return;
+        }
+        Entrada<V> entrada = porId.remove(id);
+        if (entrada != null) {
+            porClave.remove(entrada.clave, id);
+        }
+    }
+
+    /**
+     * Vacia la cache (los contadores se conservan)
+     */
+    public synchronized void limpiar() {
+        porId.clear();
+        porClave.clear();
+    }
+
+    public synchronized int tamano() {
+        return porId.size();
+    }
+
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    public long getDesalojos() {
+        return desalojos.get();
+    }
+
+    private void eliminar(Integer id, Entrada<V> entrada) {
+        porId.remove(id);
+        porClave.remove(entrada.clave, id);
+        desalojos.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "EntityCache[tamano=" + tamano() + ", aciertos=" + aciertos + ", fallos=" + fallos
+                + ", desalojos=" + desalojos + "]";
+    }
+
+    private static final class Entrada<V> {
+        private final V valor;
+        private final String clave;
+        private final long expiraEn;
+
+        private Entrada(V valor, String clave, long expiraEn) {
+            this.valor = valor;
+            this.clave = clave;
+            this.expiraEn = expiraEn;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.actividadfinaldi.util;
+
+/**
+ * Respuesta de error de Supabase, con su codigo HTTP para saber si merece la pena repetir la peticion
+ */
+public class ErrorHttp extends Exception {
+
+    private final int estado;
+
+    public ErrorHttp(int estado, String mensaje) {
+        super(mensaje);
+        this.estado = estado;
+    }
+
+    /**
+     * @return codigo HTTP de la respuesta
+     */
+    public int getEstado() {
+        return estado;
+    }
+
+    /**
+     * @return true si el fallo es transitorio (429, 5xx...) y la misma peticion podria salir bien mas tarde
+     */
+    public boolean esTransitorio() {
+        return PoliticaReintentos.esCodigoReintentable(estado);
+    }
+}
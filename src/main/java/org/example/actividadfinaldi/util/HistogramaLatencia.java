@@ -0,0 +1,98 @@
+package org.example.actividadfinaldi.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias sin bloqueos, con cubetas logaritmicas en microsegundos.
+ * Cada potencia de dos se divide en 4 cubetas, asi que un percentil se conoce con
+ * un error menor del 25 %; registrar un valor es un par de sumas atomicas.
+ */
+final class HistogramaLatencia {
+
+    private static final int BITS_SUBDIVISION = 2;
+    private static final int SUBDIVISIONES = 1 << BITS_SUBDIVISION;
+    private static final int CUBETAS = 64 * SUBDIVISIONES;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumaNanos = new LongAdder();
+    private final LongAccumulator maximoNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra una latencia
+     * @param nanos duracion en nanosegundos
+     */
+    void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cuentas.incrementAndGet(cubeta(valor / 1000));
+        total.increment();
+        sumaNanos.add(valor);
+        maximoNanos.accumulate(valor);
+    }
+
+    long getTotal() {
+        return total.sum();
+    }
+
+    long getSumaNanos() {
+        return sumaNanos.sum();
+    }
+
+    long getMaximoNanos() {
+        return maximoNanos.get();
+    }
+
+    /**
+     * Percentil aproximado (limite superior de la cubeta donde cae), nunca mayor que el maximo
+     * @param percentil entre 0 y 100
+     * @return latencia en nanosegundos, o 0 si no hay valores
+     */
+    long percentil(double percentil) {
+        long[] copia = new long[CUBETAS];
+        long n = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cuentas.get(i);
+            n += copia[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * n));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i) * 1000, getMaximoNanos());
+            }
+        }
+        return getMaximoNanos();
+    }
+
+    /**
+     * Cubeta de un valor: los valores menores que SUBDIVISIONES tienen cubeta propia;
+     * el resto se agrupan por su bit mas alto y los dos bits siguientes
+     */
+    static int cubeta(long micros) {
+        if (micros < SUBDIVISIONES) {
+            return (int) micros;
+        }
+        int bit = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (bit - BITS_SUBDIVISION)) & (SUBDIVISIONES - 1));
+        return (bit - BITS_SUBDIVISION + 1) * SUBDIVISIONES + sub;
+    }
+
+    /**
+     * Mayor valor en microsegundos que cae en la cubeta indicada
+     */
+    static long limiteSuperior(int cubeta) {
+        if (cubeta < SUBDIVISIONES) {
+            return cubeta;
+        }
+        int bit = cubeta / SUBDIVISIONES + BITS_SUBDIVISION - 1;
+        long sub = cubeta % SUBDIVISIONES;
+        long ancho = 1L << (bit - BITS_SUBDIVISION);
+        return ((SUBDIVISIONES + sub) << (bit - BITS_SUBDIVISION)) + ancho - 1;
+    }
+}
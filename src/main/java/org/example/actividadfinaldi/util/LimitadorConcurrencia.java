@@ -0,0 +1,211 @@
+package org.example.actividadfinaldi.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limita cuantas peticiones a Supabase hay en curso a la vez y decide quien pasa primero.
+ *
+ * El limite se adapta como en AIMD: crece en 1/limite con cada respuesta rapida (una unidad
+ * por ronda de peticiones) y se multiplica por 0.9 cuando una respuesta tarda mas del doble
+ * de la latencia base, o falla por red, 429 o 5xx. Solo se reduce una vez por ronda: las
+ * respuestas de peticiones empezadas antes de la ultima reduccion no vuelven a reducirlo.
+ *
+ * Las peticiones que esperan salen por orden de prioridad (y de llegada dentro de cada una).
+ * Las de precarga y segundo plano solo empiezan si las que estan en curso ocupan menos del
+ * 75 % y el 50 % del limite, de modo que siempre queda hueco para un clic.
+ */
+public class LimitadorConcurrencia {
+
+    /**
+     * Estado de una peticion abandonada por quien la hizo (carga sustituida o interrumpida).
+     * No dice nada de la carga del servidor: libera el hueco sin ajustar el limite.
+     */
+    public static final int CANCELADA = -1;
+
+    private static final double AUMENTO = 1.0;
+    private static final double FACTOR_REDUCCION = 0.9;
+    private static final double TOLERANCIA_LATENCIA = 2.0;
+
+    /**
+     * Peso de cada muestra al subir la latencia base, para que se adapte si la red cambia
+     */
+    private static final double ADAPTACION_BASE = 1.0 / 256;
+
+    private final int minimo;
+    private final int maximo;
+
+    private double limite;
+    private int enCurso;
+    private double latenciaBaseNanos = Double.MAX_VALUE;
+    private long ultimaReduccion = System.nanoTime();
+    private final Map<Prioridad, ArrayDeque<CompletableFuture<Permiso>>> esperando = new EnumMap<>(Prioridad.class);
+
+    /**
+     * Permiso para tener una peticion en curso; se devuelve con {@link #liberar(int, long)}
+     */
+    public final class Permiso {
+        private final AtomicBoolean liberado = new AtomicBoolean();
+
+        private Permiso() {
+        }
+
+        /**
+         * Devuelve el permiso e informa del resultado para ajustar el limite
+         * @param estado codigo HTTP de la respuesta, 0 si fallo la red o CANCELADA si se abandono
+         * @param latenciaNanos tiempo desde que se envio la peticion
+         */
+        public void liberar(int estado, long latenciaNanos) {
+            if (liberado.compareAndSet(false, true)) {
+                devolver(estado, latenciaNanos);
+            }
+        }
+    }
+
+    /**
+     * @param inicial limite de partida
+     * @param minimo el limite nunca baja de aqui
+     * @param maximo el limite nunca sube de aqui
+     */
+    public LimitadorConcurrencia(int inicial, int minimo, int maximo) {
+        if (minimo < 1 || inicial < minimo || maximo < inicial) {
+            throw new IllegalArgumentException("Debe cumplirse 1 <= minimo <= inicial <= maximo");
+        }
+        this.limite = inicial;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        for (Prioridad prioridad : Prioridad.values()) {
+            esperando.put(prioridad, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Espera, bloqueando el hilo, a que haya hueco para una peticion
+     * @param prioridad prioridad de la peticion
+     * @return permiso que hay que liberar al terminar
+     * @throws InterruptedException si se interrumpe la espera (sin quedarse con el permiso)
+     */
+    public Permiso adquirir(Prioridad prioridad) throws InterruptedException {
+        CompletableFuture<Permiso> espera = adquirirAsync(prioridad);
+        try {
+            return espera.get();
+        } catch (InterruptedException e) {
+            // Si el permiso llego a concederse mientras tanto se devuelve sin usar
+            if (!espera.cancel(false)) {
+                espera.join().liberar(200, 0);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Pide hueco para una peticion sin bloquear
+     * @param prioridad prioridad de la peticion
+     * @return futuro que se completa con el permiso cuando haya hueco
+     */
+    public CompletableFuture<Permiso> adquirirAsync(Prioridad prioridad) {
+        synchronized (this) {
+            if (!hayMasPrioritarias(prioridad) && cabe(prioridad)) {
+                enCurso++;
+                return CompletableFuture.completedFuture(new Permiso());
+            }
+            CompletableFuture<Permiso> espera = new CompletableFuture<>();
+            esperando.get(prioridad).addLast(espera);
+            return espera;
+        }
+    }
+
+    private void devolver(int estado, long latenciaNanos) {
+        List<CompletableFuture<Permiso>> concedidos = new ArrayList<>();
+        synchronized (this) {
+            enCurso--;
+            ajustar(estado, latenciaNanos);
+            for (Prioridad prioridad : Prioridad.values()) {
+                ArrayDeque<CompletableFuture<Permiso>> cola = esperando.get(prioridad);
+                while (!cola.isEmpty() && (cola.peekFirst().isDone() || cabe(prioridad))) {
+                    CompletableFuture<Permiso> espera = cola.pollFirst();
+                    if (!espera.isDone()) {
+                        enCurso++;
+                        concedidos.add(espera);
+                    }
+                }
+                if (!cola.isEmpty()) {
+                    // Si esta prioridad no cabe, las siguientes (con menos margen) tampoco
+                    break;
+                }
+            }
+        }
+        // Fuera del cerrojo: completar el futuro ejecuta la continuacion de quien esperaba
+        for (CompletableFuture<Permiso> espera : concedidos) {
+            if (!espera.complete(new Permiso())) {
+                // Cancelada en el ultimo momento: el hueco pasa a la siguiente, sin ajustar el limite
+                devolver(200, 0);
+            }
+        }
+    }
+
+    private void ajustar(int estado, long latenciaNanos) {
+        if (latenciaNanos <= 0 || estado == CANCELADA) {
+            return;
+        }
+        boolean sobrecarga = estado == 0 || estado == 429 || estado >= 500
+                || latenciaNanos > latenciaBaseNanos * TOLERANCIA_LATENCIA;
+        long ahora = System.nanoTime();
+        if (sobrecarga) {
+            if (ahora - latenciaNanos > ultimaReduccion) {
+                limite = Math.max(minimo, limite * FACTOR_REDUCCION);
+                ultimaReduccion = ahora;
+            }
+        } else {
+            limite = Math.min(maximo, limite + AUMENTO / limite);
+        }
+
+        if (latenciaNanos < latenciaBaseNanos) {
+            latenciaBaseNanos = latenciaNanos;
+        } else if (!sobrecarga) {
+            latenciaBaseNanos += (latenciaNanos - latenciaBaseNanos) * ADAPTACION_BASE;
+        }
+    }
+
+    private boolean hayMasPrioritarias(Prioridad prioridad) {
+        for (Prioridad otra : Prioridad.values()) {
+            if (otra.ordinal() > prioridad.ordinal()) {
+                return false;
+            }
+            if (esperando.get(otra).stream().anyMatch(espera -> !espera.isDone())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean cabe(Prioridad prioridad) {
+        return enCurso < Math.max(1, Math.floor(limite * prioridad.getFraccionLimite()));
+    }
+
+    /**
+     * @return limite actual de peticiones simultaneas
+     */
+    public synchronized int getLimite() {
+        return (int) limite;
+    }
+
+    public synchronized int getEnCurso() {
+        return enCurso;
+    }
+
+    /**
+     * @return peticiones esperando hueco con la prioridad indicada
+     */
+    public synchronized int getEsperando(Prioridad prioridad) {
+        return (int) esperando.get(prioridad).stream().filter(espera -> !espera.isDone()).count();
+    }
+}
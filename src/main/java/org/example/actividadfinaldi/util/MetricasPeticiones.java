@@ -0,0 +1,348 @@
+package org.example.actividadfinaldi.util;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metricas de las peticiones HTTP de DatabaseConnection: latencias por metodo y tabla,
+ * codigos de estado, bytes transferidos y peticiones en curso.
+ * Se publican como MXBean de la plataforma y, opcionalmente, en un resumen periodico por consola.
+ */
+public class MetricasPeticiones implements MetricasPeticionesMXBean {
+
+    public static final String NOMBRE_MBEAN = "org.example.actividadfinaldi:type=MetricasPeticiones";
+
+    /**
+     * Operaciones que se muestran en el resumen periodico, las de mas tiempo total
+     */
+    private static final int OPERACIONES_EN_RESUMEN = 10;
+
+    private final Map<String, Estadisticas> porOperacion = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> porCodigo = new ConcurrentHashMap<>();
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final LongAdder reintentos = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+
+    private ScheduledExecutorService programador;
+    private long peticionesUltimoResumen;
+
+    /**
+     * Contadores de una operacion (metodo y tabla)
+     */
+    private static final class Estadisticas {
+        final HistogramaLatencia latencias = new HistogramaLatencia();
+        final LongAdder errores = new LongAdder();
+        final LongAdder bytesEnviados = new LongAdder();
+        final LongAdder bytesRecibidos = new LongAdder();
+    }
+
+    /**
+     * Una peticion en curso. Se crea al enviarla y se cierra con terminar(estado) una sola vez,
+     * que ademas devuelve su permiso del limitador de concurrencia con la latencia medida.
+     */
+    final class Medicion {
+        private final String operacion;
+        private final long bytesEnviados;
+        private final LimitadorConcurrencia.Permiso permiso;
+        private final long inicio = System.nanoTime();
+        private final AtomicBoolean terminada = new AtomicBoolean();
+        private volatile long bytesRecibidos;
+
+        private Medicion(String operacion, long bytesEnviados, LimitadorConcurrencia.Permiso permiso) {
+            this.operacion = operacion;
+            this.bytesEnviados = bytesEnviados;
+            this.permiso = permiso;
+        }
+
+        void recibidos(long bytes) {
+            bytesRecibidos += bytes;
+        }
+
+        /**
+         * Envuelve el cuerpo de una respuesta en streaming para contar los bytes leidos.
+         * La peticion se da por terminada al cerrar el flujo, despues de leer la ultima fila.
+         * @param estado codigo HTTP de la respuesta
+         */
+        InputStream contar(InputStream entrada, int estado) {
+            return new FilterInputStream(entrada) {
+                @Override
+                public int read() throws IOException {
+                    int leido = super.read();
+                    if (leido >= 0) {
+                        recibidos(1);
+                    }
+                    return leido;
+                }
+
+                @Override
+                public int read(byte[] destino, int desde, int cantidad) throws IOException {
+                    int leidos = super.read(destino, desde, cantidad);
+                    if (leidos > 0) {
+                        recibidos(leidos);
+                    }
+                    return leidos;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        terminar(estado);
+                    }
+                }
+            };
+        }
+
+        /**
+         * Registra la peticion como terminada
+         * @param estado codigo HTTP de la respuesta, 0 si fallo la red o
+         *               LimitadorConcurrencia.CANCELADA si se abandono
+         */
+        void terminar(int estado) {
+            if (terminada.compareAndSet(false, true)) {
+                long nanos = System.nanoTime() - inicio;
+                registrar(this, estado, nanos);
+                if (permiso != null) {
+                    permiso.liberar(estado, nanos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empieza a medir una peticion
+     */
+    Medicion iniciar(HttpRequest request) {
+        return iniciar(request, null);
+    }
+
+    /**
+     * Empieza a medir una peticion que ocupa un permiso del limitador de concurrencia
+     * @param permiso permiso que se libera al terminar, o null
+     */
+    Medicion iniciar(HttpRequest request, LimitadorConcurrencia.Permiso permiso) {
+        enCurso.incrementAndGet();
+        long enviados = request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L);
+        return new Medicion(operacion(request), Math.max(0, enviados), permiso);
+    }
+
+    /**
+     * Nombre de la operacion: metodo HTTP y ultimo tramo de la ruta (la tabla)
+     */
+    static String operacion(HttpRequest request) {
+        String ruta = request.uri().getPath();
+        return request.method() + " " + ruta.substring(ruta.lastIndexOf('/') + 1);
+    }
+
+    private void registrar(Medicion medicion, int estado, long nanos) {
+        enCurso.decrementAndGet();
+        if (estado == LimitadorConcurrencia.CANCELADA) {
+            // Ni es un error ni su latencia es representativa
+            return;
+        }
+        Estadisticas estadisticas = porOperacion.computeIfAbsent(medicion.operacion, k -> new Estadisticas());
+        estadisticas.latencias.registrar(nanos);
+        estadisticas.bytesEnviados.add(medicion.bytesEnviados);
+        estadisticas.bytesRecibidos.add(medicion.bytesRecibidos);
+        if (estado == 0 || estado >= 400) {
+            estadisticas.errores.increment();
+        }
+        porCodigo.computeIfAbsent(estado, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Cuenta un intento repetido tras un fallo transitorio
+     */
+    void contarReintento() {
+        reintentos.increment();
+    }
+
+    /**
+     * Cuenta una peticion rechazada sin enviar porque el disyuntor del endpoint estaba abierto
+     */
+    void contarRechazada() {
+        rechazadas.increment();
+    }
+
+    /**
+     * Registra el MXBean en el servidor de la plataforma (si no lo estaba ya)
+     */
+    public void registrarMBean() {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nombre = new ObjectName(NOMBRE_MBEAN);
+            if (!servidor.isRegistered(nombre)) {
+                servidor.registerMBean(this, nombre);
+            }
+        } catch (Exception e) {
+            System.err.println("No se pudo registrar el MBean de métricas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe el resumen en la consola cada periodo, solo si hubo peticiones desde el anterior
+     * @param periodo intervalo entre resumenes
+     */
+    public synchronized void iniciarResumenPeriodico(Duration periodo) {
+        detenerResumenPeriodico();
+        programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "metricas-bd");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long milis = periodo.toMillis();
+        programador.scheduleAtFixedRate(this::escribirResumen, milis, milis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene el resumen periodico
+     */
+    public synchronized void detenerResumenPeriodico() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+    }
+
+    private void escribirResumen() {
+        long peticiones = getPeticiones();
+        synchronized (this) {
+            if (peticiones == peticionesUltimoResumen) {
+                return;
+            }
+            peticionesUltimoResumen = peticiones;
+        }
+        System.out.println(getResumen());
+    }
+
+    @Override
+    public long getPeticiones() {
+        long total = 0;
+        for (Estadisticas estadisticas : porOperacion.values()) {
+            total += estadisticas.latencias.getTotal();
+        }
+        return total;
+    }
+
+    @Override
+    public long getErrores() {
+        long total = 0;
+        for (Estadisticas estadisticas : porOperacion.values()) {
+            total += estadisticas.errores.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public int getEnCurso() {
+        return enCurso.get();
+    }
+
+    @Override
+    public long getReintentos() {
+        return reintentos.sum();
+    }
+
+    @Override
+    public long getRechazadasPorDisyuntor() {
+        return rechazadas.sum();
+    }
+
+    @Override
+    public long getBytesEnviados() {
+        long total = 0;
+        for (Estadisticas estadisticas : porOperacion.values()) {
+            total += estadisticas.bytesEnviados.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesRecibidos() {
+        long total = 0;
+        for (Estadisticas estadisticas : porOperacion.values()) {
+            total += estadisticas.bytesRecibidos.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getCodigosEstado() {
+        Map<String, Long> codigos = new TreeMap<>();
+        porCodigo.forEach((codigo, cuenta) -> codigos.put(String.valueOf(codigo), cuenta.sum()));
+        return codigos;
+    }
+
+    @Override
+    public List<ResumenOperacion> getOperaciones() {
+        List<ResumenOperacion> resumenes = new ArrayList<>();
+        porOperacion.forEach((operacion, e) -> resumenes.add(new ResumenOperacion(operacion,
+                e.latencias.getTotal(), e.errores.sum(),
+                milis(e.latencias.percentil(50)), milis(e.latencias.percentil(95)),
+                milis(e.latencias.percentil(99)), milis(e.latencias.getMaximoNanos()),
+                milis(e.latencias.getSumaNanos()), e.bytesEnviados.sum(), e.bytesRecibidos.sum())));
+        resumenes.sort(Comparator.comparingDouble(ResumenOperacion::getTiempoTotalMs).reversed());
+        return resumenes;
+    }
+
+    /**
+     * @param operacion metodo y tabla, p. ej. "GET clientes"
+     * @return estadisticas de esa operacion, o null si no ha habido peticiones
+     */
+    public ResumenOperacion getOperacion(String operacion) {
+        for (ResumenOperacion resumen : getOperaciones()) {
+            if (resumen.getOperacion().equals(operacion)) {
+                return resumen;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getResumen() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Peticiones BD: %d, %d errores, %d reintentos, %d rechazadas, %d en curso, "
+                        + "%d B enviados, %d B recibidos, códigos %s",
+                getPeticiones(), getErrores(), getReintentos(), getRechazadasPorDisyuntor(), getEnCurso(),
+                getBytesEnviados(), getBytesRecibidos(), getCodigosEstado()));
+        List<ResumenOperacion> operaciones = getOperaciones();
+        for (ResumenOperacion resumen : operaciones.subList(0, Math.min(OPERACIONES_EN_RESUMEN, operaciones.size()))) {
+            sb.append(System.lineSeparator()).append("  ").append(resumen);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reiniciar() {
+        porOperacion.clear();
+        porCodigo.clear();
+        reintentos.reset();
+        rechazadas.reset();
+        synchronized (this) {
+            peticionesUltimoResumen = 0;
+        }
+    }
+
+    private static double milis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
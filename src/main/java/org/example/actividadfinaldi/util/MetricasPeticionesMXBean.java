@@ -0,0 +1,59 @@
+package org.example.actividadfinaldi.util;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vista JMX de las metricas de las peticiones a Supabase (jconsole, VisualVM...)
+ */
+public interface MetricasPeticionesMXBean {
+
+    /**
+     * @return peticiones terminadas
+     */
+    long getPeticiones();
+
+    /**
+     * @return peticiones sin respuesta o con codigo 4xx/5xx
+     */
+    long getErrores();
+
+    /**
+     * @return peticiones enviadas que aun no han terminado
+     */
+    int getEnCurso();
+
+    /**
+     * @return intentos repetidos tras un fallo transitorio (cada uno cuenta tambien como peticion)
+     */
+    long getReintentos();
+
+    /**
+     * @return peticiones que fallaron al momento, sin enviarse, por tener el disyuntor abierto
+     */
+    long getRechazadasPorDisyuntor();
+
+    long getBytesEnviados();
+
+    long getBytesRecibidos();
+
+    /**
+     * @return numero de respuestas por codigo HTTP; "0" son las que no obtuvieron respuesta
+     */
+    Map<String, Long> getCodigosEstado();
+
+    /**
+     * @return estadisticas por metodo y tabla, de mayor a menor tiempo total
+     */
+    List<ResumenOperacion> getOperaciones();
+
+    /**
+     * @return resumen en texto, el mismo que se escribe periodicamente en el log
+     */
+    String getResumen();
+
+    /**
+     * Pone todos los contadores a cero
+     */
+    void reiniciar();
+}
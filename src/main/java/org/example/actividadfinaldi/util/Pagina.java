@@ -0,0 +1,57 @@
+package org.example.actividadfinaldi.util;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pagina de resultados de una consulta paginada por cursor (keyset).
+ * El cursor de la pagina siguiente es el ultimo elemento de esta.
+ */
+public class Pagina<T> {
+
+    private final List<T> elementos;
+    private final boolean hayMas;
+    private final long total;
+
+    public Pagina(List<T> elementos, boolean hayMas, long total) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.hayMas = hayMas;
+        this.total = total;
+    }
+
+    /**
+     * Construye una pagina a partir de hasta limite + 1 filas leidas:
+     * si sobra una fila es que hay mas paginas, y esa fila se descarta
+     * @param filas filas leidas (como mucho limite + 1)
+     * @param limite tamaño de pagina
+     * @param total total de filas segun Content-Range, o -1 si se desconoce
+     * @return pagina
+     */
+    public static <T> Pagina<T> de(List<T> filas, int limite, long total) {
+        boolean hayMas = filas.size() > limite;
+        List<T> elementos = hayMas ? filas.subList(0, limite) : filas;
+        return new Pagina<>(elementos, hayMas, total);
+    }
+
+    public List<T> getElementos() {
+        return elementos;
+    }
+
+    public boolean hayMas() {
+        return hayMas;
+    }
+
+    /**
+     * @return total de filas de la consulta, o -1 si no se ha pedido el recuento
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return ultimo elemento (cursor de la pagina siguiente) o null si esta vacia
+     */
+    public T getUltimo() {
+        return elementos.isEmpty() ? null : elementos.get(elementos.size() - 1);
+    }
+}
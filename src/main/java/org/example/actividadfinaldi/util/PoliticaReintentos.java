@@ -0,0 +1,104 @@
+package org.example.actividadfinaldi.util;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cuando y cuanto esperar para repetir una peticion fallida.
+ * Solo se repiten las peticiones idempotentes (GET, HEAD, PUT, PATCH, DELETE y los upsert
+ * con merge-duplicates sobre una columna unica) que fallan por la red o con 408, 429, 500,
+ * 502, 503 o 504. Los demas POST no: si la respuesta se pierde, repetirlos puede duplicar la fila.
+ * La espera crece exponencialmente con jitter completo: un valor aleatorio entre 0 y
+ * base * 2^(intento-1), acotado por la espera maxima, para no sincronizar a los clientes.
+ */
+public class PoliticaReintentos {
+
+    public static final PoliticaReintentos POR_DEFECTO =
+            new PoliticaReintentos(3, Duration.ofMillis(200), Duration.ofSeconds(2));
+
+    public static final PoliticaReintentos SIN_REINTENTOS =
+            new PoliticaReintentos(1, Duration.ZERO, Duration.ZERO);
+
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaximaMs;
+
+    /**
+     * @param maxIntentos intentos en total, incluido el primero
+     * @param esperaBase espera maxima antes del segundo intento
+     * @param esperaMaxima tope de cualquier espera
+     */
+    public PoliticaReintentos(int maxIntentos, Duration esperaBase, Duration esperaMaxima) {
+        if (maxIntentos < 1) {
+            throw new IllegalArgumentException("Debe haber al menos un intento");
+        }
+        this.maxIntentos = maxIntentos;
+        this.esperaBaseMs = esperaBase.toMillis();
+        this.esperaMaximaMs = esperaMaxima.toMillis();
+    }
+
+    public int getMaxIntentos() {
+        return maxIntentos;
+    }
+
+    /**
+     * Una peticion es idempotente si repetirla deja la BD igual que enviarla una vez
+     */
+    static boolean esIdempotente(HttpRequest request) {
+        return switch (request.method()) {
+            case "GET", "HEAD", "PUT", "PATCH", "DELETE" -> true;
+            case "POST" -> esUpsertFusionando(request);
+            default -> false;
+        };
+    }
+
+    /**
+     * Un upsert on_conflict con merge-duplicates deja la fila igual aunque se repita. Con
+     * ignore-duplicates no: repetir un alta que si llego devolveria "duplicado".
+     */
+    private static boolean esUpsertFusionando(HttpRequest request) {
+        String consulta = request.uri().getRawQuery();
+        return consulta != null && consulta.contains("on_conflict=")
+                && request.headers().firstValue("Prefer").orElse("").contains("resolution=merge-duplicates");
+    }
+
+    /**
+     * Codigos que indican un fallo transitorio del servidor
+     */
+    static boolean esCodigoReintentable(int estado) {
+        return estado == 408 || estado == 429 || estado == 500 || estado == 502 || estado == 503 || estado == 504;
+    }
+
+    /**
+     * Los errores de red se repiten; los tiempos agotados no, para no multiplicar la espera
+     */
+    static boolean esErrorReintentable(IOException error) {
+        return !(error instanceof HttpTimeoutException);
+    }
+
+    /**
+     * Espera antes del intento siguiente. Si la respuesta trae Retry-After en segundos se respeta
+     * (sin pasar de la espera maxima).
+     * @param intento intento que acaba de fallar (1 para el primero)
+     * @param response respuesta fallida, o null si no la hubo
+     * @return milisegundos de espera
+     */
+    long espera(int intento, HttpResponse<?> response) {
+        if (response != null) {
+            String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+            if (retryAfter != null) {
+                try {
+                    return Math.min(esperaMaximaMs, Long.parseLong(retryAfter.trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    // Retry-After con fecha: se usa la espera exponencial
+                }
+            }
+        }
+        long tope = Math.min(esperaMaximaMs, esperaBaseMs << Math.min(intento - 1, 30));
+        return tope <= 0 ? 0 : ThreadLocalRandom.current().nextLong(tope + 1);
+    }
+}
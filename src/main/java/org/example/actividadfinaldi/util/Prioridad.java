@@ -0,0 +1,64 @@
+package org.example.actividadfinaldi.util;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Prioridad de las peticiones a Supabase, de mayor a menor.
+ * Se fija por hilo con {@link #ejecutar(Callable)}; las peticiones lanzadas dentro la heredan
+ * y, si no se indica nada, una peticion es interactiva.
+ */
+public enum Prioridad {
+
+    /**
+     * Lo que espera el empleado tras un clic
+     */
+    INTERACTIVA(1.0),
+
+    /**
+     * Datos que probablemente se pediran enseguida
+     */
+    PRECARGA(0.75),
+
+    /**
+     * Sincronizaciones y cargas masivas
+     */
+    SEGUNDO_PLANO(0.5);
+
+    private static final ThreadLocal<Prioridad> ACTUAL = ThreadLocal.withInitial(() -> INTERACTIVA);
+
+    /**
+     * Fraccion del limite de concurrencia que pueden ocupar las peticiones en curso para que
+     * empiece una de esta prioridad: el resto queda libre para las de mayor prioridad
+     */
+    private final double fraccionLimite;
+
+    Prioridad(double fraccionLimite) {
+        this.fraccionLimite = fraccionLimite;
+    }
+
+    double getFraccionLimite() {
+        return fraccionLimite;
+    }
+
+    /**
+     * @return prioridad de las peticiones del hilo actual
+     */
+    public static Prioridad actual() {
+        return ACTUAL.get();
+    }
+
+    /**
+     * Ejecuta un trabajo con esta prioridad y restaura despues la anterior del hilo
+     * @param trabajo trabajo cuyas peticiones tendran esta prioridad
+     * @return resultado del trabajo
+     */
+    public <T> T ejecutar(Callable<T> trabajo) throws Exception {
+        Prioridad anterior = ACTUAL.get();
+        ACTUAL.set(this);
+        try {
+            return trabajo.call();
+        } finally {
+            ACTUAL.set(anterior);
+        }
+    }
+}
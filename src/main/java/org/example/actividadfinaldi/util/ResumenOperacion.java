@@ -0,0 +1,93 @@
+package org.example.actividadfinaldi.util;
+
+/**
+ * Estadisticas de un tipo de peticion (metodo y tabla) en un instante
+ */
+public class ResumenOperacion {
+
+    private final String operacion;
+    private final long peticiones;
+    private final long errores;
+    private final double p50Ms;
+    private final double p95Ms;
+    private final double p99Ms;
+    private final double maxMs;
+    private final double tiempoTotalMs;
+    private final long bytesEnviados;
+    private final long bytesRecibidos;
+
+    public ResumenOperacion(String operacion, long peticiones, long errores, double p50Ms, double p95Ms,
+                            double p99Ms, double maxMs, double tiempoTotalMs,
+                            long bytesEnviados, long bytesRecibidos) {
+        this.operacion = operacion;
+        this.peticiones = peticiones;
+        this.errores = errores;
+        this.p50Ms = p50Ms;
+        this.p95Ms = p95Ms;
+        this.p99Ms = p99Ms;
+        this.maxMs = maxMs;
+        this.tiempoTotalMs = tiempoTotalMs;
+        this.bytesEnviados = bytesEnviados;
+        this.bytesRecibidos = bytesRecibidos;
+    }
+
+    /**
+     * @return metodo HTTP y tabla, p. ej. "GET alquileres"
+     */
+    public String getOperacion() {
+        return operacion;
+    }
+
+    public long getPeticiones() {
+        return peticiones;
+    }
+
+    /**
+     * @return peticiones sin respuesta o con codigo 4xx/5xx
+     */
+    public long getErrores() {
+        return errores;
+    }
+
+    public double getP50Ms() {
+        return p50Ms;
+    }
+
+    public double getP95Ms() {
+        return p95Ms;
+    }
+
+    public double getP99Ms() {
+        return p99Ms;
+    }
+
+    public double getMaxMs() {
+        return maxMs;
+    }
+
+    /**
+     * @return suma de las latencias: lo que esta operacion ha hecho esperar en total
+     */
+    public double getTiempoTotalMs() {
+        return tiempoTotalMs;
+    }
+
+    public long getBytesEnviados() {
+        return bytesEnviados;
+    }
+
+    /**
+     * @return bytes recibidos tal como llegan por la red (comprimidos si el servidor comprime)
+     */
+    public long getBytesRecibidos() {
+        return bytesRecibidos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d pet., %d errores, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms, "
+                        + "total %.0f ms, %d B enviados, %d B recibidos",
+                operacion, peticiones, errores, p50Ms, p95Ms, p99Ms, maxMs, tiempoTotalMs,
+                bytesEnviados, bytesRecibidos);
+    }
+}
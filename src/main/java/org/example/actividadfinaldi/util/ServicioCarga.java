@@ -0,0 +1,59 @@
+package org.example.actividadfinaldi.util;
+
+import javafx.concurrent.Service;
+import javafx.concurrent.Task;
+
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Servicio reutilizable de carga de datos en segundo plano.
+ * Cada llamada a {@link #recargar()} cancela la carga anterior si sigue en curso,
+ * de modo que solo el resultado mas reciente llega a la interfaz.
+ */
+public class ServicioCarga<T> extends Service<T> {
+
+    private final Callable<T> trabajo;
+    private final Prioridad prioridad;
+
+    /**
+     * Crea el servicio
+     * @param trabajo carga a ejecutar fuera del hilo de JavaFX
+     * @param alTerminar recibe el resultado en el hilo de JavaFX
+     */
+    public ServicioCarga(Callable<T> trabajo, Consumer<T> alTerminar) {
+        this(trabajo, alTerminar, Prioridad.INTERACTIVA);
+    }
+
+    /**
+     * Crea el servicio con la prioridad indicada para sus peticiones a Supabase
+     * @param trabajo carga a ejecutar fuera del hilo de JavaFX
+     * @param alTerminar recibe el resultado en el hilo de JavaFX
+     * @param prioridad prioridad de las peticiones que haga la carga
+     */
+    public ServicioCarga(Callable<T> trabajo, Consumer<T> alTerminar, Prioridad prioridad) {
+        this.trabajo = trabajo;
+        this.prioridad = prioridad;
+        setExecutor(EjecutorTareas.getExecutor());
+        setOnSucceeded(e -> alTerminar.accept(getValue()));
+        setOnFailed(e -> System.err.println("Error en carga en segundo plano: " + getException().getMessage()));
+    }
+
+    /**
+     * Lanza la carga, cancelando la anterior si no ha terminado.
+     * Debe llamarse desde el hilo de JavaFX.
+     */
+    public void recargar() {
+        restart();
+    }
+
+    @Override
+    protected Task<T> createTask() {
+        return new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return prioridad.ejecutar(trabajo);
+            }
+        };
+    }
+}
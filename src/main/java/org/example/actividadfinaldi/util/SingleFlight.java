@@ -0,0 +1,114 @@
+package org.example.actividadfinaldi.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa llamadas identicas en curso: mientras una llamada con una clave no termina,
+ * las demas con la misma clave esperan y reciben su resultado en lugar de repetirla.
+ * Al terminar la clave se libera, asi que la siguiente llamada vuelve a ejecutarse.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+    private final AtomicLong ejecutadas = new AtomicLong();
+    private final AtomicLong ahorradas = new AtomicLong();
+
+    /**
+     * Ejecuta la llamada bloqueando, o espera a la identica que ya este en curso
+     * @param clave identifica llamadas equivalentes
+     * @param llamada trabajo a ejecutar si no hay otra en curso
+     * @return resultado, compartido con las llamadas agrupadas
+     */
+    public V ejecutar(K clave, Callable<V> llamada) throws Exception {
+        CompletableFuture<V> nuevo = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, nuevo);
+        if (existente != null) {
+            ahorradas.incrementAndGet();
+            return esperar(existente);
+        }
+
+        ejecutadas.incrementAndGet();
+        try {
+            V resultado = llamada.call();
+            enCurso.remove(clave, nuevo);
+            nuevo.complete(resultado);
+            return resultado;
+        } catch (Exception | Error e) {
+            enCurso.remove(clave, nuevo);
+            nuevo.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Lanza la llamada sin bloquear, o se une a la identica que ya este en curso
+     * @param clave identifica llamadas equivalentes
+     * @param llamada inicia el trabajo si no hay otro en curso
+     * @return futuro propio de quien llama; cancelarlo no afecta a los demas
+     */
+    public CompletableFuture<V> ejecutarAsync(K clave, Supplier<CompletableFuture<V>> llamada) {
+        CompletableFuture<V> nuevo = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, nuevo);
+        if (existente != null) {
+            ahorradas.incrementAndGet();
+            return existente.copy();
+        }
+
+        ejecutadas.incrementAndGet();
+        try {
+            llamada.get().whenComplete((resultado, error) -> {
+                enCurso.remove(clave, nuevo);
+                if (error != null) {
+                    nuevo.completeExceptionally(error);
+                } else {
+                    nuevo.complete(resultado);
+                }
+            });
+        } catch (RuntimeException e) {
+            enCurso.remove(clave, nuevo);
+            nuevo.completeExceptionally(e);
+        }
+        return nuevo.copy();
+    }
+
+    /**
+     * @return llamadas que se ejecutaron realmente
+     */
+    public long getEjecutadas() {
+        return ejecutadas.get();
+    }
+
+    /**
+     * @return llamadas que se ahorraron al unirse a otra identica en curso
+     */
+    public long getAhorradas() {
+        return ahorradas.get();
+    }
+
+    /**
+     * @return numero de claves con una llamada en curso
+     */
+    public int getEnCurso() {
+        return enCurso.size();
+    }
+
+    private static <V> V esperar(CompletableFuture<V> futuro) throws Exception {
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof Exception excepcion) {
+                throw excepcion;
+            }
+            if (causa instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
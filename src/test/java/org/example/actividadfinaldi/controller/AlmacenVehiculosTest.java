@@ -0,0 +1,82 @@
+package org.example.actividadfinaldi.controller;
+
+import javafx.collections.ObservableList;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del almacen de vehiculos y sus vistas por tipo
+ */
+@DisplayName("Tests de AlmacenVehiculos")
+class AlmacenVehiculosTest {
+
+    private AlmacenVehiculos almacen;
+
+    @BeforeEach
+    void setUp() {
+        almacen = new AlmacenVehiculos();
+        almacen.getVehiculos().setAll(List.of(
+                vehiculo(1, "1000AAA", TipoVehiculo.PEQUENO),
+                vehiculo(2, "2000BBB", TipoVehiculo.MEDIANO),
+                vehiculo(3, "3000CCC", TipoVehiculo.PEQUENO)));
+    }
+
+    private static Vehiculo vehiculo(int id, String matricula, TipoVehiculo tipo) {
+        Vehiculo vehiculo = new Vehiculo(matricula, "POL-" + id, tipo, LocalDate.of(2020, 1, 1));
+        vehiculo.setId(id);
+        return vehiculo;
+    }
+
+    @Test
+    @DisplayName("Las vistas por tipo comparten las instancias de la lista principal")
+    void testVistas() {
+        ObservableList<Vehiculo> pequenos = almacen.getVista(TipoVehiculo.PEQUENO);
+        assertEquals(2, pequenos.size());
+        assertSame(almacen.getVehiculos().get(0), pequenos.get(0));
+        assertEquals(1, almacen.getVista(TipoVehiculo.MEDIANO).size());
+        assertSame(almacen.getVehiculos(), almacen.getVista(null));
+        assertThrows(UnsupportedOperationException.class, () -> pequenos.add(vehiculo(9, "9", TipoVehiculo.PEQUENO)));
+    }
+
+    @Test
+    @DisplayName("Altas y cambios se reflejan en las vistas sin recargar")
+    void testCambiosIncrementales() {
+        ObservableList<Vehiculo> pequenos = almacen.getVista(TipoVehiculo.PEQUENO);
+        ObservableList<Vehiculo> medianos = almacen.getVista(TipoVehiculo.MEDIANO);
+
+        assertTrue(almacen.guardar(vehiculo(4, "1500DDD", TipoVehiculo.PEQUENO), false));
+        assertEquals("1500DDD", almacen.getVehiculos().get(1).getMatricula(), "Se inserta en orden de matricula");
+        assertEquals(3, pequenos.size());
+
+        Vehiculo cambiado = vehiculo(1, "1000AAA", TipoVehiculo.MEDIANO);
+        assertTrue(almacen.guardar(cambiado, false));
+        assertEquals(4, almacen.getVehiculos().size(), "Mismo ID: se sustituye");
+        assertEquals(2, pequenos.size());
+        assertTrue(medianos.contains(cambiado));
+        assertSame(cambiado, almacen.obtenerPorId(1));
+
+        almacen.getVehiculos().remove(cambiado);
+        assertNull(almacen.obtenerPorId(1));
+        assertEquals(1, medianos.size());
+    }
+
+    @Test
+    @DisplayName("Un alta posterior al ultimo cargado espera a su pagina")
+    void testAltaFueraDeLoCargado() {
+        Vehiculo ultimo = vehiculo(5, "9000ZZZ", TipoVehiculo.GRANDE);
+        assertFalse(almacen.guardar(ultimo, false));
+        assertTrue(almacen.getVista(TipoVehiculo.GRANDE).isEmpty());
+
+        assertTrue(almacen.guardar(ultimo, true));
+        assertSame(ultimo, almacen.getVehiculos().get(3));
+        assertEquals(1, almacen.getVista(TipoVehiculo.GRANDE).size());
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de AlquilerDAO que no necesitan conexion a la BD
+ */
+@DisplayName("Tests de AlquilerDAO sin conexion")
+class AlquilerDAOTest {
+
+    private final AlquilerDAO alquilerDAO = new AlquilerDAO();
+
+    @Test
+    @DisplayName("Filas embebidas comparten la misma instancia de cliente y vehículo")
+    void testMapearAlquileresCompartenInstancias() {
+        JSONObject cliente = new JSONObject()
+                .put("id", 7).put("nombre", "Ana").put("apellidos", "Ruiz")
+                .put("dni", "11111111H").put("fecha_nacimiento", "1980-01-01").put("activo", true);
+        JSONObject vehiculo = new JSONObject()
+                .put("id", 3).put("matricula", "1234ABC").put("poliza_seguro", "POL-1")
+                .put("tipo", "MEDIANO").put("fecha_matriculacion", "2020-01-01").put("activo", true);
+
+        JSONArray filas = new JSONArray();
+        for (int i = 1; i <= 3; i++) {
+            filas.put(new JSONObject()
+                    .put("id", i).put("cliente_id", 7).put("vehiculo_id", 3)
+                    .put("fecha_inicio", "2024-01-0" + i).put("fecha_fin", "2024-01-1" + i)
+                    .put("activo", true)
+                    .put("clientes", cliente).put("vehiculos", vehiculo));
+        }
+
+        List<Alquiler> alquileres = alquilerDAO.mapearAlquileres(filas);
+
+        assertEquals(3, alquileres.size());
+        assertSame(alquileres.get(0).getCliente(), alquileres.get(2).getCliente(),
+                "El mismo cliente debería materializarse una sola vez");
+        assertSame(alquileres.get(0).getVehiculo(), alquileres.get(1).getVehiculo(),
+                "El mismo vehículo debería materializarse una sola vez");
+    }
+
+    @Test
+    @DisplayName("Filtro de IDs usa el operador in")
+    void testFiltroIds() {
+        assertEquals("id=in.(1,2,3)", AlquilerDAO.filtroIds(List.of(1, 2, 3)));
+    }
+}
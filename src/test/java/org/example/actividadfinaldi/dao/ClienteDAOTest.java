@@ -0,0 +1,97 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.ServidorPostgrestLocal;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de ClienteDAO contra ServidorPostgrestLocal
+ */
+@DisplayName("Tests de ClienteDAO con servidor local")
+class ClienteDAOTest {
+
+    private static ServidorPostgrestLocal servidor;
+
+    private final ClienteDAO clienteDAO = new ClienteDAO();
+
+    @BeforeAll
+    static void arrancarServidor() throws Exception {
+        servidor = ServidorPostgrestLocal.iniciar();
+        DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+    }
+
+    @AfterAll
+    static void pararServidor() {
+        DatabaseConnection.configurarBaseUrl(null);
+        servidor.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        servidor.limpiar();
+        ClienteDAO.getCache().limpiar();
+    }
+
+    @Test
+    @DisplayName("Comprobar existencia de DNI inexistente")
+    void testExisteDniInexistente() {
+        assertFalse(clienteDAO.existeDni("DNI_INEXISTENTE_999"), "No debería existir");
+        assertFalse(clienteDAO.existeDni(null), "DNI nulo no existe");
+    }
+
+    @Test
+    @DisplayName("Insertar lote informa de los clientes incompletos")
+    void testInsertarLoteClientesIncompletos() {
+        Cliente sinDni = new Cliente("Ana", "Ruiz", null, LocalDate.of(1980, 1, 1));
+        Cliente sinFecha = new Cliente("Luis", "Gil", "LOTE0001", null);
+
+        ResultadoLote<Cliente> resultado = clienteDAO.insertarLote(List.of(sinDni, sinFecha));
+
+        assertFalse(resultado.esCompleto(), "El lote no debería estar completo");
+        assertTrue(resultado.getInsertados().isEmpty(), "No debería insertarse ningún cliente");
+        assertEquals(List.of(sinDni, sinFecha), resultado.getFallidos(), "Los fallidos deberían conservar el orden");
+        assertNotNull(resultado.getMotivo(sinDni), "Cada fallo debería tener motivo");
+        assertTrue(servidor.filas("clientes").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Un lote rechazado por la BD se repite fila a fila")
+    void testInsertarLoteRechazado() {
+        assertTrue(clienteDAO.insertar(new Cliente("Ana", "Ruiz", "11111111A", LocalDate.of(1980, 1, 1))));
+        Cliente nuevo = new Cliente("Luis", "Gil", "22222222B", LocalDate.of(1985, 1, 1));
+        Cliente repetido = new Cliente("Eva", "Sanz", "11111111A", LocalDate.of(1990, 1, 1));
+
+        ResultadoLote<Cliente> resultado = clienteDAO.insertarLote(List.of(nuevo, repetido));
+
+        assertEquals(List.of(nuevo), resultado.getInsertados());
+        assertEquals(List.of(repetido), resultado.getFallidos());
+        assertTrue(resultado.getMotivo(repetido).contains("409"));
+        assertEquals(2, servidor.filas("clientes").size());
+    }
+
+    @Test
+    @DisplayName("Un lote con resultado incierto no se repite")
+    void testInsertarLoteIncierto() {
+        Cliente ana = new Cliente("Ana", "Ruiz", "11111111A", LocalDate.of(1980, 1, 1));
+        Cliente luis = new Cliente("Luis", "Gil", "22222222B", LocalDate.of(1985, 1, 1));
+        servidor.perderRespuestas(1, 502);
+
+        ResultadoLote<Cliente> resultado = clienteDAO.insertarLote(List.of(ana, luis));
+
+        assertTrue(resultado.getInsertados().isEmpty());
+        assertEquals(List.of(ana, luis), resultado.getFallidos());
+        assertTrue(resultado.getMotivo(ana).startsWith("Resultado incierto"));
+        assertEquals(1, servidor.getPeticiones(), "No se repite fila a fila");
+        assertEquals(2, servidor.filas("clientes").size());
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.Pagina;
+import org.example.actividadfinaldi.util.PoliticaReintentos;
+import org.example.actividadfinaldi.util.ServidorPostgrestLocal;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de los DAO contra ServidorPostgrestLocal: deterministas y sin conexion a Supabase
+ */
+@DisplayName("Tests de los DAO con servidor local")
+class DaoServidorLocalTest {
+
+    private static ServidorPostgrestLocal servidor;
+
+    private final ClienteDAO clienteDAO = new ClienteDAO();
+    private final VehiculoDAO vehiculoDAO = new VehiculoDAO();
+    private final AlquilerDAO alquilerDAO = new AlquilerDAO();
+
+    @BeforeAll
+    static void arrancarServidor() throws Exception {
+        servidor = ServidorPostgrestLocal.iniciar();
+        DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+    }
+
+    @AfterAll
+    static void pararServidor() {
+        DatabaseConnection.configurarBaseUrl(null);
+        servidor.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        servidor.limpiar();
+        ClienteDAO.getCache().limpiar();
+        VehiculoDAO.getCache().limpiar();
+        AlquilerDAO.getIndice().limpiar();
+    }
+
+    @Test
+    @DisplayName("Insertar y buscar cliente por DNI")
+    void testInsertarYBuscarCliente() {
+        Cliente cliente = new Cliente("Ana", "Ruiz Gil", "11111111A", LocalDate.of(1985, 3, 14));
+
+        assertTrue(clienteDAO.insertar(cliente));
+        assertNotNull(cliente.getId());
+
+        ClienteDAO.getCache().limpiar();
+        Cliente encontrado = clienteDAO.buscarPorDni("11111111A");
+        assertNotNull(encontrado);
+        assertEquals(cliente.getId(), encontrado.getId());
+        assertEquals("Ruiz Gil", encontrado.getApellidos());
+        assertEquals(LocalDate.of(1985, 3, 14), encontrado.getFechaNacimiento());
+
+        ClienteDAO.getCache().limpiar();
+        assertTrue(clienteDAO.existeDni("11111111A"));
+        assertFalse(clienteDAO.existeDni("99999999Z"));
+        assertNull(clienteDAO.buscarPorDni("99999999Z"));
+    }
+
+    @Test
+    @DisplayName("El DNI duplicado se rechaza y el upsert actualiza")
+    void testDuplicadosYUpsert() {
+        Cliente original = new Cliente("Luis", "Sanz", "22222222B", LocalDate.of(1990, 1, 1));
+        assertEquals(ResultadoInsercion.CREADO, clienteDAO.insertarSiNoExiste(original));
+
+        Cliente repetido = new Cliente("Otro", "Nombre", "22222222B", LocalDate.of(1991, 2, 2));
+        assertEquals(ResultadoInsercion.DUPLICADO, clienteDAO.insertarSiNoExiste(repetido));
+        assertFalse(clienteDAO.insertar(repetido), "El POST normal debe fallar con 409");
+
+        assertTrue(clienteDAO.upsert(repetido));
+        assertEquals(original.getId(), repetido.getId());
+
+        List<JSONObject> filas = servidor.filas("clientes");
+        assertEquals(1, filas.size());
+        assertEquals("Otro", filas.get(0).getString("nombre"));
+    }
+
+    @Test
+    @DisplayName("Actualizar cliente con PATCH")
+    void testActualizarCliente() {
+        Cliente cliente = new Cliente("Eva", "Mora", "33333333C", LocalDate.of(1978, 6, 30));
+        assertTrue(clienteDAO.insertar(cliente));
+
+        cliente.setApellidos("Mora Vidal");
+        assertTrue(clienteDAO.actualizar(cliente));
+        assertEquals("Mora Vidal", servidor.filas("clientes").get(0).getString("apellidos"));
+
+        Cliente inexistente = new Cliente("X", "Y", "44444444D", LocalDate.of(1980, 1, 1));
+        inexistente.setId(999);
+        assertFalse(clienteDAO.actualizar(inexistente), "Sin filas afectadas no hay actualizacion");
+    }
+
+    @Test
+    @DisplayName("Paginacion por cursor de clientes")
+    void testPaginacionClientes() {
+        List<Cliente> clientes = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // Nombres repetidos para que el desempate por id entre en juego
+            clientes.add(new Cliente("Nombre" + (i % 3), "Apellido", "5555555" + i + "E", LocalDate.of(1980, 1, 1)));
+        }
+        assertTrue(clienteDAO.insertarLote(clientes).esCompleto());
+
+        List<Integer> vistos = new ArrayList<>();
+        Cliente ultimo = null;
+        Pagina<Cliente> pagina;
+        do {
+            pagina = clienteDAO.obtenerActivosPagina(ultimo, 3);
+            for (Cliente cliente : pagina.getElementos()) {
+                vistos.add(cliente.getId());
+                ultimo = cliente;
+            }
+        } while (pagina.hayMas());
+
+        assertEquals(7, vistos.size());
+        assertEquals(7, vistos.stream().distinct().count(), "Ninguna fila se repite entre paginas");
+    }
+
+    @Test
+    @DisplayName("Alquileres con cliente y vehiculo embebidos")
+    void testAlquileresEmbebidos() {
+        Cliente cliente = new Cliente("Ana", "Ruiz", "66666666F", LocalDate.of(1985, 3, 14));
+        Vehiculo vehiculo = new Vehiculo("1234ABC", "POL-1", TipoVehiculo.MEDIANO, LocalDate.of(2020, 6, 10));
+        assertTrue(clienteDAO.insertar(cliente));
+        assertTrue(vehiculoDAO.insertar(vehiculo));
+
+        Alquiler alquiler = new Alquiler(cliente, vehiculo, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 8));
+        assertTrue(alquilerDAO.insertar(alquiler));
+        assertNotNull(alquiler.getId());
+
+        Alquiler solapado = new Alquiler(cliente, vehiculo, LocalDate.of(2024, 2, 5), LocalDate.of(2024, 2, 10));
+        assertFalse(alquilerDAO.insertar(solapado));
+
+        ClienteDAO.getCache().limpiar();
+        VehiculoDAO.getCache().limpiar();
+        List<Alquiler> delCliente = alquilerDAO.obtenerPorCliente(cliente.getId());
+        assertEquals(1, delCliente.size());
+        assertEquals("66666666F", delCliente.get(0).getCliente().getDni());
+        assertEquals("1234ABC", delCliente.get(0).getVehiculo().getMatricula());
+
+        assertEquals(1, alquilerDAO.obtenerActivos().size());
+    }
+
+    @Test
+    @DisplayName("Recargar los activos libera los vehiculos de alquileres que ya no estan")
+    void testRecargaLiberaVehiculos() throws Exception {
+        Cliente cliente = new Cliente("Ana", "Ruiz", "88888888H", LocalDate.of(1985, 3, 14));
+        Vehiculo vehiculo = new Vehiculo("9999ZZZ", "POL-9", TipoVehiculo.MEDIANO, LocalDate.of(2020, 6, 10));
+        assertTrue(clienteDAO.insertar(cliente));
+        assertTrue(vehiculoDAO.insertar(vehiculo));
+        Alquiler alquiler = new Alquiler(cliente, vehiculo, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 8));
+        assertTrue(alquilerDAO.insertar(alquiler));
+        assertFalse(alquilerDAO.estaDisponible(vehiculo, LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 3)));
+
+        // Terminado desde otro puesto
+        assertTrue(DatabaseConnection.patchMinimal("alquileres", "id=eq." + alquiler.getId(),
+                new JSONObject().put("activo", false)));
+        assertTrue(alquilerDAO.obtenerActivos().isEmpty());
+        assertTrue(alquilerDAO.estaDisponible(vehiculo, LocalDate.of(2024, 3, 2), LocalDate.of(2024, 3, 3)));
+    }
+
+    @Test
+    @DisplayName("Un alquiler con cliente inexistente falla por la clave ajena")
+    void testClaveAjena() {
+        Cliente cliente = new Cliente("Ana", "Ruiz", "77777777G", LocalDate.of(1985, 3, 14));
+        cliente.setId(12345);
+        Vehiculo vehiculo = new Vehiculo("5678DEF", "POL-2", TipoVehiculo.PEQUENO, LocalDate.of(2021, 1, 1));
+        assertTrue(vehiculoDAO.insertar(vehiculo));
+
+        Alquiler alquiler = new Alquiler(cliente, vehiculo, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 4));
+        assertFalse(alquilerDAO.insertar(alquiler));
+        assertTrue(alquilerDAO.estaDisponible(vehiculo, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 4)),
+                "La reserva se libera si el POST falla");
+    }
+
+    @Test
+    @DisplayName("Los errores del servidor se traducen en false o null")
+    void testErroresInyectados() {
+        servidor.fallarSiguientes(1, 503);
+        Cliente cliente = new Cliente("Ana", "Ruiz", "88888888H", LocalDate.of(1985, 3, 14));
+        assertFalse(clienteDAO.insertar(cliente), "Un POST normal no se reintenta");
+        assertTrue(servidor.filas("clientes").isEmpty());
+
+        assertTrue(clienteDAO.insertar(cliente));
+
+        ClienteDAO.getCache().limpiar();
+        servidor.fallarSiguientes(1, 500);
+        assertNotNull(clienteDAO.buscarPorDni("88888888H"), "El GET se reintenta tras un 500");
+
+        ClienteDAO.getCache().limpiar();
+        servidor.fallarSiguientes(PoliticaReintentos.POR_DEFECTO.getMaxIntentos(), 500);
+        assertNull(clienteDAO.buscarPorDni("88888888H"));
+        assertEquals(2 + PoliticaReintentos.POR_DEFECTO.getMaxIntentos(), servidor.getErroresInyectados());
+    }
+
+    @Test
+    @DisplayName("Descargar los activos distingue una consulta fallida de una tabla vacia")
+    void testDescargarActivosFallida() throws Exception {
+        assertTrue(alquilerDAO.descargarActivos().isEmpty());
+
+        servidor.fallarSiguientes(PoliticaReintentos.POR_DEFECTO.getMaxIntentos(), 503);
+        assertThrows(Exception.class, alquilerDAO::descargarActivos);
+        assertTrue(alquilerDAO.descargarActivos().isEmpty());
+    }
+}
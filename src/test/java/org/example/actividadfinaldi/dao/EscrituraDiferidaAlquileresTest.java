@@ -0,0 +1,261 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.PoliticaReintentos;
+import org.example.actividadfinaldi.util.ServidorPostgrestLocal;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la escritura diferida de alquileres contra ServidorPostgrestLocal
+ */
+@DisplayName("Tests de EscrituraDiferidaAlquileres")
+class EscrituraDiferidaAlquileresTest {
+
+    private static final Duration PLAZO = Duration.ofSeconds(5);
+
+    private static ServidorPostgrestLocal servidor;
+
+    @TempDir
+    Path directorio;
+
+    private Path diario;
+    private final AlquilerDAO alquilerDAO = new AlquilerDAO();
+    private Cliente cliente;
+    private Vehiculo vehiculo;
+
+    @BeforeAll
+    static void arrancarServidor() throws Exception {
+        servidor = ServidorPostgrestLocal.iniciar();
+        DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+        DatabaseConnection.configurarReintentos(PoliticaReintentos.SIN_REINTENTOS);
+    }
+
+    @AfterAll
+    static void pararServidor() {
+        DatabaseConnection.configurarBaseUrl(null);
+        DatabaseConnection.configurarReintentos(null);
+        servidor.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        servidor.limpiar();
+        ClienteDAO.getCache().limpiar();
+        VehiculoDAO.getCache().limpiar();
+        AlquilerDAO.getIndice().limpiar();
+        diario = directorio.resolve(EscrituraDiferidaAlquileres.ARCHIVO);
+
+        cliente = new Cliente("Ana", "Ruiz", "11111111A", LocalDate.of(1985, 3, 14));
+        vehiculo = new Vehiculo("1234ABC", "POL-1", TipoVehiculo.MEDIANO, LocalDate.of(2020, 6, 10));
+        assertTrue(new ClienteDAO().insertar(cliente));
+        assertTrue(new VehiculoDAO().insertar(vehiculo));
+    }
+
+    @AfterEach
+    void tearDown() {
+        AlquilerDAO.desactivarEscrituraDiferida(Duration.ZERO);
+    }
+
+    private Alquiler alquiler(int dia) {
+        return new Alquiler(cliente, vehiculo, LocalDate.of(2024, 5, dia), LocalDate.of(2024, 5, dia + 2));
+    }
+
+    @Test
+    @DisplayName("Se confirma con ID provisional y se envia despues")
+    void testConfirmaYEnvia() throws Exception {
+        EscrituraDiferidaAlquileres diferida = AlquilerDAO.activarEscrituraDiferida(diario);
+        Alquiler primero = alquiler(1);
+        Alquiler segundo = alquiler(10);
+
+        assertTrue(alquilerDAO.insertar(primero));
+        assertTrue(alquilerDAO.insertar(segundo));
+        assertNotNull(primero.getId());
+        assertNotEquals(primero.getId(), segundo.getId());
+        assertFalse(alquilerDAO.insertar(alquiler(2)), "El solape se sigue rechazando al momento");
+
+        assertTrue(diferida.vaciar(PLAZO));
+        assertTrue(primero.getId() > 0);
+        assertTrue(segundo.getId() > 0);
+        assertEquals(2, servidor.filas("alquileres").size());
+        assertEquals(0, Files.size(diario), "Sin pendientes el diario se vacia");
+        assertEquals(2, alquilerDAO.obtenerActivos().size());
+    }
+
+    @Test
+    @DisplayName("Lo pendiente se muestra en las consultas hasta llegar a la BD")
+    void testPendientesEnConsultas() throws Exception {
+        AlquilerDAO.activarEscrituraDiferida(diario);
+        servidor.fallarSiguientes(1000, 503);
+
+        Alquiler alquiler = alquiler(1);
+        assertTrue(alquilerDAO.insertar(alquiler));
+        assertTrue(alquiler.getId() < 0);
+        servidor.fallarSiguientes(0, 503);
+
+        List<Alquiler> delCliente = alquilerDAO.obtenerPorCliente(cliente.getId());
+        assertEquals(1, delCliente.size());
+        assertSame(alquiler, delCliente.get(0));
+        assertTrue(alquilerDAO.obtenerPorCliente(cliente.getId() + 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Lo que no se pudo enviar se reenvia al volver a abrir el diario")
+    void testReenvioTrasReinicio() throws Exception {
+        EscrituraDiferidaAlquileres diferida = AlquilerDAO.activarEscrituraDiferida(diario);
+        servidor.fallarSiguientes(1000, 503);
+        assertTrue(alquilerDAO.insertar(alquiler(1)));
+        assertTrue(alquilerDAO.insertar(alquiler(10)));
+        assertFalse(diferida.vaciar(PLAZO));
+        AlquilerDAO.desactivarEscrituraDiferida(Duration.ZERO);
+        assertTrue(EscrituraDiferidaAlquileres.tienePendientes(diario));
+        assertTrue(servidor.filas("alquileres").isEmpty());
+
+        servidor.fallarSiguientes(0, 503);
+        AlquilerDAO.getIndice().limpiar();
+        diferida = AlquilerDAO.activarEscrituraDiferida(diario);
+        assertEquals(2, diferida.getNumeroPendientes());
+        assertFalse(alquilerDAO.estaDisponible(vehiculo, LocalDate.of(2024, 5, 2), LocalDate.of(2024, 5, 3)),
+                "Las altas recuperadas vuelven a ocupar el vehiculo");
+
+        assertTrue(diferida.vaciar(PLAZO));
+        assertEquals(2, servidor.filas("alquileres").size());
+        assertFalse(EscrituraDiferidaAlquileres.tienePendientes(diario));
+    }
+
+    @Test
+    @DisplayName("Solo reenviando el diario, las altas nuevas se insertan sin diferir")
+    void testSoloReenvio() throws Exception {
+        EscrituraDiferidaAlquileres diferida = AlquilerDAO.activarEscrituraDiferida(diario);
+        servidor.fallarSiguientes(1000, 503);
+        assertTrue(alquilerDAO.insertar(alquiler(1)));
+        AlquilerDAO.desactivarEscrituraDiferida(Duration.ZERO);
+        servidor.fallarSiguientes(0, 503);
+
+        AlquilerDAO.getIndice().limpiar();
+        diferida = AlquilerDAO.reenviarDiario(diario);
+        Alquiler nuevo = alquiler(10);
+        assertTrue(alquilerDAO.insertar(nuevo));
+        assertTrue(nuevo.getId() > 0, "El alta nueva va directa a la BD");
+        assertFalse(diferida.getPendientes().contains(nuevo));
+
+        assertTrue(diferida.vaciar(PLAZO));
+        assertEquals(2, servidor.filas("alquileres").size());
+        assertFalse(EscrituraDiferidaAlquileres.tienePendientes(diario));
+    }
+
+    @Test
+    @DisplayName("Un alta que ya llego a la BD antes del corte no se duplica")
+    void testSinDuplicadosTrasCorte() throws Exception {
+        Alquiler alquiler = alquiler(1);
+        JSONObject fila = AlquilerDAO.aJson(alquiler);
+        int id = DatabaseConnection.post("alquileres", fila, "id").getInt("id");
+        // Diario de un cierre inesperado: alta sin su linea de fin y una ultima linea cortada
+        String alta = new JSONObject().put("tipo", "alta").put("clave", "k1").put("provisional", -1)
+                .put("fila", fila).toString();
+        Files.writeString(diario, alta + "\n{\"tipo\":\"alta\",\"cla", StandardCharsets.UTF_8);
+
+        EscrituraDiferidaAlquileres diferida = AlquilerDAO.activarEscrituraDiferida(diario);
+        assertEquals(1, diferida.getNumeroPendientes());
+        assertTrue(diferida.vaciar(PLAZO));
+
+        assertEquals(1, servidor.filas("alquileres").size());
+        assertEquals(id, servidor.filas("alquileres").get(0).getInt("id"));
+    }
+
+    @Test
+    @DisplayName("Un alta recuperada se muestra con su cliente y su vehiculo completos")
+    void testRecuperadaCompleta() throws Exception {
+        Alquiler alquiler = alquiler(1);
+        String alta = new JSONObject().put("tipo", "alta").put("clave", "k1").put("provisional", -1)
+                .put("fila", AlquilerDAO.aJson(alquiler)).toString();
+        Files.writeString(diario, alta + "\n", StandardCharsets.UTF_8);
+        ClienteDAO.getCache().limpiar();
+        VehiculoDAO.getCache().limpiar();
+
+        // El primer envio falla y el siguiente espera al menos un segundo
+        servidor.fallarSiguientes(1000, 503);
+        AlquilerDAO.activarEscrituraDiferida(diario);
+        while (servidor.getErroresInyectados() == 0) {
+            Thread.sleep(5);
+        }
+        servidor.fallarSiguientes(0, 503);
+
+        List<Alquiler> activos = alquilerDAO.obtenerActivos();
+        assertEquals(1, activos.size());
+        assertEquals(-1, activos.get(0).getId());
+        assertEquals("11111111A", activos.get(0).getCliente().getDni());
+        assertEquals("1234ABC", activos.get(0).getVehiculo().getMatricula());
+    }
+
+    @Test
+    @DisplayName("Si se pierde la respuesta del lote se comprueba en la BD en vez de reenviarlo")
+    void testRespuestaPerdida() throws Exception {
+        EscrituraDiferidaAlquileres diferida = AlquilerDAO.activarEscrituraDiferida(diario);
+        DatabaseConnection.configurarReintentos(PoliticaReintentos.POR_DEFECTO);
+        try {
+            servidor.fallarSiguientes(1000, 503);
+            Alquiler primero = alquiler(1);
+            Alquiler segundo = alquiler(10);
+            assertTrue(alquilerDAO.insertar(primero));
+            assertTrue(alquilerDAO.insertar(segundo));
+            servidor.fallarSiguientes(0, 503);
+
+            servidor.perderRespuestas(1, 502);
+            assertFalse(diferida.vaciar(PLAZO), "Un lote con resultado incierto no se da por enviado");
+            assertEquals(2, servidor.filas("alquileres").size());
+            assertEquals(2, diferida.getNumeroPendientes());
+
+            assertTrue(diferida.vaciar(PLAZO));
+            assertEquals(2, servidor.filas("alquileres").size(), "No se duplica lo que ya llego");
+            assertEquals(servidor.filas("alquileres").get(0).getInt("id"), primero.getId());
+            assertEquals(servidor.filas("alquileres").get(1).getInt("id"), segundo.getId());
+        } finally {
+            DatabaseConnection.configurarReintentos(PoliticaReintentos.SIN_REINTENTOS);
+        }
+    }
+
+    @Test
+    @DisplayName("Un alta rechazada por la BD se descarta y libera el vehiculo")
+    void testRechazo() throws Exception {
+        EscrituraDiferidaAlquileres diferida = AlquilerDAO.activarEscrituraDiferida(diario);
+        List<String> motivos = new CopyOnWriteArrayList<>();
+        diferida.setAlRechazar((alquiler, motivo) -> motivos.add(motivo));
+
+        Cliente inexistente = new Cliente("Luis", "Sanz", "22222222B", LocalDate.of(1990, 1, 1));
+        inexistente.setId(12345);
+        Alquiler rechazado = new Alquiler(inexistente, vehiculo, LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 5));
+        Alquiler valido = alquiler(1);
+        assertTrue(alquilerDAO.insertar(rechazado));
+        assertTrue(alquilerDAO.insertar(valido));
+
+        assertTrue(diferida.vaciar(PLAZO));
+        assertEquals(1, motivos.size());
+        assertTrue(motivos.get(0).contains("409"));
+        assertTrue(rechazado.getId() < 0);
+        assertTrue(valido.getId() > 0);
+        assertTrue(alquilerDAO.estaDisponible(vehiculo, LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 5)));
+        assertEquals(1, servidor.filas("alquileres").size());
+        assertEquals(0, Files.size(diario));
+    }
+}
@@ -0,0 +1,268 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.ServidorPostgrestLocal;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Prueba de carga de los DAO contra ServidorPostgrestLocal.
+ * Varios hilos ejecutan a la vez una mezcla de lecturas y escrituras y al final se
+ * muestra el rendimiento (operaciones por segundo) y los percentiles de latencia
+ * de cada operacion. Ejecutar con:
+ *     mvn test-compile exec:exec@carga -Dcarga.args="hilos operaciones latenciaMs variacionMs probError"
+ * Todos los argumentos son opcionales (por defecto: 8 200 5 5 0).
+ */
+public class PruebaCarga {
+
+    private static final String[] OPERACIONES = {
+            "buscarCliente", "paginaClientes", "alquileresCliente", "insertarAlquiler", "actualizarVehiculo"
+    };
+
+    /**
+     * Peso de cada operacion en la mezcla, en el orden de OPERACIONES
+     */
+    private static final int[] PESOS = {35, 20, 20, 15, 10};
+
+    private static final LocalDate FECHA_BASE = LocalDate.of(2030, 1, 1);
+
+    private final ClienteDAO clienteDAO = new ClienteDAO();
+    private final VehiculoDAO vehiculoDAO = new VehiculoDAO();
+    private final AlquilerDAO alquilerDAO = new AlquilerDAO();
+
+    private final List<Cliente> clientes = new ArrayList<>();
+    private final List<Vehiculo> vehiculos = new ArrayList<>();
+
+    /**
+     * Cada alquiler insertado usa un dia distinto para que nunca haya solapes
+     */
+    private final AtomicInteger siguienteDia = new AtomicInteger();
+
+    /**
+     * Resultado de una ejecucion: latencias en nanosegundos por operacion
+     */
+    public static class Informe {
+        private final Map<String, long[]> latencias;
+        private final Map<String, Integer> fallos;
+        private final long duracionNanos;
+
+        Informe(Map<String, long[]> latencias, Map<String, Integer> fallos, long duracionNanos) {
+            this.latencias = latencias;
+            this.fallos = fallos;
+            this.duracionNanos = duracionNanos;
+        }
+
+        public long getTotal() {
+            long total = 0;
+            for (long[] valores : latencias.values()) {
+                total += valores.length;
+            }
+            return total;
+        }
+
+        public int getFallos() {
+            return fallos.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        public double getOperacionesPorSegundo() {
+            return getTotal() / (duracionNanos / 1e9);
+        }
+
+        /**
+         * Percentil de latencia (rango mas cercano) de una operacion, o de todas con null
+         * @param operacion nombre de la operacion o null
+         * @param percentil entre 0 y 100
+         * @return latencia en nanosegundos, o 0 si no hubo operaciones
+         */
+        public long percentil(String operacion, double percentil) {
+            long[] valores = operacion != null ? latencias.getOrDefault(operacion, new long[0]) : todas();
+            if (valores.length == 0) {
+                return 0;
+            }
+            int posicion = (int) Math.ceil(percentil / 100.0 * valores.length) - 1;
+            return valores[Math.max(0, Math.min(posicion, valores.length - 1))];
+        }
+
+        private long[] todas() {
+            long[] todas = latencias.values().stream().flatMapToLong(Arrays::stream).toArray();
+            Arrays.sort(todas);
+            return todas;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d operaciones en %.2f s: %.1f op/s, %d fallos%n",
+                    getTotal(), duracionNanos / 1e9, getOperacionesPorSegundo(), getFallos()));
+            sb.append(String.format("%-20s %7s %7s %9s %9s %9s %9s%n",
+                    "operacion", "n", "fallos", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            for (String operacion : latencias.keySet()) {
+                sb.append(fila(operacion, latencias.get(operacion).length, fallos.get(operacion), operacion));
+            }
+            sb.append(fila("total", getTotal(), getFallos(), null));
+            return sb.toString();
+        }
+
+        private String fila(String nombre, long n, int fallos, String operacion) {
+            return String.format("%-20s %7d %7d %9.2f %9.2f %9.2f %9.2f%n", nombre, n, fallos,
+                    percentil(operacion, 50) / 1e6, percentil(operacion, 90) / 1e6,
+                    percentil(operacion, 99) / 1e6, percentil(operacion, 100) / 1e6);
+        }
+    }
+
+    /**
+     * Crea los clientes y vehiculos sobre los que trabaja la carga
+     */
+    void preparar(int numClientes, int numVehiculos) {
+        for (int i = 0; i < numClientes; i++) {
+            clientes.add(new Cliente("Cliente" + i, "Carga", String.format("%08dC", i), LocalDate.of(1980, 1, 1)));
+        }
+        TipoVehiculo[] tipos = TipoVehiculo.values();
+        for (int i = 0; i < numVehiculos; i++) {
+            vehiculos.add(new Vehiculo(String.format("%04dCAR", i), "POL-" + i, tipos[i % tipos.length],
+                    LocalDate.of(2020, 1, 1)));
+        }
+        if (!clienteDAO.insertarLote(clientes).esCompleto() || !vehiculoDAO.insertarLote(vehiculos).esCompleto()) {
+            throw new IllegalStateException("No se pudieron crear los datos de la prueba");
+        }
+    }
+
+    /**
+     * Ejecuta la carga y espera a que terminen todos los hilos
+     * @param hilos numero de hilos concurrentes
+     * @param operacionesPorHilo operaciones que ejecuta cada hilo
+     * @param semilla semilla de la mezcla de operaciones
+     * @return informe con las latencias
+     */
+    Informe ejecutar(int hilos, int operacionesPorHilo, long semilla) throws Exception {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<Map<String, List<Long>>>> resultados = new ArrayList<>();
+        List<Map<String, Integer>> fallosPorHilo = new ArrayList<>();
+        SplittableRandom raiz = new SplittableRandom(semilla);
+
+        for (int h = 0; h < hilos; h++) {
+            SplittableRandom aleatorio = raiz.split();
+            Map<String, Integer> fallos = new LinkedHashMap<>();
+            fallosPorHilo.add(fallos);
+            resultados.add(ejecutor.submit(() -> {
+                Map<String, List<Long>> medidas = new LinkedHashMap<>();
+                salida.await();
+                for (int i = 0; i < operacionesPorHilo; i++) {
+                    String operacion = elegir(aleatorio);
+                    BooleanSupplier accion = accion(operacion, aleatorio);
+                    long inicio = System.nanoTime();
+                    boolean correcta = accion.getAsBoolean();
+                    medidas.computeIfAbsent(operacion, k -> new ArrayList<>()).add(System.nanoTime() - inicio);
+                    if (!correcta) {
+                        fallos.merge(operacion, 1, Integer::sum);
+                    }
+                }
+                return medidas;
+            }));
+        }
+
+        long inicio = System.nanoTime();
+        salida.countDown();
+        Map<String, List<Long>> juntas = new LinkedHashMap<>();
+        for (String operacion : OPERACIONES) {
+            juntas.put(operacion, new ArrayList<>());
+        }
+        for (Future<Map<String, List<Long>>> resultado : resultados) {
+            resultado.get().forEach((operacion, medidas) -> juntas.get(operacion).addAll(medidas));
+        }
+        long duracion = System.nanoTime() - inicio;
+        ejecutor.shutdown();
+
+        Map<String, long[]> latencias = new LinkedHashMap<>();
+        Map<String, Integer> fallos = new LinkedHashMap<>();
+        for (String operacion : OPERACIONES) {
+            long[] ordenadas = juntas.get(operacion).stream().mapToLong(Long::longValue).sorted().toArray();
+            latencias.put(operacion, ordenadas);
+            fallos.put(operacion, fallosPorHilo.stream().mapToInt(f -> f.getOrDefault(operacion, 0)).sum());
+        }
+        return new Informe(latencias, fallos, duracion);
+    }
+
+    private static String elegir(SplittableRandom aleatorio) {
+        int valor = aleatorio.nextInt(Arrays.stream(PESOS).sum());
+        for (int i = 0; i < PESOS.length; i++) {
+            valor -= PESOS[i];
+            if (valor < 0) {
+                return OPERACIONES[i];
+            }
+        }
+        return OPERACIONES[0];
+    }
+
+    /**
+     * Prepara la operacion indicada; la cache se invalida antes de leer para medir la red
+     */
+    private BooleanSupplier accion(String operacion, SplittableRandom aleatorio) {
+        Cliente cliente = clientes.get(aleatorio.nextInt(clientes.size()));
+        Vehiculo vehiculo = vehiculos.get(aleatorio.nextInt(vehiculos.size()));
+        return switch (operacion) {
+            case "buscarCliente" -> () -> {
+                ClienteDAO.getCache().invalidar(cliente.getId());
+                return clienteDAO.buscarPorDni(cliente.getDni()) != null;
+            };
+            case "paginaClientes" -> () -> !clienteDAO.obtenerActivosPagina(null, 20).getElementos().isEmpty();
+            case "alquileresCliente" -> () -> {
+                alquilerDAO.obtenerPorCliente(cliente.getId());
+                return true;
+            };
+            case "insertarAlquiler" -> () -> {
+                LocalDate inicio = FECHA_BASE.plusDays(siguienteDia.getAndIncrement());
+                return alquilerDAO.insertar(new Alquiler(cliente, vehiculo, inicio, inicio.plusDays(1)));
+            };
+            default -> () -> vehiculoDAO.actualizar(vehiculo);
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hilos = argumento(args, 0, 8);
+        int operaciones = argumento(args, 1, 200);
+        int latenciaMs = argumento(args, 2, 5);
+        int variacionMs = argumento(args, 3, 5);
+        double probabilidadError = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+
+        try (ServidorPostgrestLocal servidor = ServidorPostgrestLocal.iniciar()) {
+            DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+            PruebaCarga prueba = new PruebaCarga();
+            prueba.preparar(200, 50);
+
+            servidor.setLatencia(Duration.ofMillis(latenciaMs), Duration.ofMillis(variacionMs));
+            servidor.setErroresAleatorios(probabilidadError, 503);
+            System.out.printf("%d hilos x %d operaciones, latencia %d+%d ms, errores %.1f%%%n",
+                    hilos, operaciones, latenciaMs, variacionMs, probabilidadError * 100);
+
+            Informe informe = prueba.ejecutar(hilos, operaciones, 42);
+            System.out.print(informe);
+            System.out.printf("Peticiones HTTP: %d (%d errores inyectados)%n",
+                    servidor.getPeticiones(), servidor.getErroresInyectados());
+        } finally {
+            DatabaseConnection.configurarBaseUrl(null);
+        }
+    }
+
+    private static int argumento(String[] args, int posicion, int porDefecto) {
+        return args.length > posicion ? Integer.parseInt(args[posicion]) : porDefecto;
+    }
+}
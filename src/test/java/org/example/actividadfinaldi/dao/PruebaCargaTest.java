@@ -0,0 +1,62 @@
+package org.example.actividadfinaldi.dao;
+
+import org.example.actividadfinaldi.util.DatabaseConnection;
+import org.example.actividadfinaldi.util.ServidorPostgrestLocal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ejecucion corta de PruebaCarga para comprobar que el arnes funciona
+ */
+@DisplayName("Tests de PruebaCarga")
+class PruebaCargaTest {
+
+    private ServidorPostgrestLocal servidor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servidor = ServidorPostgrestLocal.iniciar();
+        DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+        ClienteDAO.getCache().limpiar();
+        VehiculoDAO.getCache().limpiar();
+        AlquilerDAO.getIndice().limpiar();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DatabaseConnection.configurarBaseUrl(null);
+        servidor.close();
+    }
+
+    @Test
+    @DisplayName("Carga concurrente sin errores")
+    void testCargaConcurrente() throws Exception {
+        PruebaCarga prueba = new PruebaCarga();
+        prueba.preparar(20, 10);
+
+        PruebaCarga.Informe informe = prueba.ejecutar(4, 25, 7);
+
+        assertEquals(100, informe.getTotal());
+        assertEquals(0, informe.getFallos(), informe.toString());
+        assertTrue(informe.getOperacionesPorSegundo() > 0);
+        assertTrue(informe.percentil(null, 50) <= informe.percentil(null, 99));
+        assertTrue(informe.percentil(null, 99) <= informe.percentil(null, 100));
+    }
+
+    @Test
+    @DisplayName("Los errores inyectados se cuentan como fallos")
+    void testCargaConErrores() throws Exception {
+        PruebaCarga prueba = new PruebaCarga();
+        prueba.preparar(20, 10);
+        servidor.setErroresAleatorios(0.5, 503);
+
+        PruebaCarga.Informe informe = prueba.ejecutar(2, 20, 7);
+
+        assertEquals(40, informe.getTotal());
+        assertTrue(informe.getFallos() > 0);
+    }
+}
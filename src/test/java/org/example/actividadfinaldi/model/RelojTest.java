@@ -0,0 +1,111 @@
+package org.example.actividadfinaldi.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del reloj del modelo y de los valores que se calculan una vez al dia
+ */
+@DisplayName("Tests de Reloj")
+class RelojTest {
+
+    private static final ZoneId MADRID = ZoneId.of("Europe/Madrid");
+
+    /**
+     * Reloj que solo avanza cuando el test lo pide
+     */
+    private static class RelojManual extends Clock {
+        private Instant instante;
+
+        RelojManual(LocalDate fecha) {
+            instante = fecha.atStartOfDay(MADRID).toInstant();
+        }
+
+        void avanzar(Duration duracion) {
+            instante = instante.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return MADRID;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instante;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        Reloj.configurar(null);
+    }
+
+    @Test
+    @DisplayName("Con un reloj fijo la fecha de hoy es la suya")
+    void testRelojFijo() {
+        Reloj.configurar(Clock.fixed(Instant.parse("2024-03-10T23:30:00Z"), MADRID));
+        assertEquals(LocalDate.of(2024, 3, 11), Reloj.hoy(), "Se usa la zona del reloj");
+
+        Cliente cliente = new Cliente("Ana", "Ruiz", "11111111A", LocalDate.of(1999, 3, 11));
+        assertEquals(25, cliente.getEdad());
+        assertTrue(cliente.esMayorDe25());
+
+        Vehiculo vehiculo = new Vehiculo("1234ABC", "POL-1", TipoVehiculo.MEDIANO, LocalDate.of(2014, 3, 12));
+        assertEquals(9, vehiculo.getAniosUso());
+        assertFalse(vehiculo.debeSerDadoDeBaja());
+    }
+
+    @Test
+    @DisplayName("Los valores cacheados se recalculan al cambiar de dia")
+    void testCambioDeDia() {
+        RelojManual reloj = new RelojManual(LocalDate.of(2024, 5, 14));
+        Reloj.configurar(reloj);
+        Cliente cliente = new Cliente("Ana", "Ruiz", "11111111A", LocalDate.of(1999, 5, 15));
+        Vehiculo vehiculo = new Vehiculo("1234ABC", "POL-1", TipoVehiculo.MEDIANO, LocalDate.of(2014, 5, 15));
+
+        assertEquals(24, cliente.getEdad());
+        assertEquals(9, vehiculo.getAniosUso());
+        reloj.avanzar(Duration.ofHours(23).plusMinutes(59));
+        assertEquals(24, cliente.getEdad());
+
+        reloj.avanzar(Duration.ofMinutes(1));
+        assertEquals(LocalDate.of(2024, 5, 15), Reloj.hoy());
+        assertEquals(25, cliente.getEdad());
+        assertTrue(vehiculo.debeSerDadoDeBaja());
+
+        cliente.setFechaNacimiento(LocalDate.of(2000, 1, 1));
+        assertEquals(24, cliente.getEdad(), "Cambiar la fecha invalida el valor cacheado");
+    }
+
+    @Test
+    @DisplayName("Los años cumplidos coinciden con Period.between")
+    void testAniosComoPeriod() {
+        LocalDate[] hoys = {LocalDate.of(2024, 2, 28), LocalDate.of(2024, 2, 29), LocalDate.of(2025, 2, 28),
+                LocalDate.of(2025, 3, 1), LocalDate.of(2024, 12, 31)};
+        for (LocalDate hoy : hoys) {
+            Reloj.configurar(Clock.fixed(hoy.atStartOfDay(MADRID).toInstant(), MADRID));
+            for (LocalDate fecha = LocalDate.of(1995, 1, 1); fecha.isBefore(LocalDate.of(2027, 1, 1));
+                 fecha = fecha.plusDays(3)) {
+                assertEquals(Period.between(fecha, hoy).getYears(), Reloj.aniosDesde(fecha), fecha + " / " + hoy);
+            }
+            assertEquals(Period.between(LocalDate.of(2000, 2, 29), hoy).getYears(),
+                    Reloj.aniosDesde(LocalDate.of(2000, 2, 29)));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del escritor por grupos de AlquilerFileService sobre un directorio temporal
+ */
+@DisplayName("Tests del escritor de AlquilerFileService")
+class AlquilerFileServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private Cliente clientePrueba;
+    private Vehiculo vehiculoPrueba;
+
+    @BeforeEach
+    void setUp() {
+        clientePrueba = new Cliente("María", "González López", "12345678A", LocalDate.of(1990, 5, 15));
+        clientePrueba.setId(1);
+        vehiculoPrueba = new Vehiculo("1234ABC", "POL-2024-001", TipoVehiculo.MEDIANO, LocalDate.of(2020, 6, 10));
+        vehiculoPrueba.setId(1);
+    }
+
+    private Alquiler alquiler(int dia) {
+        return new Alquiler(clientePrueba, vehiculoPrueba,
+                LocalDate.of(2024, 5, 1).plusDays(dia), LocalDate.of(2024, 5, 2).plusDays(dia));
+    }
+
+    @Test
+    @DisplayName("Cerrar escribe lo pendiente y rechaza nuevos alquileres")
+    void testCerrarEscribePendientes() throws IOException {
+        Path archivo = directorio.resolve("alquileres.txt");
+        AlquilerFileService servicio = new AlquilerFileService(archivo, 4, 100, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(servicio.guardarAlquiler(alquiler(i)));
+        }
+        servicio.cerrar();
+
+        assertEquals(10, Files.readAllLines(archivo, Charset.defaultCharset()).size());
+        assertFalse(servicio.guardarAlquiler(alquiler(0)));
+    }
+
+    @Test
+    @DisplayName("Las lineas de varios hilos se escriben completas y sin perderse")
+    void testVariosHilos() throws Exception {
+        Path archivo = directorio.resolve("alquileres.txt");
+        AlquilerFileService servicio = new AlquilerFileService(archivo, 16, 8, Duration.ofMillis(5),
+                Long.MAX_VALUE, false);
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int h = 0; h < 4; h++) {
+            Thread hilo = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    servicio.guardarAlquiler(alquiler(i));
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join(10_000);
+        }
+        servicio.vaciar();
+
+        List<String> lineas = Files.readAllLines(archivo, Charset.defaultCharset());
+        assertEquals(200, lineas.size());
+        for (String linea : lineas) {
+            assertTrue(linea.contains("1234ABC") && linea.contains("12345678A"), linea);
+        }
+        servicio.cerrar();
+    }
+
+    @Test
+    @DisplayName("Un grupo que cruza la medianoche se reparte entre los segmentos de cada dia")
+    void testGrupoPartidoPorDia() throws IOException {
+        Path archivo = directorio.resolve("alquileres.txt");
+        AlquilerFileService servicio = new AlquilerFileService(archivo, 16, 16, Duration.ofMinutes(1));
+        LocalDateTime medianoche = LocalDateTime.of(2024, 2, 2, 0, 0);
+        assertTrue(servicio.guardar(RegistroAlquiler.de(alquiler(0), medianoche.minusMinutes(1))));
+        assertTrue(servicio.guardar(RegistroAlquiler.de(alquiler(1), medianoche.plusMinutes(1))));
+        assertTrue(servicio.guardar(RegistroAlquiler.de(alquiler(2), medianoche.plusMinutes(2))));
+        servicio.cerrar();
+
+        List<SegmentosAlquileres.Segmento> segmentos = SegmentosAlquileres.leer(archivo);
+        assertEquals(1, segmentos.size());
+        assertEquals(1, segmentos.get(0).getLineas());
+        assertEquals(IndiceAlquileres.segundos(medianoche.minusMinutes(1)), segmentos.get(0).getHasta());
+        assertEquals(2, Files.readAllLines(archivo, Charset.defaultCharset()).size());
+    }
+
+    @Test
+    @DisplayName("Un registro sin indice se sella entero al arrancar y el activo empieza vacio")
+    void testMigracionRegistroSinIndice() throws IOException {
+        Path archivo = directorio.resolve("alquileres.txt");
+        RegistroAlquiler antiguo = new RegistroAlquiler(LocalDateTime.now(), "Luis Gil", "33333333C", "4444DDD",
+                LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 5), 3);
+        Files.writeString(archivo, antiguo.aLinea() + System.lineSeparator());
+
+        AlquilerFileService servicio = new AlquilerFileService(archivo, 16, 16, Duration.ofMillis(10),
+                Long.MAX_VALUE, false);
+        assertTrue(servicio.guardarAlquiler(alquiler(1)));
+        servicio.cerrar();
+
+        List<SegmentosAlquileres.Segmento> segmentos = SegmentosAlquileres.leer(archivo);
+        assertEquals(1, segmentos.size());
+        assertEquals(1, segmentos.get(0).getLineas());
+        List<String> activas = Files.readAllLines(archivo, Charset.defaultCharset());
+        assertEquals(1, activas.size());
+        assertNotEquals(antiguo.aLinea(), activas.get(0));
+        assertEquals(2, new HistorialAlquileres(archivo).getTotal());
+    }
+
+    @Test
+    @DisplayName("Lo aceptado mientras se cierra el servicio llega al archivo")
+    void testGuardarDuranteCierre() throws Exception {
+        for (int ronda = 0; ronda < 20; ronda++) {
+            Path archivo = directorio.resolve("alquileres-" + ronda + ".txt");
+            AlquilerFileService servicio = new AlquilerFileService(archivo, 4, 8, Duration.ofMillis(1),
+                    Long.MAX_VALUE, false);
+            assertTrue(servicio.guardarAlquiler(alquiler(0)));
+            AtomicInteger aceptadas = new AtomicInteger(1);
+
+            List<Thread> hilos = new ArrayList<>();
+            for (int h = 0; h < 8; h++) {
+                Thread hilo = new Thread(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        if (servicio.guardarAlquiler(alquiler(i))) {
+                            aceptadas.incrementAndGet();
+                        }
+                    }
+                });
+                hilos.add(hilo);
+                hilo.start();
+            }
+            // Con la cola llena hay hilos esperando para encolar cuando llega el cierre
+            Thread.sleep(2);
+            servicio.cerrar();
+            for (Thread hilo : hilos) {
+                hilo.join(10_000);
+            }
+
+            assertEquals(aceptadas.get(), Files.readAllLines(archivo, Charset.defaultCharset()).size(),
+                    "Ronda " + ronda);
+        }
+    }
+}
@@ -50,6 +50,11 @@ class Alquilerfileservicetest {
         vehiculoPrueba.setId(1);
     }
 
+    @AfterEach
+    void tearDown() {
+        fileService.cerrar();
+    }
+
     @Test
     @Order(1)
     @DisplayName("Guardar alquiler en archivo")
@@ -80,6 +85,8 @@ class Alquilerfileservicetest {
 
         fileService.guardarAlquiler(alquiler);
 
+        fileService.vaciar();
+
         File archivo = new File(ARCHIVO_TEST);
         assertTrue(archivo.exists(), "El archivo de alquileres debería existir");
     }
@@ -97,6 +104,8 @@ class Alquilerfileservicetest {
 
         fileService.guardarAlquiler(alquiler);
 
+        fileService.vaciar();
+
         try (BufferedReader reader = new BufferedReader(new FileReader(ARCHIVO_TEST))) {
             String ultimaLinea = null;
             String linea;
@@ -147,6 +156,8 @@ class Alquilerfileservicetest {
 
         fileService.guardarAlquiler(alquiler);
 
+        fileService.vaciar();
+
         try (BufferedReader reader = new BufferedReader(new FileReader(ARCHIVO_TEST))) {
             String ultimaLinea = null;
             String linea;
@@ -175,6 +186,8 @@ class Alquilerfileservicetest {
 
         fileService.guardarAlquiler(alquiler);
 
+        fileService.vaciar();
+
         try (BufferedReader reader = new BufferedReader(new FileReader(ARCHIVO_TEST))) {
             String ultimaLinea = null;
             String linea;
@@ -198,6 +211,7 @@ class Alquilerfileservicetest {
                 LocalDate.now().plusDays(5)
         );
         fileService.guardarAlquiler(alquiler1);
+        fileService.vaciar();
 
         // Contar líneas
         int lineasAntesDeSegundo = contarLineas();
@@ -210,6 +224,7 @@ class Alquilerfileservicetest {
                 LocalDate.now().plusDays(15)
         );
         fileService.guardarAlquiler(alquiler2);
+        fileService.vaciar();
 
         // Contar líneas nuevamente
         int lineasDespuesDeSegundo = contarLineas();
@@ -233,6 +248,8 @@ class Alquilerfileservicetest {
 
         fileService.guardarAlquiler(alquiler);
 
+        fileService.vaciar();
+
         try (BufferedReader reader = new BufferedReader(new FileReader(ARCHIVO_TEST))) {
             String ultimaLinea = null;
             String linea;
@@ -302,6 +319,8 @@ class Alquilerfileservicetest {
 
         fileService.guardarAlquiler(alquiler);
 
+        fileService.vaciar();
+
         try (BufferedReader reader = new BufferedReader(new FileReader(ARCHIVO_TEST))) {
             String ultimaLinea = null;
             String linea;
@@ -0,0 +1,207 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para HistorialAlquileres y el indice que mantiene AlquilerFileService
+ */
+@DisplayName("Tests de HistorialAlquileres")
+class HistorialAlquileresTest {
+
+    @TempDir
+    Path directorio;
+
+    private Alquiler alquiler(String dni, String matricula, int dia) {
+        Cliente cliente = new Cliente("Ana", "Ruiz", dni, LocalDate.of(1990, 1, 1));
+        Vehiculo vehiculo = new Vehiculo(matricula, "POL-" + matricula, TipoVehiculo.MEDIANO, LocalDate.of(2020, 1, 1));
+        return new Alquiler(cliente, vehiculo, LocalDate.of(2024, 3, dia), LocalDate.of(2024, 3, dia + 2));
+    }
+
+    private void guardar(Path archivo, Alquiler... alquileres) {
+        AlquilerFileService servicio = new AlquilerFileService(archivo, 16, 4, Duration.ofMillis(10));
+        for (Alquiler alquiler : alquileres) {
+            assertTrue(servicio.guardarAlquiler(alquiler));
+        }
+        servicio.cerrar();
+    }
+
+    @Test
+    @DisplayName("El indice se mantiene al escribir y permite buscar por DNI y matricula")
+    void testBusquedas() {
+        Path archivo = directorio.resolve("alquileres.txt");
+        guardar(archivo,
+                alquiler("11111111A", "1111AAA", 1),
+                alquiler("22222222B", "2222BBB", 5),
+                alquiler("11111111A", "2222BBB", 10));
+
+        assertTrue(Files.exists(directorio.resolve("alquileres.txt.idx")));
+        HistorialAlquileres historial = new HistorialAlquileres(archivo);
+        assertEquals(3, historial.getTotal());
+
+        List<RegistroAlquiler> deAna = historial.buscarPorDni("11111111A");
+        assertEquals(2, deAna.size());
+        assertEquals("1111AAA", deAna.get(0).getMatricula());
+        assertEquals(LocalDate.of(2024, 3, 10), deAna.get(1).getFechaInicio());
+
+        List<RegistroAlquiler> delCoche = historial.buscarPorMatricula("2222BBB");
+        assertEquals(2, delCoche.size());
+        assertEquals("22222222B", delCoche.get(0).getDni());
+        assertEquals("Ana Ruiz", delCoche.get(0).getCliente());
+
+        assertTrue(historial.buscarPorDni("99999999Z").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Las lineas escritas despues de abrir el historial tambien aparecen")
+    void testLecturaIncremental() {
+        Path archivo = directorio.resolve("alquileres.txt");
+        guardar(archivo, alquiler("11111111A", "1111AAA", 1));
+        HistorialAlquileres historial = new HistorialAlquileres(archivo);
+        assertEquals(1, historial.buscarPorDni("11111111A").size());
+
+        guardar(archivo, alquiler("11111111A", "3333CCC", 7));
+
+        assertEquals(2, historial.buscarPorDni("11111111A").size());
+        assertEquals(1, historial.buscarPorMatricula("3333CCC").size());
+    }
+
+    @Test
+    @DisplayName("Un registro anterior sin indice se indexa al volver a escribir")
+    void testRegistroSinIndice() throws Exception {
+        Path archivo = directorio.resolve("alquileres.txt");
+        RegistroAlquiler antiguo = new RegistroAlquiler(LocalDateTime.of(2023, 12, 31, 10, 0), "Luis Gil",
+                "33333333C", "4444DDD", LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 5), 3);
+        Files.writeString(archivo, antiguo.aLinea() + System.lineSeparator() + "linea con otro formato"
+                + System.lineSeparator());
+
+        guardar(archivo, alquiler("33333333C", "1111AAA", 1));
+
+        HistorialAlquileres historial = new HistorialAlquileres(archivo);
+        assertEquals(2, historial.getTotal(), "La linea sin formato no se indexa");
+        List<RegistroAlquiler> deLuis = historial.buscarPorDni("33333333C");
+        assertEquals(2, deLuis.size());
+        assertEquals(LocalDateTime.of(2023, 12, 31, 10, 0), deLuis.get(0).getFechaRegistro());
+        assertEquals(3, deLuis.get(0).getDias());
+    }
+
+    @Test
+    @DisplayName("Las lineas sin entrada tras una caida se indexan detras de las que ya la tenian")
+    void testColaSinIndice() throws Exception {
+        Path archivo = directorio.resolve("alquileres.txt");
+        guardar(archivo, alquiler("11111111A", "1111AAA", 1), alquiler("22222222B", "2222BBB", 5));
+        // Linea escrita justo antes de una caida, sin su entrada en el indice
+        RegistroAlquiler huerfano = new RegistroAlquiler(LocalDateTime.now(), "Luis Gil",
+                "33333333C", "4444DDD", LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 5), 3);
+        Files.writeString(archivo, huerfano.aLinea() + System.lineSeparator(), StandardOpenOption.APPEND);
+
+        guardar(archivo, alquiler("44444444D", "5555EEE", 10));
+
+        HistorialAlquileres historial = new HistorialAlquileres(archivo);
+        assertEquals(4, historial.getTotal());
+        assertEquals(1, historial.buscarPorDni("11111111A").size());
+        assertEquals(1, historial.buscarPorDni("22222222B").size());
+        assertEquals(1, historial.buscarPorDni("33333333C").size());
+        assertEquals(1, historial.buscarPorDni("44444444D").size());
+    }
+
+    @Test
+    @DisplayName("Buscar por intervalo de fechas de registro")
+    void testBuscarEntre() throws Exception {
+        Path archivo = directorio.resolve("alquileres.txt");
+        StringBuilder texto = new StringBuilder();
+        for (int dia = 1; dia <= 5; dia++) {
+            texto.append(new RegistroAlquiler(LocalDateTime.of(2024, 2, dia, 12, 0), "Ana Ruiz", "DNI" + dia,
+                    "MAT" + dia, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 2), 1).aLinea())
+                    .append(System.lineSeparator());
+        }
+        Files.writeString(archivo, texto.toString());
+        guardar(archivo, alquiler("55555555E", "5555EEE", 1));
+
+        HistorialAlquileres historial = new HistorialAlquileres(archivo);
+        List<RegistroAlquiler> encontrados = historial.buscarEntre(
+                LocalDateTime.of(2024, 2, 2, 0, 0), LocalDateTime.of(2024, 2, 4, 12, 0));
+
+        assertEquals(3, encontrados.size());
+        assertEquals("DNI2", encontrados.get(0).getDni());
+        assertEquals("DNI4", encontrados.get(2).getDni());
+    }
+
+    @Test
+    @DisplayName("Al superar el tamaño se sella y comprime un segmento y se sigue pudiendo buscar")
+    void testRotacionPorTamano() throws Exception {
+        Path archivo = directorio.resolve("alquileres.txt");
+        AlquilerFileService servicio = new AlquilerFileService(archivo, 16, 4, Duration.ofMillis(10), 1, false);
+        for (int dia = 1; dia <= 3; dia++) {
+            servicio.guardarAlquiler(alquiler("11111111A", "MAT" + dia, dia));
+            servicio.vaciar();
+        }
+        servicio.cerrar();
+
+        List<SegmentosAlquileres.Segmento> segmentos = SegmentosAlquileres.leer(archivo);
+        assertEquals(2, segmentos.size());
+        for (SegmentosAlquileres.Segmento segmento : segmentos) {
+            assertEquals(1, segmento.getLineas());
+            assertTrue(Files.exists(directorio.resolve(segmento.getNombre() + ".gz")), "Segmento comprimido");
+            assertFalse(Files.exists(directorio.resolve(segmento.getNombre())));
+        }
+
+        HistorialAlquileres historial = new HistorialAlquileres(archivo);
+        assertEquals(3, historial.getTotal());
+        List<RegistroAlquiler> todos = historial.buscarPorDni("11111111A");
+        assertEquals(3, todos.size());
+        assertEquals("MAT1", todos.get(0).getMatricula());
+        assertEquals("MAT3", todos.get(2).getMatricula());
+    }
+
+    @Test
+    @DisplayName("Al cambiar de dia se sella el segmento y las busquedas por fecha no abren los de fuera")
+    void testRotacionPorDia() throws Exception {
+        Path archivo = directorio.resolve("alquileres.txt");
+        Files.writeString(archivo, new RegistroAlquiler(LocalDateTime.of(2024, 2, 1, 12, 0), "Ana Ruiz",
+                "DNI1", "MAT1", LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 2), 1).aLinea()
+                + System.lineSeparator());
+        guardar(archivo, alquiler("22222222B", "2222BBB", 1));
+
+        List<SegmentosAlquileres.Segmento> segmentos = SegmentosAlquileres.leer(archivo);
+        assertEquals(1, segmentos.size());
+        SegmentosAlquileres.Segmento antiguo = segmentos.get(0);
+        assertEquals(IndiceAlquileres.segundos(LocalDateTime.of(2024, 2, 1, 12, 0)), antiguo.getDesde());
+        assertEquals(antiguo.getDesde(), antiguo.getHasta());
+
+        // Sin el contenido del segmento antiguo, una busqueda fuera de su intervalo sigue funcionando
+        Files.delete(directorio.resolve(antiguo.getNombre() + ".gz"));
+        HistorialAlquileres historial = new HistorialAlquileres(archivo);
+        List<RegistroAlquiler> recientes = historial.buscarEntre(
+                LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1));
+        assertEquals(1, recientes.size());
+        assertEquals("22222222B", recientes.get(0).getDni());
+    }
+
+    @Test
+    @DisplayName("El formato de linea se puede leer de vuelta")
+    void testIdaYVueltaLinea() {
+        RegistroAlquiler registro = RegistroAlquiler.de(alquiler("11111111A", "1111AAA", 1),
+                LocalDateTime.of(2024, 3, 1, 9, 30, 15));
+        RegistroAlquiler leido = RegistroAlquiler.desdeLinea(registro.aLinea());
+
+        assertNotNull(leido);
+        assertEquals(registro.aLinea(), leido.aLinea());
+        assertNull(RegistroAlquiler.desdeLinea("no es un registro"));
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la clase IndiceDisponibilidad
+ */
+@DisplayName("Tests de IndiceDisponibilidad")
+class IndiceDisponibilidadTest {
+
+    private static final LocalDate DIA = LocalDate.of(2024, 6, 1);
+
+    private IndiceDisponibilidad indice;
+    private Vehiculo mediano;
+    private Vehiculo otroMediano;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceDisponibilidad();
+        mediano = vehiculo(1, TipoVehiculo.MEDIANO);
+        otroMediano = vehiculo(2, TipoVehiculo.MEDIANO);
+        indice.registrarVehiculos(List.of(mediano, otroMediano, vehiculo(3, TipoVehiculo.PEQUENO)));
+    }
+
+    private Vehiculo vehiculo(int id, TipoVehiculo tipo) {
+        Vehiculo vehiculo = new Vehiculo("MAT" + id, "POL" + id, tipo, LocalDate.of(2020, 1, 1));
+        vehiculo.setId(id);
+        return vehiculo;
+    }
+
+    private Alquiler alquiler(Vehiculo vehiculo, int desde, int hasta) {
+        Cliente cliente = new Cliente("Nombre", "Apellidos", "12345678A", LocalDate.of(1980, 1, 1));
+        return new Alquiler(cliente, vehiculo, DIA.plusDays(desde), DIA.plusDays(hasta));
+    }
+
+    @Test
+    @DisplayName("Reserva rechaza periodos que solapan")
+    void testReservaSolapada() {
+        assertTrue(indice.reservar(alquiler(mediano, 0, 5)));
+
+        assertFalse(indice.reservar(alquiler(mediano, 4, 8)), "Solapa por el final");
+        assertFalse(indice.reservar(alquiler(mediano, -2, 1)), "Solapa por el inicio");
+        assertFalse(indice.reservar(alquiler(mediano, 1, 2)), "Contenido en otro");
+        assertFalse(indice.reservar(alquiler(mediano, -1, 9)), "Contiene a otro");
+        assertTrue(indice.reservar(alquiler(otroMediano, 1, 2)), "Otro vehiculo esta libre");
+    }
+
+    @Test
+    @DisplayName("El dia de devolucion queda libre")
+    void testPeriodosContiguos() {
+        assertTrue(indice.reservar(alquiler(mediano, 0, 5)));
+        assertTrue(indice.reservar(alquiler(mediano, 5, 7)));
+        assertTrue(indice.reservar(alquiler(mediano, -3, 0)));
+        assertFalse(indice.estaLibre(1, DIA.plusDays(6), DIA.plusDays(8)));
+    }
+
+    @Test
+    @DisplayName("Liberar deja libre solo el periodo del alquiler")
+    void testLiberar() {
+        Alquiler primero = alquiler(mediano, 0, 5);
+        indice.reservar(primero);
+        indice.reservar(alquiler(mediano, 5, 10));
+
+        indice.liberar(primero);
+
+        assertTrue(indice.estaLibre(1, DIA, DIA.plusDays(5)));
+        assertFalse(indice.estaLibre(1, DIA.plusDays(4), DIA.plusDays(6)));
+    }
+
+    @Test
+    @DisplayName("Cargar fusiona alquileres existentes que solapan")
+    void testCargarFusiona() {
+        indice.cargar(List.of(alquiler(mediano, 0, 5), alquiler(mediano, 3, 8), alquiler(mediano, 20, 22)));
+
+        assertFalse(indice.estaLibre(1, DIA.plusDays(7), DIA.plusDays(9)));
+        assertTrue(indice.estaLibre(1, DIA.plusDays(8), DIA.plusDays(20)));
+        assertFalse(indice.estaLibre(1, DIA.plusDays(21), DIA.plusDays(30)));
+    }
+
+    @Test
+    @DisplayName("Alquileres inactivos no ocupan el vehiculo")
+    void testInactivosIgnorados() {
+        Alquiler inactivo = alquiler(mediano, 0, 5);
+        inactivo.setActivo(false);
+        indice.cargar(List.of(inactivo));
+
+        assertTrue(indice.estaLibre(1, DIA, DIA.plusDays(5)));
+    }
+
+    @Test
+    @DisplayName("Vehiculos libres por tipo")
+    void testVehiculosLibres() {
+        indice.reservar(alquiler(mediano, 0, 5));
+
+        List<Vehiculo> libres = indice.vehiculosLibres(TipoVehiculo.MEDIANO, DIA.plusDays(2), DIA.plusDays(3));
+        assertEquals(List.of(otroMediano), libres);
+        assertEquals(2, indice.vehiculosLibres(TipoVehiculo.MEDIANO, DIA.plusDays(5), DIA.plusDays(6)).size());
+        assertTrue(indice.vehiculosLibres(TipoVehiculo.GRANDE, DIA, DIA.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Vehiculo desactivado deja de aparecer como libre")
+    void testVehiculoDesactivado() {
+        mediano.setActivo(false);
+        indice.registrarVehiculo(mediano);
+
+        assertEquals(List.of(otroMediano), indice.vehiculosLibres(TipoVehiculo.MEDIANO, DIA, DIA.plusDays(1)));
+    }
+
+    private Alquiler cargado(int id, Vehiculo vehiculo, int desde, int hasta) {
+        Alquiler alquiler = alquiler(vehiculo, desde, hasta);
+        alquiler.setId(id);
+        return alquiler;
+    }
+
+    @Test
+    @DisplayName("Una carga completa quita los alquileres que ya no estan y conserva las reservas propias")
+    void testReemplazar() {
+        indice.cargar(List.of(cargado(1, mediano, 0, 5), cargado(2, otroMediano, 0, 5)));
+        Alquiler confirmadaAntes = alquiler(mediano, 20, 25);
+        assertTrue(indice.reservar(confirmadaAntes));
+        confirmadaAntes.setId(3);
+        indice.confirmar(confirmadaAntes);
+
+        long inicioCarga = System.nanoTime();
+        Alquiler enCurso = alquiler(mediano, 10, 12);
+        Alquiler confirmadaDespues = alquiler(otroMediano, 10, 12);
+        assertTrue(indice.reservar(enCurso));
+        assertTrue(indice.reservar(confirmadaDespues));
+        confirmadaDespues.setId(4);
+        indice.confirmar(confirmadaDespues);
+
+        // La consulta leyo la tabla antes de que llegaran las reservas nuevas
+        indice.reemplazar(List.of(cargado(2, otroMediano, 0, 5)), inicioCarga);
+
+        assertTrue(indice.estaLibre(1, DIA, DIA.plusDays(5)), "El alquiler que ya no esta deja de ocupar");
+        assertTrue(indice.estaLibre(1, DIA.plusDays(20), DIA.plusDays(25)),
+                "La confirmada antes de la carga deberia haber venido en ella");
+        assertFalse(indice.estaLibre(2, DIA, DIA.plusDays(5)));
+        assertFalse(indice.estaLibre(1, DIA.plusDays(10), DIA.plusDays(12)), "La reserva en curso se conserva");
+        assertFalse(indice.estaLibre(2, DIA.plusDays(10), DIA.plusDays(12)));
+
+        // Una carga posterior que ya la trae deja de tratarla aparte
+        indice.reemplazar(List.of(cargado(4, otroMediano, 10, 12)), System.nanoTime());
+        indice.reemplazar(List.of(), System.nanoTime());
+        assertTrue(indice.estaLibre(2, DIA.plusDays(10), DIA.plusDays(12)));
+        assertFalse(indice.estaLibre(1, DIA.plusDays(10), DIA.plusDays(12)));
+
+        indice.liberar(enCurso);
+        indice.reemplazar(List.of(), System.nanoTime());
+        assertTrue(indice.estaLibre(1, DIA.plusDays(10), DIA.plusDays(12)));
+    }
+
+    @Test
+    @DisplayName("Una carga parcial libera el periodo exacto de los que vienen inactivos")
+    void testActualizarParcial() {
+        indice.cargar(List.of(cargado(1, mediano, 0, 5), cargado(2, mediano, 5, 8)));
+        Alquiler reserva = alquiler(otroMediano, 0, 3);
+        assertTrue(indice.reservar(reserva));
+
+        Alquiler terminado = cargado(1, mediano, 0, 5);
+        terminado.setActivo(false);
+        Alquiler otroTerminado = cargado(7, otroMediano, 0, 3);
+        otroTerminado.setActivo(false);
+        indice.actualizar(List.of(terminado, otroTerminado, cargado(3, mediano, 10, 12)));
+
+        assertTrue(indice.estaLibre(1, DIA, DIA.plusDays(5)));
+        assertFalse(indice.estaLibre(1, DIA.plusDays(5), DIA.plusDays(8)), "Los demas periodos siguen");
+        assertFalse(indice.estaLibre(1, DIA.plusDays(10), DIA.plusDays(12)));
+        assertFalse(indice.estaLibre(2, DIA, DIA.plusDays(3)), "No se libera una reserva propia");
+    }
+}
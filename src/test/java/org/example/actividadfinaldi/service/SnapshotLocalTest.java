@@ -0,0 +1,98 @@
+package org.example.actividadfinaldi.service;
+
+import org.example.actividadfinaldi.model.Alquiler;
+import org.example.actividadfinaldi.model.Cliente;
+import org.example.actividadfinaldi.model.TipoVehiculo;
+import org.example.actividadfinaldi.model.Vehiculo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la clase SnapshotLocal
+ */
+@DisplayName("Tests de SnapshotLocal")
+class SnapshotLocalTest {
+
+    @TempDir
+    Path directorio;
+
+    private Cliente cliente(int id, String nombre, boolean activo) {
+        Cliente cliente = new Cliente(nombre, "Pérez Núñez", "1234567" + id + "A", LocalDate.of(1985, 3, 14));
+        cliente.setId(id);
+        cliente.setActivo(activo);
+        return cliente;
+    }
+
+    private Vehiculo vehiculo(int id, TipoVehiculo tipo) {
+        Vehiculo vehiculo = new Vehiculo("MAT" + id, "POL" + id, tipo, LocalDate.of(2019, 7, 1));
+        vehiculo.setId(id);
+        return vehiculo;
+    }
+
+    @Test
+    @DisplayName("Guardar y cargar conserva todos los datos")
+    void testIdaYVuelta() throws Exception {
+        Cliente ana = cliente(1, "Ana", true);
+        Vehiculo grande = vehiculo(10, TipoVehiculo.GRANDE);
+        Alquiler alquiler = new Alquiler(ana, grande, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 8));
+        alquiler.setId(100);
+
+        SnapshotLocal snapshot = new SnapshotLocal(directorio.resolve("snapshot.bin"));
+        snapshot.guardar(List.of(ana), List.of(grande, vehiculo(11, TipoVehiculo.PEQUENO)), List.of(alquiler));
+        SnapshotLocal.Datos datos = snapshot.cargar();
+
+        assertNotNull(datos);
+        assertEquals(1, datos.getClientes().size());
+        Cliente leido = datos.getClientes().get(0);
+        assertEquals(1, leido.getId());
+        assertEquals("Ana", leido.getNombre());
+        assertEquals("Pérez Núñez", leido.getApellidos());
+        assertEquals(LocalDate.of(1985, 3, 14), leido.getFechaNacimiento());
+        assertTrue(leido.isActivo());
+
+        assertEquals(2, datos.getVehiculos().size());
+        assertEquals(TipoVehiculo.GRANDE, datos.getVehiculos().get(0).getTipo());
+        assertEquals("MAT11", datos.getVehiculos().get(1).getMatricula());
+
+        assertEquals(1, datos.getAlquileres().size());
+        Alquiler alquilerLeido = datos.getAlquileres().get(0);
+        assertEquals(100, alquilerLeido.getId());
+        assertEquals(LocalDate.of(2024, 5, 8), alquilerLeido.getFechaFin());
+        assertSame(leido, alquilerLeido.getCliente(), "El alquiler debería compartir la instancia del cliente");
+        assertSame(datos.getVehiculos().get(0), alquilerLeido.getVehiculo());
+    }
+
+    @Test
+    @DisplayName("Los clientes inactivos de un alquiler se guardan con el")
+    void testClienteInactivoReferenciado() throws Exception {
+        Cliente inactivo = cliente(2, "Luis", false);
+        Alquiler alquiler = new Alquiler(inactivo, vehiculo(10, TipoVehiculo.MEDIANO),
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 3));
+        alquiler.setId(5);
+
+        SnapshotLocal snapshot = new SnapshotLocal(directorio.resolve("snapshot.bin"));
+        snapshot.guardar(List.of(), List.of(), List.of(alquiler));
+        SnapshotLocal.Datos datos = snapshot.cargar();
+
+        assertEquals(1, datos.getAlquileres().size());
+        assertFalse(datos.getAlquileres().get(0).getCliente().isActivo());
+    }
+
+    @Test
+    @DisplayName("Sin copia o con copia corrupta devuelve null")
+    void testSinCopiaOCorrupta() throws Exception {
+        Path ruta = directorio.resolve("snapshot.bin");
+        assertNull(new SnapshotLocal(ruta).cargar());
+
+        Files.write(ruta, new byte[]{1, 2, 3, 4, 5, 6, 7});
+        assertNull(new SnapshotLocal(ruta).cargar());
+    }
+}
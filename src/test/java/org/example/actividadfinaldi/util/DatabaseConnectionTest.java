@@ -0,0 +1,107 @@
+package org.example.actividadfinaldi.util;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de las utilidades de DatabaseConnection que no necesitan conexion a Supabase
+ */
+@DisplayName("Tests de DatabaseConnection sin conexion")
+class DatabaseConnectionTest {
+
+    @Test
+    @DisplayName("leerArray entrega cada objeto en orden")
+    void testLeerArrayIncremental() {
+        List<JSONObject> filas = new ArrayList<>();
+        DatabaseConnection.leerArray(
+                new StringReader("[{\"id\":1,\"nombre\":\"Ana\"}, {\"id\":2,\"anidado\":{\"a\":[1,2]}}]"),
+                filas::add);
+
+        assertEquals(2, filas.size(), "Debería leer dos filas");
+        assertEquals(1, filas.get(0).getInt("id"));
+        assertEquals("Ana", filas.get(0).getString("nombre"));
+        assertEquals(2, filas.get(1).getJSONObject("anidado").getJSONArray("a").length());
+    }
+
+    @Test
+    @DisplayName("leerArray acepta un array vacío")
+    void testLeerArrayVacio() {
+        List<JSONObject> filas = new ArrayList<>();
+        DatabaseConnection.leerArray(new StringReader("  [ ]  "), filas::add);
+
+        assertTrue(filas.isEmpty(), "Un array vacío no debería producir filas");
+    }
+
+    @Test
+    @DisplayName("leerArray rechaza JSON que no es un array")
+    void testLeerArrayInvalido() {
+        assertThrows(JSONException.class,
+                () -> DatabaseConnection.leerArray(new StringReader("{\"id\":1}"), fila -> { }));
+    }
+
+    @Test
+    @DisplayName("Content-Range con total conocido")
+    void testTotalDeContentRange() {
+        assertEquals(1234, DatabaseConnection.totalDeContentRange("0-49/1234"));
+        assertEquals(0, DatabaseConnection.totalDeContentRange("*/0"));
+    }
+
+    @Test
+    @DisplayName("Content-Range sin total devuelve -1")
+    void testTotalDeContentRangeDesconocido() {
+        assertEquals(-1, DatabaseConnection.totalDeContentRange("0-49/*"));
+        assertEquals(-1, DatabaseConnection.totalDeContentRange(null));
+    }
+
+    @Test
+    @DisplayName("Valor lógico se entrecomilla y codifica")
+    void testEncodeValorLogico() {
+        String resultado = DatabaseConnection.encodeValorLogico("García, Ana (hija)");
+        assertTrue(resultado.startsWith("%22") && resultado.endsWith("%22"), "Debería ir entre comillas");
+        assertFalse(resultado.contains(","), "La coma debería codificarse");
+    }
+
+    @Test
+    @DisplayName("Proyección de columnas se añade a la URL")
+    void testConColumnas() {
+        assertEquals("http://x/clientes?select=id", DatabaseConnection.conColumnas("http://x/clientes", "id"));
+        assertEquals("http://x/clientes?on_conflict=dni&select=id",
+                DatabaseConnection.conColumnas("http://x/clientes?on_conflict=dni", "id"));
+        assertEquals("http://x/clientes", DatabaseConnection.conColumnas("http://x/clientes", null));
+    }
+
+    @Test
+    @DisplayName("Cuerpo gzip y deflate se descomprime")
+    void testDescomprimir() throws Exception {
+        byte[] original = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream salida = new GZIPOutputStream(gzip)) {
+            salida.write(original);
+        }
+        ByteArrayOutputStream deflate = new ByteArrayOutputStream();
+        try (DeflaterOutputStream salida = new DeflaterOutputStream(deflate)) {
+            salida.write(original);
+        }
+
+        assertArrayEquals(original, DatabaseConnection.descomprimir(
+                new ByteArrayInputStream(gzip.toByteArray()), "gzip").readAllBytes());
+        assertArrayEquals(original, DatabaseConnection.descomprimir(
+                new ByteArrayInputStream(deflate.toByteArray()), "deflate").readAllBytes());
+        assertArrayEquals(original, DatabaseConnection.descomprimir(
+                new ByteArrayInputStream(original), null).readAllBytes());
+    }
+}
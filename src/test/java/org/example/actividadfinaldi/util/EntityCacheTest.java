@@ -0,0 +1,105 @@
+package org.example.actividadfinaldi.util;
+
+import org.example.actividadfinaldi.model.Cliente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la clase EntityCache
+ */
+@DisplayName("Tests de EntityCache")
+class EntityCacheTest {
+
+    private AtomicLong reloj;
+    private EntityCache<Cliente> cache;
+
+    @BeforeEach
+    void setUp() {
+        reloj = new AtomicLong();
+        cache = new EntityCache<>(2, Duration.ofSeconds(10), Cliente::getId, Cliente::getDni, reloj::get);
+    }
+
+    private Cliente cliente(int id, String dni) {
+        Cliente cliente = new Cliente("Nombre" + id, "Apellidos", dni, LocalDate.of(1980, 1, 1));
+        cliente.setId(id);
+        return cliente;
+    }
+
+    @Test
+    @DisplayName("Entidad guardada se encuentra por ID y por clave")
+    void testObtenerPorIdYClave() {
+        Cliente cliente = cliente(1, "11111111A");
+        cache.guardar(cliente);
+
+        assertSame(cliente, cache.obtenerPorId(1));
+        assertSame(cliente, cache.obtenerPorClave("11111111A"));
+        assertEquals(2, cache.getAciertos());
+    }
+
+    @Test
+    @DisplayName("Buscar entidad ausente cuenta un fallo")
+    void testFallo() {
+        assertNull(cache.obtenerPorId(99));
+        assertNull(cache.obtenerPorClave("NOEXISTE"));
+        assertEquals(2, cache.getFallos());
+    }
+
+    @Test
+    @DisplayName("Entrada expira tras el TTL")
+    void testExpiracion() {
+        cache.guardar(cliente(1, "11111111A"));
+        reloj.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertNull(cache.obtenerPorId(1), "La entrada debería haber expirado");
+        assertNull(cache.obtenerPorClave("11111111A"));
+        assertEquals(0, cache.tamano());
+    }
+
+    @Test
+    @DisplayName("Al llenarse se desaloja la menos usada")
+    void testDesalojoLru() {
+        cache.guardar(cliente(1, "A"));
+        cache.guardar(cliente(2, "B"));
+        cache.obtenerPorId(1);
+        cache.guardar(cliente(3, "C"));
+
+        assertNotNull(cache.obtenerPorId(1), "La entrada usada recientemente debería seguir");
+        assertNull(cache.obtenerPorClave("B"), "La menos usada debería haberse desalojado");
+        assertEquals(1, cache.getDesalojos());
+    }
+
+    @Test
+    @DisplayName("Reemplazar una entidad actualiza su clave")
+    void testReemplazoActualizaClave() {
+        cache.guardar(cliente(1, "VIEJO"));
+        cache.guardar(cliente(1, "NUEVO"));
+
+        assertNull(cache.obtenerPorClave("VIEJO"));
+        assertNotNull(cache.obtenerPorClave("NUEVO"));
+        assertEquals(1, cache.tamano());
+    }
+
+    @Test
+    @DisplayName("Invalidar elimina la entidad")
+    void testInvalidar() {
+        cache.guardar(cliente(1, "11111111A"));
+        cache.invalidar(1);
+
+        assertNull(cache.obtenerPorId(1));
+        assertNull(cache.obtenerPorClave("11111111A"));
+    }
+
+    @Test
+    @DisplayName("Entidades sin ID no se guardan")
+    void testSinId() {
+        cache.guardar(new Cliente());
+        assertEquals(0, cache.tamano());
+    }
+}
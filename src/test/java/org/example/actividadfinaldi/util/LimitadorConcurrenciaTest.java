@@ -0,0 +1,172 @@
+package org.example.actividadfinaldi.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del limitador de peticiones simultaneas y de sus prioridades
+ */
+@DisplayName("Tests de LimitadorConcurrencia")
+class LimitadorConcurrenciaTest {
+
+    private static final long MILISEGUNDO = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("Las peticiones en espera salen por orden de prioridad")
+    void testOrdenPrioridad() {
+        LimitadorConcurrencia limitador = new LimitadorConcurrencia(2, 2, 2);
+        LimitadorConcurrencia.Permiso primero = limitador.adquirirAsync(Prioridad.INTERACTIVA).join();
+        LimitadorConcurrencia.Permiso segundo = limitador.adquirirAsync(Prioridad.INTERACTIVA).join();
+
+        CompletableFuture<LimitadorConcurrencia.Permiso> fondo = limitador.adquirirAsync(Prioridad.SEGUNDO_PLANO);
+        CompletableFuture<LimitadorConcurrencia.Permiso> precarga = limitador.adquirirAsync(Prioridad.PRECARGA);
+        CompletableFuture<LimitadorConcurrencia.Permiso> clic = limitador.adquirirAsync(Prioridad.INTERACTIVA);
+        assertEquals(1, limitador.getEsperando(Prioridad.SEGUNDO_PLANO));
+
+        primero.liberar(200, 0);
+        assertTrue(clic.isDone(), "La interactiva adelanta a las que llegaron antes");
+        assertFalse(precarga.isDone());
+
+        segundo.liberar(200, 0);
+        assertFalse(precarga.isDone(), "La precarga no ocupa el hueco reservado a las interactivas");
+        clic.join().liberar(200, 0);
+        assertTrue(precarga.isDone());
+        assertFalse(fondo.isDone());
+
+        precarga.join().liberar(200, 0);
+        precarga.join().liberar(200, 0);
+        assertTrue(fondo.isDone());
+        assertEquals(1, limitador.getEnCurso(), "Liberar dos veces no devuelve dos huecos");
+    }
+
+    @Test
+    @DisplayName("El segundo plano deja hueco libre para las interactivas")
+    void testHuecoReservado() {
+        LimitadorConcurrencia limitador = new LimitadorConcurrencia(8, 8, 8);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limitador.adquirirAsync(Prioridad.SEGUNDO_PLANO).isDone());
+        }
+        assertFalse(limitador.adquirirAsync(Prioridad.SEGUNDO_PLANO).isDone());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limitador.adquirirAsync(Prioridad.INTERACTIVA).isDone());
+        }
+        assertFalse(limitador.adquirirAsync(Prioridad.INTERACTIVA).isDone());
+        assertEquals(8, limitador.getEnCurso());
+    }
+
+    @Test
+    @DisplayName("El limite sube con respuestas rapidas y baja una vez por ronda con las lentas")
+    void testAjusteLimite() throws Exception {
+        LimitadorConcurrencia limitador = new LimitadorConcurrencia(10, 2, 20);
+        for (int i = 0; i < 30; i++) {
+            limitador.adquirir(Prioridad.INTERACTIVA).liberar(200, MILISEGUNDO);
+        }
+        int crecido = limitador.getLimite();
+        assertTrue(crecido >= 12, "limite " + crecido);
+
+        Thread.sleep(20);
+        limitador.adquirir(Prioridad.INTERACTIVA).liberar(200, 10 * MILISEGUNDO);
+        int reducido = limitador.getLimite();
+        assertTrue(reducido < crecido);
+
+        // Empezada antes de la reduccion: no vuelve a reducir
+        limitador.adquirir(Prioridad.INTERACTIVA).liberar(503, 10 * MILISEGUNDO);
+        assertEquals(reducido, limitador.getLimite());
+
+        Thread.sleep(20);
+        limitador.adquirir(Prioridad.INTERACTIVA).liberar(503, MILISEGUNDO);
+        assertTrue(limitador.getLimite() < reducido, "Un 503 reduce aunque sea rapido");
+
+        for (int i = 0; i < 50; i++) {
+            Thread.sleep(1);
+            limitador.adquirir(Prioridad.INTERACTIVA).liberar(0, MILISEGUNDO);
+        }
+        assertEquals(2, limitador.getLimite(), "Nunca baja del minimo");
+    }
+
+    @Test
+    @DisplayName("Una peticion cancelada libera su hueco sin reducir el limite")
+    void testCanceladaNoReduce() throws Exception {
+        LimitadorConcurrencia limitador = new LimitadorConcurrencia(10, 2, 20);
+        limitador.adquirir(Prioridad.INTERACTIVA).liberar(200, MILISEGUNDO);
+        int limite = limitador.getLimite();
+        Thread.sleep(5);
+
+        limitador.adquirir(Prioridad.INTERACTIVA).liberar(LimitadorConcurrencia.CANCELADA, MILISEGUNDO);
+        assertEquals(limite, limitador.getLimite());
+        assertEquals(0, limitador.getEnCurso());
+
+        Thread.sleep(5);
+        limitador.adquirir(Prioridad.INTERACTIVA).liberar(0, MILISEGUNDO);
+        assertTrue(limitador.getLimite() < limite, "Un fallo de red si reduce");
+    }
+
+    @Test
+    @DisplayName("Una espera interrumpida no se queda con el permiso")
+    void testInterrupcion() throws Exception {
+        LimitadorConcurrencia limitador = new LimitadorConcurrencia(1, 1, 1);
+        LimitadorConcurrencia.Permiso ocupado = limitador.adquirir(Prioridad.INTERACTIVA);
+
+        AtomicBoolean interrumpido = new AtomicBoolean();
+        Thread esperando = new Thread(() -> {
+            try {
+                limitador.adquirir(Prioridad.INTERACTIVA);
+            } catch (InterruptedException e) {
+                interrumpido.set(true);
+            }
+        });
+        esperando.start();
+        while (limitador.getEsperando(Prioridad.INTERACTIVA) == 0) {
+            Thread.sleep(1);
+        }
+        esperando.interrupt();
+        esperando.join(1000);
+
+        assertTrue(interrumpido.get());
+        assertEquals(0, limitador.getEsperando(Prioridad.INTERACTIVA));
+        ocupado.liberar(200, 0);
+        assertEquals(0, limitador.getEnCurso());
+        assertTrue(limitador.adquirirAsync(Prioridad.INTERACTIVA).isDone());
+    }
+
+    @Test
+    @DisplayName("Nunca hay mas peticiones en curso que el limite")
+    void testConcurrencia() throws Exception {
+        LimitadorConcurrencia limitador = new LimitadorConcurrencia(3, 3, 3);
+        int[] maximo = {0};
+        List<Thread> hilos = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Prioridad prioridad = Prioridad.values()[i % 3];
+            Thread hilo = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 50; j++) {
+                        LimitadorConcurrencia.Permiso permiso = limitador.adquirir(prioridad);
+                        synchronized (maximo) {
+                            maximo[0] = Math.max(maximo[0], limitador.getEnCurso());
+                        }
+                        permiso.liberar(200, 0);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            hilos.add(hilo);
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join(10_000);
+            assertFalse(hilo.isAlive());
+        }
+        assertTrue(maximo[0] <= 3);
+        assertEquals(0, limitador.getEnCurso());
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.actividadfinaldi.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de MetricasPeticiones y su histograma, con DatabaseConnection apuntando al servidor local
+ */
+@DisplayName("Tests de MetricasPeticiones")
+class MetricasPeticionesTest {
+
+    private static ServidorPostgrestLocal servidor;
+    private final MetricasPeticiones metricas = DatabaseConnection.getMetricas();
+
+    @BeforeAll
+    static void arrancarServidor() throws Exception {
+        servidor = ServidorPostgrestLocal.iniciar();
+        DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+        DatabaseConnection.configurarReintentos(PoliticaReintentos.SIN_REINTENTOS);
+    }
+
+    @AfterAll
+    static void pararServidor() {
+        DatabaseConnection.configurarBaseUrl(null);
+        DatabaseConnection.configurarReintentos(null);
+        servidor.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        servidor.limpiar();
+        metricas.reiniciar();
+    }
+
+    @Test
+    @DisplayName("Los percentiles del histograma tienen error acotado")
+    void testPercentilesHistograma() {
+        HistogramaLatencia histograma = new HistogramaLatencia();
+        for (int i = 1; i <= 1000; i++) {
+            histograma.registrar(i * 1_000_000L);
+        }
+
+        assertEquals(1000, histograma.getTotal());
+        assertEquals(1_000_000_000L, histograma.getMaximoNanos());
+        assertEquals(500, histograma.percentil(50) / 1e6, 500 * 0.25);
+        assertEquals(990, histograma.percentil(99) / 1e6, 990 * 0.25);
+        assertTrue(histograma.percentil(50) <= histograma.percentil(95));
+        assertEquals(histograma.getMaximoNanos(), histograma.percentil(100));
+        assertEquals(0, new HistogramaLatencia().percentil(50));
+    }
+
+    @Test
+    @DisplayName("Cada cubeta contiene los valores que le corresponden")
+    void testCubetas() {
+        for (long micros = 0; micros < 100_000; micros += 7) {
+            int cubeta = HistogramaLatencia.cubeta(micros);
+            assertTrue(micros <= HistogramaLatencia.limiteSuperior(cubeta), "valor " + micros);
+            if (cubeta > 0) {
+                assertTrue(micros > HistogramaLatencia.limiteSuperior(cubeta - 1), "valor " + micros);
+            }
+        }
+        assertTrue(HistogramaLatencia.cubeta(Long.MAX_VALUE) < 256);
+    }
+
+    @Test
+    @DisplayName("Se cuentan peticiones, codigos y bytes por metodo y tabla")
+    void testPeticionesPorOperacion() throws Exception {
+        JSONObject cliente = new JSONObject()
+                .put("nombre", "Ana").put("apellidos", "Ruiz").put("dni", "12345678A")
+                .put("fecha_nacimiento", "1985-03-14").put("activo", true);
+
+        DatabaseConnection.post("clientes", cliente, "id");
+        assertThrows(Exception.class, () -> DatabaseConnection.post("clientes", cliente, "id"));
+        DatabaseConnection.get("clientes", "select=id,dni");
+        DatabaseConnection.recorrer("clientes", "select=*", fila -> { });
+        DatabaseConnection.getAsync("clientes", "dni=eq.12345678A").get();
+        assertTrue(DatabaseConnection.patchMinimal("clientes", "dni=eq.12345678A", new JSONObject().put("nombre", "Eva")));
+
+        assertEquals(6, metricas.getPeticiones());
+        assertEquals(1, metricas.getErrores());
+        assertEquals(0, metricas.getEnCurso());
+
+        ResumenOperacion posts = metricas.getOperacion("POST clientes");
+        assertEquals(2, posts.getPeticiones());
+        assertEquals(1, posts.getErrores());
+        assertTrue(posts.getBytesEnviados() > 0);
+        ResumenOperacion gets = metricas.getOperacion("GET clientes");
+        assertEquals(3, gets.getPeticiones());
+        assertTrue(gets.getBytesRecibidos() > 0);
+        assertTrue(gets.getP50Ms() <= gets.getMaxMs());
+        assertEquals(1, metricas.getOperacion("PATCH clientes").getPeticiones());
+
+        Map<String, Long> codigos = metricas.getCodigosEstado();
+        assertEquals(1L, codigos.get("201"));
+        assertEquals(1L, codigos.get("409"));
+        assertEquals(1L, codigos.get("204"));
+    }
+
+    @Test
+    @DisplayName("Los errores del servidor y la latencia quedan registrados")
+    void testErroresYLatencia() {
+        servidor.setLatencia(Duration.ofMillis(20), Duration.ZERO);
+        servidor.fallarSiguientes(1, 503);
+
+        assertThrows(Exception.class, () -> DatabaseConnection.get("vehiculos", "select=id"));
+        assertThrows(Exception.class, () -> DatabaseConnection.getAsync("tabla_inexistente", "select=id").join());
+
+        assertEquals(2, metricas.getErrores());
+        assertEquals(1L, metricas.getCodigosEstado().get("503"));
+        assertEquals(1L, metricas.getCodigosEstado().get("404"));
+        assertTrue(metricas.getOperacion("GET vehiculos").getMaxMs() >= 20);
+        assertTrue(metricas.getResumen().contains("GET vehiculos"));
+    }
+
+    @Test
+    @DisplayName("Las metricas se leen por JMX")
+    void testMBean() throws Exception {
+        metricas.registrarMBean();
+        metricas.registrarMBean();
+        DatabaseConnection.get("clientes", "select=id");
+
+        MBeanServer servidorMBean = ManagementFactory.getPlatformMBeanServer();
+        ObjectName nombre = new ObjectName(MetricasPeticiones.NOMBRE_MBEAN);
+        assertEquals(1L, servidorMBean.getAttribute(nombre, "Peticiones"));
+        assertEquals(0, servidorMBean.getAttribute(nombre, "EnCurso"));
+
+        CompositeData[] operaciones = (CompositeData[]) servidorMBean.getAttribute(nombre, "Operaciones");
+        assertEquals(1, operaciones.length);
+        assertEquals("GET clientes", operaciones[0].get("operacion"));
+
+        servidorMBean.invoke(nombre, "reiniciar", null, null);
+        assertEquals(0L, servidorMBean.getAttribute(nombre, "Peticiones"));
+    }
+
+    @Test
+    @DisplayName("Un cuerpo gzip invalido no deja la peticion en curso ni el permiso ocupado")
+    void testCuerpoComprimidoInvalido() throws Exception {
+        HttpServer roto = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        roto.createContext("/", intercambio -> {
+            byte[] cuerpo = "esto no es gzip".getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Encoding", "gzip");
+            intercambio.sendResponseHeaders(200, cuerpo.length);
+            intercambio.getResponseBody().write(cuerpo);
+            intercambio.close();
+        });
+        roto.start();
+        try {
+            DatabaseConnection.configurarBaseUrl("http://" + roto.getAddress().getHostString() + ":"
+                    + roto.getAddress().getPort());
+            assertThrows(Exception.class, () -> DatabaseConnection.recorrer("clientes", "select=id", fila -> { }));
+            assertThrows(Exception.class,
+                    () -> DatabaseConnection.recorrerRango("clientes", "select=id", 0, 9, false, fila -> { }));
+            assertEquals(0, metricas.getEnCurso());
+            assertEquals(0, DatabaseConnection.getLimitador().getEnCurso());
+            assertEquals(2, metricas.getPeticiones());
+        } finally {
+            DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+            roto.stop(0);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.actividadfinaldi.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la clase Pagina
+ */
+@DisplayName("Tests de Pagina")
+class PaginaTest {
+
+    @Test
+    @DisplayName("Una fila de más indica que hay más páginas y se descarta")
+    void testFilaExtraIndicaMasPaginas() {
+        Pagina<Integer> pagina = Pagina.de(new ArrayList<>(List.of(1, 2, 3, 4)), 3, 10);
+
+        assertTrue(pagina.hayMas(), "Debería haber más páginas");
+        assertEquals(List.of(1, 2, 3), pagina.getElementos());
+        assertEquals(3, pagina.getUltimo(), "El cursor debería ser el último elemento devuelto");
+        assertEquals(10, pagina.getTotal());
+    }
+
+    @Test
+    @DisplayName("Página incompleta es la última")
+    void testUltimaPagina() {
+        Pagina<Integer> pagina = Pagina.de(new ArrayList<>(List.of(1, 2)), 3, -1);
+
+        assertFalse(pagina.hayMas(), "No debería haber más páginas");
+        assertEquals(2, pagina.getElementos().size());
+        assertEquals(-1, pagina.getTotal(), "El total debería ser desconocido");
+    }
+
+    @Test
+    @DisplayName("Página vacía no tiene cursor")
+    void testPaginaVacia() {
+        Pagina<Integer> pagina = Pagina.de(new ArrayList<>(), 3, 0);
+
+        assertFalse(pagina.hayMas());
+        assertNull(pagina.getUltimo(), "Una página vacía no debería tener cursor");
+    }
+}
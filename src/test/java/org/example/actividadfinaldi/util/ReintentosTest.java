@@ -0,0 +1,194 @@
+package org.example.actividadfinaldi.util;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de los reintentos y del disyuntor de DatabaseConnection contra el servidor local
+ */
+@DisplayName("Tests de reintentos y disyuntor")
+class ReintentosTest {
+
+    private static final PoliticaReintentos RAPIDA =
+            new PoliticaReintentos(3, Duration.ofMillis(5), Duration.ofMillis(20));
+
+    private static ServidorPostgrestLocal servidor;
+
+    @BeforeAll
+    static void arrancarServidor() throws Exception {
+        servidor = ServidorPostgrestLocal.iniciar();
+        DatabaseConnection.configurarBaseUrl(servidor.getUrl());
+        DatabaseConnection.configurarReintentos(RAPIDA);
+    }
+
+    @AfterAll
+    static void pararServidor() {
+        DatabaseConnection.configurarBaseUrl(null);
+        DatabaseConnection.configurarReintentos(null);
+        DatabaseConnection.configurarDisyuntor(5, Duration.ofSeconds(10));
+        servidor.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        servidor.limpiar();
+        DatabaseConnection.configurarDisyuntor(5, Duration.ofSeconds(10));
+        DatabaseConnection.getMetricas().reiniciar();
+    }
+
+    private static JSONObject cliente(String dni) {
+        return new JSONObject()
+                .put("nombre", "Ana").put("apellidos", "Ruiz").put("dni", dni)
+                .put("fecha_nacimiento", "1985-03-14").put("activo", true);
+    }
+
+    @Test
+    @DisplayName("La espera crece con cada intento y respeta el maximo")
+    void testEsperaExponencial() {
+        PoliticaReintentos politica = new PoliticaReintentos(10, Duration.ofMillis(100), Duration.ofMillis(1000));
+        for (int i = 0; i < 200; i++) {
+            assertTrue(politica.espera(1, null) <= 100);
+            assertTrue(politica.espera(3, null) <= 400);
+            assertTrue(politica.espera(9, null) <= 1000);
+            assertTrue(politica.espera(60, null) >= 0);
+        }
+        assertEquals(0, PoliticaReintentos.SIN_REINTENTOS.espera(1, null));
+        assertThrows(IllegalArgumentException.class, () -> new PoliticaReintentos(0, Duration.ZERO, Duration.ZERO));
+    }
+
+    private static HttpRequest upsert(String resolucion) {
+        return HttpRequest.newBuilder(URI.create("http://x/clientes?on_conflict=dni"))
+                .header("Prefer", resolucion + ",return=representation")
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Solo se reintentan los metodos idempotentes y los codigos transitorios")
+    void testQueSeReintenta() {
+        assertTrue(PoliticaReintentos.esIdempotente(DatabaseConnection.peticionGet("clientes", "select=id")));
+        assertFalse(PoliticaReintentos.esIdempotente(DatabaseConnection.peticionPost("clientes", cliente("1"), "id")));
+        assertTrue(PoliticaReintentos.esIdempotente(upsert("resolution=merge-duplicates")));
+        assertFalse(PoliticaReintentos.esIdempotente(upsert("resolution=ignore-duplicates")));
+        assertFalse(PoliticaReintentos.esIdempotente(HttpRequest.newBuilder(URI.create("http://x/clientes"))
+                .header("Idempotency-Key", "k").POST(HttpRequest.BodyPublishers.noBody()).build()),
+                "La cabecera sola no hace idempotente un POST");
+        assertTrue(PoliticaReintentos.esCodigoReintentable(503));
+        assertTrue(PoliticaReintentos.esCodigoReintentable(429));
+        assertFalse(PoliticaReintentos.esCodigoReintentable(409));
+        assertFalse(PoliticaReintentos.esCodigoReintentable(404));
+    }
+
+    @Test
+    @DisplayName("Un GET se repite hasta que el servidor responde")
+    void testGetReintentado() throws Exception {
+        servidor.fallarSiguientes(2, 503);
+
+        assertEquals(0, DatabaseConnection.get("clientes", "select=id").length());
+        assertEquals(3, servidor.getPeticiones());
+        assertEquals(2, DatabaseConnection.getMetricas().getReintentos());
+
+        servidor.fallarSiguientes(3, 502);
+        assertThrows(Exception.class, () -> DatabaseConnection.get("vehiculos", "select=id"));
+    }
+
+    @Test
+    @DisplayName("Las lecturas asincronas y en streaming tambien se repiten")
+    void testAsyncYStreaming() throws Exception {
+        servidor.fallarSiguientes(2, 500);
+        assertEquals(0, DatabaseConnection.getAsync("clientes", "select=id").join().length());
+
+        servidor.fallarSiguientes(2, 504);
+        int[] filas = {0};
+        DatabaseConnection.recorrer("clientes", "select=id", fila -> filas[0]++);
+        assertEquals(0, filas[0]);
+        assertEquals(0, DatabaseConnection.getMetricas().getEnCurso(), "Los intentos descartados quedan cerrados");
+        assertEquals(4, DatabaseConnection.getMetricas().getReintentos());
+    }
+
+    @Test
+    @DisplayName("Un POST solo se repite si es un upsert que fusiona duplicados")
+    void testPostIdempotente() throws Exception {
+        servidor.fallarSiguientes(1, 503);
+        assertThrows(Exception.class, () -> DatabaseConnection.post("clientes", cliente("11111111A"), "id"));
+        assertEquals(1, servidor.getPeticiones());
+
+        // Repetir un "insertar si no existe" que si llego lo daria por duplicado
+        servidor.perderRespuestas(1, 502);
+        assertThrows(Exception.class,
+                () -> DatabaseConnection.upsert("clientes", cliente("22222222B"), "dni", true, "id"));
+        assertEquals(2, servidor.getPeticiones());
+        assertEquals(1, servidor.filas("clientes").size());
+
+        servidor.perderRespuestas(1, 502);
+        JSONObject fila = DatabaseConnection.upsert("clientes", cliente("33333333C"), "dni", false, "id")
+                .getJSONObject(0);
+        assertTrue(fila.has("id"));
+        assertEquals(4, servidor.getPeticiones());
+        assertEquals(2, servidor.filas("clientes").size());
+    }
+
+    @Test
+    @DisplayName("Las respuestas 4xx no se repiten ni abren el disyuntor")
+    void testErroresDeCliente() throws Exception {
+        DatabaseConnection.configurarDisyuntor(2, Duration.ofSeconds(10));
+        for (int i = 0; i < 5; i++) {
+            assertThrows(Exception.class, () -> DatabaseConnection.get("tabla_inexistente", "select=id"));
+        }
+        assertEquals(5, servidor.getPeticiones());
+        assertEquals(0, DatabaseConnection.getMetricas().getRechazadasPorDisyuntor());
+    }
+
+    @Test
+    @DisplayName("El disyuntor se abre, falla al momento y se cierra tras una prueba correcta")
+    void testDisyuntor() throws Exception {
+        DatabaseConnection.configurarReintentos(PoliticaReintentos.SIN_REINTENTOS);
+        DatabaseConnection.configurarDisyuntor(3, Duration.ofMillis(200));
+        try {
+            servidor.fallarSiguientes(3, 503);
+            for (int i = 0; i < 3; i++) {
+                assertThrows(Exception.class, () -> DatabaseConnection.get("clientes", "select=id"));
+            }
+
+            long peticiones = servidor.getPeticiones();
+            servidor.setLatencia(Duration.ofSeconds(1), Duration.ZERO);
+            long inicio = System.nanoTime();
+            assertThrows(Exception.class, () -> DatabaseConnection.get("clientes", "select=id"));
+            CompletionException asincrona = assertThrows(CompletionException.class,
+                    () -> DatabaseConnection.getAsync("clientes", "select=id").join());
+            assertTrue(asincrona.getCause().getMessage().contains("no disponible"));
+            assertTrue(System.nanoTime() - inicio < Duration.ofMillis(500).toNanos(), "Abierto falla sin esperar");
+            assertEquals(peticiones, servidor.getPeticiones(), "Abierto no llega a la red");
+            assertEquals(2, DatabaseConnection.getMetricas().getRechazadasPorDisyuntor());
+
+            // Otro endpoint no se ve afectado
+            servidor.setLatencia(Duration.ZERO, Duration.ZERO);
+            assertEquals(0, DatabaseConnection.get("vehiculos", "select=id").length());
+
+            // Pasado el tiempo de apertura, una prueba fallida lo vuelve a abrir
+            Thread.sleep(250);
+            servidor.fallarSiguientes(1, 503);
+            assertThrows(Exception.class, () -> DatabaseConnection.get("clientes", "select=id"));
+            assertThrows(Exception.class, () -> DatabaseConnection.get("clientes", "select=id"));
+            assertEquals(3, DatabaseConnection.getMetricas().getRechazadasPorDisyuntor());
+
+            // Y una prueba correcta lo cierra
+            Thread.sleep(250);
+            assertEquals(0, DatabaseConnection.get("clientes", "select=id").length());
+            assertEquals(0, DatabaseConnection.get("clientes", "select=id,dni").length());
+        } finally {
+            DatabaseConnection.configurarReintentos(RAPIDA);
+        }
+    }
+}
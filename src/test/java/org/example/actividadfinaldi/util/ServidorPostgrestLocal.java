@@ -0,0 +1,737 @@
+package org.example.actividadfinaldi.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Servidor HTTP en proceso que imita la parte de PostgREST que usa DatabaseConnection,
+ * con las tablas clientes, vehiculos y alquileres en memoria.
+ *
+ * Admite: filtros eq, neq, gt, gte, lt, lte, in, is y arboles or=(...)/and=(...);
+ * select con columnas y recursos embebidos (clientes(...), vehiculos(...)); order;
+ * limit/offset y cabecera Range con Content-Range; POST de una fila o de un array con
+ * on_conflict y Prefer resolution=ignore-duplicates/merge-duplicates; PATCH y DELETE con
+ * Prefer return=minimal/representation y count=exact; respuestas gzip si se aceptan.
+ *
+ * Para pruebas de carga y de errores se puede añadir latencia a cada peticion y
+ * hacer que fallen con un codigo dado (las siguientes N o con una probabilidad).
+ * Tambien se puede aplicar una escritura y responder con error, como si la respuesta
+ * se perdiera despues del commit.
+ */
+public class ServidorPostgrestLocal implements AutoCloseable {
+
+    private static final String PREFIJO = "/rest/v1/";
+
+    private final HttpServer servidor;
+    private final ExecutorService hilos;
+    private final Map<String, Tabla> tablas = new HashMap<>();
+    private final Random aleatorio;
+
+    private volatile Duration latencia = Duration.ZERO;
+    private volatile Duration variacionLatencia = Duration.ZERO;
+    private volatile double probabilidadError;
+    private volatile int codigoError = 503;
+    private final AtomicInteger fallosPendientes = new AtomicInteger();
+    private final AtomicInteger respuestasPerdidas = new AtomicInteger();
+
+    private final AtomicLong peticiones = new AtomicLong();
+    private final AtomicLong erroresInyectados = new AtomicLong();
+
+    /**
+     * Tabla en memoria con id autoincremental
+     */
+    private static final class Tabla {
+        final List<JSONObject> filas = new ArrayList<>();
+        final List<String> unicas;
+        final Map<String, String> referencias;
+        int siguienteId = 1;
+
+        Tabla(List<String> unicas, Map<String, String> referencias) {
+            this.unicas = unicas;
+            this.referencias = referencias;
+        }
+    }
+
+    /**
+     * Error con el codigo HTTP y el cuerpo que devolveria PostgREST
+     */
+    private static final class ErrorPostgrest extends Exception {
+        final int estado;
+        final String codigo;
+
+        ErrorPostgrest(int estado, String codigo, String mensaje) {
+            super(mensaje);
+            this.estado = estado;
+            this.codigo = codigo;
+        }
+    }
+
+    static {
+        // Sin TCP_NODELAY la cabecera y el cuerpo van en escrituras separadas y el ACK
+        // retardado añade ~40 ms a cada respuesta, lo que falsearia las latencias medidas
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private ServidorPostgrestLocal(long semilla) throws IOException {
+        aleatorio = new Random(semilla);
+        tablas.put("clientes", new Tabla(List.of("dni"), Map.of()));
+        tablas.put("vehiculos", new Tabla(List.of("matricula"), Map.of()));
+        tablas.put("alquileres", new Tabla(List.of(),
+                Map.of("cliente_id", "clientes", "vehiculo_id", "vehiculos")));
+
+        AtomicInteger contador = new AtomicInteger();
+        hilos = Executors.newCachedThreadPool(tarea -> {
+            Thread hilo = new Thread(tarea, "postgrest-local-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        servidor.createContext(PREFIJO, this::atender);
+        servidor.setExecutor(hilos);
+        servidor.start();
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre
+     */
+    public static ServidorPostgrestLocal iniciar() throws IOException {
+        return iniciar(42);
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre
+     * @param semilla semilla de la latencia variable y de los errores aleatorios
+     */
+    public static ServidorPostgrestLocal iniciar(long semilla) throws IOException {
+        return new ServidorPostgrestLocal(semilla);
+    }
+
+    /**
+     * @return URL base para DatabaseConnection.configurarBaseUrl
+     */
+    public String getUrl() {
+        return "http://" + servidor.getAddress().getHostString() + ":" + servidor.getAddress().getPort() + "/rest/v1";
+    }
+
+    /**
+     * Latencia añadida a cada peticion: base mas un valor aleatorio entre 0 y variacion
+     */
+    public void setLatencia(Duration base, Duration variacion) {
+        latencia = base;
+        variacionLatencia = variacion;
+    }
+
+    /**
+     * Hace fallar cada peticion con la probabilidad indicada
+     */
+    public void setErroresAleatorios(double probabilidad, int codigo) {
+        probabilidadError = probabilidad;
+        codigoError = codigo;
+    }
+
+    /**
+     * Hace fallar las siguientes peticiones
+     * @param peticiones numero de peticiones que fallaran
+     * @param codigo codigo HTTP de la respuesta
+     */
+    public void fallarSiguientes(int peticiones, int codigo) {
+        codigoError = codigo;
+        fallosPendientes.set(peticiones);
+    }
+
+    /**
+     * Aplica las siguientes escrituras (POST, PATCH, DELETE) pero responde con error,
+     * como si la respuesta se perdiera despues de guardar los cambios
+     * @param peticiones numero de escrituras cuya respuesta se pierde
+     * @param codigo codigo HTTP de la respuesta
+     */
+    public void perderRespuestas(int peticiones, int codigo) {
+        codigoError = codigo;
+        respuestasPerdidas.set(peticiones);
+    }
+
+    /**
+     * Vacia las tablas, reinicia los ids y quita latencia y errores
+     */
+    public synchronized void limpiar() {
+        for (Tabla tabla : tablas.values()) {
+            tabla.filas.clear();
+            tabla.siguienteId = 1;
+        }
+        latencia = Duration.ZERO;
+        variacionLatencia = Duration.ZERO;
+        probabilidadError = 0;
+        fallosPendientes.set(0);
+        respuestasPerdidas.set(0);
+        peticiones.set(0);
+        erroresInyectados.set(0);
+    }
+
+    /**
+     * @return copia de las filas de una tabla
+     */
+    public synchronized List<JSONObject> filas(String tabla) {
+        List<JSONObject> copia = new ArrayList<>();
+        for (JSONObject fila : tablas.get(tabla).filas) {
+            copia.add(new JSONObject(fila.toString()));
+        }
+        return copia;
+    }
+
+    public long getPeticiones() {
+        return peticiones.get();
+    }
+
+    public long getErroresInyectados() {
+        return erroresInyectados.get();
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+        hilos.shutdownNow();
+    }
+
+    private void atender(HttpExchange intercambio) throws IOException {
+        try (intercambio) {
+            peticiones.incrementAndGet();
+            byte[] cuerpo = intercambio.getRequestBody().readAllBytes();
+            esperarLatencia();
+
+            if (debeFallar()) {
+                erroresInyectados.incrementAndGet();
+                responder(intercambio, codigoError, error("PGRST000", "Error inyectado por el servidor de pruebas"));
+                return;
+            }
+
+            String tabla = intercambio.getRequestURI().getPath().substring(PREFIJO.length());
+            try {
+                procesar(intercambio, tabla, new String(cuerpo, StandardCharsets.UTF_8));
+            } catch (ErrorPostgrest e) {
+                responder(intercambio, e.estado, error(e.codigo, e.getMessage()));
+            } catch (RuntimeException e) {
+                responder(intercambio, 400, error("PGRST100", String.valueOf(e.getMessage())));
+            }
+        }
+    }
+
+    private void esperarLatencia() {
+        long nanos = latencia.toNanos();
+        long variacion = variacionLatencia.toNanos();
+        if (variacion > 0) {
+            synchronized (aleatorio) {
+                nanos += (long) (aleatorio.nextDouble() * variacion);
+            }
+        }
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean debeFallar() {
+        if (fallosPendientes.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            return true;
+        }
+        if (probabilidadError <= 0) {
+            return false;
+        }
+        synchronized (aleatorio) {
+            return aleatorio.nextDouble() < probabilidadError;
+        }
+    }
+
+    private void procesar(HttpExchange intercambio, String nombreTabla, String cuerpo)
+            throws ErrorPostgrest, IOException {
+        Tabla tabla = tablas.get(nombreTabla);
+        if (tabla == null) {
+            throw new ErrorPostgrest(404, "42P01", "relation \"" + nombreTabla + "\" does not exist");
+        }
+        Map<String, String> parametros = new LinkedHashMap<>();
+        List<Predicate<JSONObject>> condiciones = new ArrayList<>();
+        leerConsulta(intercambio.getRequestURI().getRawQuery(), parametros, condiciones);
+        Predicate<JSONObject> filtro = fila -> condiciones.stream().allMatch(c -> c.test(fila));
+        String prefer = intercambio.getRequestHeaders().getFirst("Prefer");
+        prefer = prefer == null ? "" : prefer;
+        String select = parametros.getOrDefault("select", "*");
+
+        switch (intercambio.getRequestMethod()) {
+            case "GET" -> responderGet(intercambio, tabla, parametros, filtro, select, prefer);
+            case "POST" -> {
+                JSONArray filas = insertar(tabla, cuerpo, parametros.get("on_conflict"), prefer);
+                perderRespuesta();
+                responderFilas(intercambio, 201, filas, select, prefer);
+            }
+            case "PATCH" -> {
+                JSONArray filas = actualizar(tabla, new JSONObject(cuerpo), filtro);
+                perderRespuesta();
+                responderFilas(intercambio, 200, filas, select, prefer);
+            }
+            case "DELETE" -> {
+                JSONArray filas = borrar(tabla, filtro);
+                perderRespuesta();
+                responderFilas(intercambio, 200, filas, select, prefer);
+            }
+            default -> throw new ErrorPostgrest(405, "PGRST117", "Metodo no soportado");
+        }
+    }
+
+    /**
+     * Si toca perder la respuesta, la escritura ya aplicada se contesta con error
+     */
+    private void perderRespuesta() throws ErrorPostgrest {
+        if (respuestasPerdidas.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            erroresInyectados.incrementAndGet();
+            throw new ErrorPostgrest(codigoError, "PGRST000", "Respuesta perdida por el servidor de pruebas");
+        }
+    }
+
+    private void responderGet(HttpExchange intercambio, Tabla tabla, Map<String, String> parametros,
+                              Predicate<JSONObject> filtro, String select, String prefer) throws IOException {
+        List<JSONObject> encontradas;
+        JSONArray proyectadas = new JSONArray();
+        int desde;
+        int total;
+        synchronized (this) {
+            encontradas = new ArrayList<>();
+            for (JSONObject fila : tabla.filas) {
+                if (filtro.test(fila)) {
+                    encontradas.add(fila);
+                }
+            }
+            String orden = parametros.get("order");
+            if (orden != null) {
+                encontradas.sort(comparador(orden));
+            }
+            total = encontradas.size();
+
+            desde = Integer.parseInt(parametros.getOrDefault("offset", "0"));
+            int limite = parametros.containsKey("limit") ? Integer.parseInt(parametros.get("limit")) : Integer.MAX_VALUE;
+            String rango = intercambio.getRequestHeaders().getFirst("Range");
+            if (rango != null && rango.contains("-")) {
+                String[] extremos = rango.split("-", 2);
+                desde += Integer.parseInt(extremos[0].trim());
+                if (!extremos[1].isBlank()) {
+                    limite = Math.min(limite, Integer.parseInt(extremos[1].trim()) - Integer.parseInt(extremos[0].trim()) + 1);
+                }
+            }
+            int hasta = (int) Math.min(total, (long) desde + limite);
+            for (int i = desde; i < hasta; i++) {
+                proyectadas.put(proyectar(encontradas.get(i), select));
+            }
+        }
+
+        String totalTexto = prefer.contains("count=exact") ? String.valueOf(total) : "*";
+        String rangoRespuesta = proyectadas.isEmpty() ? "*" : desde + "-" + (desde + proyectadas.length() - 1);
+        intercambio.getResponseHeaders().set("Content-Range", rangoRespuesta + "/" + totalTexto);
+        responder(intercambio, 200, proyectadas.toString());
+    }
+
+    private void responderFilas(HttpExchange intercambio, int estado, JSONArray filas, String select,
+                                String prefer) throws IOException {
+        if (prefer.contains("count=exact")) {
+            String rango = filas.isEmpty() ? "*" : "0-" + (filas.length() - 1);
+            intercambio.getResponseHeaders().set("Content-Range", rango + "/" + filas.length());
+        }
+        if (prefer.contains("return=minimal") || !prefer.contains("return=representation")) {
+            intercambio.sendResponseHeaders(estado == 201 ? 201 : 204, -1);
+            return;
+        }
+        JSONArray proyectadas = new JSONArray();
+        synchronized (this) {
+            for (int i = 0; i < filas.length(); i++) {
+                proyectadas.put(proyectar(filas.getJSONObject(i), select));
+            }
+        }
+        responder(intercambio, estado, proyectadas.toString());
+    }
+
+    private synchronized JSONArray insertar(Tabla tabla, String cuerpo, String conflicto, String prefer)
+            throws ErrorPostgrest {
+        Object json = cuerpo.trim().startsWith("[") ? new JSONArray(cuerpo) : new JSONObject(cuerpo);
+        List<JSONObject> nuevas = new ArrayList<>();
+        if (json instanceof JSONArray array) {
+            for (int i = 0; i < array.length(); i++) {
+                nuevas.add(array.getJSONObject(i));
+            }
+        } else {
+            nuevas.add((JSONObject) json);
+        }
+        boolean ignorar = prefer.contains("resolution=ignore-duplicates");
+        boolean fusionar = prefer.contains("resolution=merge-duplicates");
+
+        // Se valida todo antes de tocar la tabla: el lote es una transaccion
+        List<JSONObject> aInsertar = new ArrayList<>();
+        Map<JSONObject, JSONObject> aFusionar = new LinkedHashMap<>();
+        for (JSONObject nueva : nuevas) {
+            comprobarReferencias(tabla, nueva);
+            JSONObject existente = conflicto != null ? buscarPorColumna(tabla, conflicto, nueva.opt(conflicto)) : null;
+            if (existente != null && (ignorar || fusionar)) {
+                if (fusionar) {
+                    aFusionar.put(existente, nueva);
+                }
+                continue;
+            }
+            for (String unica : tabla.unicas) {
+                boolean repetidaEnLote = aInsertar.stream()
+                        .anyMatch(otra -> iguales(otra.opt(unica), nueva.opt(unica)));
+                if (buscarPorColumna(tabla, unica, nueva.opt(unica)) != null || repetidaEnLote) {
+                    throw new ErrorPostgrest(409, "23505",
+                            "duplicate key value violates unique constraint \"" + unica + "_key\"");
+                }
+            }
+            aInsertar.add(nueva);
+        }
+
+        JSONArray resultado = new JSONArray();
+        for (JSONObject nueva : aInsertar) {
+            JSONObject fila = new JSONObject(nueva.toString());
+            fila.put("id", tabla.siguienteId++);
+            if (!fila.has("activo")) {
+                fila.put("activo", true);
+            }
+            tabla.filas.add(fila);
+            resultado.put(fila);
+        }
+        for (Map.Entry<JSONObject, JSONObject> fusion : aFusionar.entrySet()) {
+            for (String columna : fusion.getValue().keySet()) {
+                fusion.getKey().put(columna, fusion.getValue().get(columna));
+            }
+            resultado.put(fusion.getKey());
+        }
+        return resultado;
+    }
+
+    private synchronized JSONArray actualizar(Tabla tabla, JSONObject cambios, Predicate<JSONObject> filtro)
+            throws ErrorPostgrest {
+        comprobarReferencias(tabla, cambios);
+        List<JSONObject> afectadas = new ArrayList<>();
+        for (JSONObject fila : tabla.filas) {
+            if (filtro.test(fila)) {
+                afectadas.add(fila);
+            }
+        }
+        for (String unica : tabla.unicas) {
+            if (cambios.has(unica)) {
+                JSONObject otra = buscarPorColumna(tabla, unica, cambios.get(unica));
+                if (afectadas.size() > 1 || (otra != null && !afectadas.contains(otra))) {
+                    throw new ErrorPostgrest(409, "23505",
+                            "duplicate key value violates unique constraint \"" + unica + "_key\"");
+                }
+            }
+        }
+        JSONArray resultado = new JSONArray();
+        for (JSONObject fila : afectadas) {
+            for (String columna : cambios.keySet()) {
+                if (!"id".equals(columna)) {
+                    fila.put(columna, cambios.get(columna));
+                }
+            }
+            resultado.put(fila);
+        }
+        return resultado;
+    }
+
+    private synchronized JSONArray borrar(Tabla tabla, Predicate<JSONObject> filtro) {
+        JSONArray resultado = new JSONArray();
+        Iterator<JSONObject> filas = tabla.filas.iterator();
+        while (filas.hasNext()) {
+            JSONObject fila = filas.next();
+            if (filtro.test(fila)) {
+                resultado.put(fila);
+                filas.remove();
+            }
+        }
+        return resultado;
+    }
+
+    private void comprobarReferencias(Tabla tabla, JSONObject fila) throws ErrorPostgrest {
+        for (Map.Entry<String, String> referencia : tabla.referencias.entrySet()) {
+            if (fila.has(referencia.getKey())
+                    && buscarPorColumna(tablas.get(referencia.getValue()), "id", fila.get(referencia.getKey())) == null) {
+                throw new ErrorPostgrest(409, "23503", "insert or update on table violates foreign key constraint \""
+                        + referencia.getKey() + "_fkey\"");
+            }
+        }
+    }
+
+    private static JSONObject buscarPorColumna(Tabla tabla, String columna, Object valor) {
+        if (valor == null) {
+            return null;
+        }
+        for (JSONObject fila : tabla.filas) {
+            if (iguales(fila.opt(columna), valor)) {
+                return fila;
+            }
+        }
+        return null;
+    }
+
+    // ---- Consulta ----
+
+    private static void leerConsulta(String consulta, Map<String, String> parametros,
+                                     List<Predicate<JSONObject>> condiciones) {
+        if (consulta == null || consulta.isEmpty()) {
+            return;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual < 0) {
+                continue;
+            }
+            String clave = URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8);
+            String valor = URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+            switch (clave) {
+                case "select", "order", "limit", "offset", "on_conflict" -> parametros.put(clave, valor);
+                case "or", "and" -> condiciones.add(arbolLogico(clave, quitarParentesis(valor)));
+                default -> condiciones.add(condicion(clave, valor));
+            }
+        }
+    }
+
+    /**
+     * Interpreta "a.eq.1,and(b.gt.2,c.lt.3)" como una conjuncion (and) o disyuncion (or)
+     */
+    private static Predicate<JSONObject> arbolLogico(String operador, String contenido) {
+        List<Predicate<JSONObject>> partes = new ArrayList<>();
+        for (String parte : dividir(contenido)) {
+            if (parte.startsWith("and(") || parte.startsWith("or(")) {
+                int parentesis = parte.indexOf('(');
+                partes.add(arbolLogico(parte.substring(0, parentesis), quitarParentesis(parte.substring(parentesis))));
+            } else {
+                int punto = parte.indexOf('.');
+                partes.add(condicion(parte.substring(0, punto), parte.substring(punto + 1)));
+            }
+        }
+        if ("or".equals(operador)) {
+            return fila -> partes.stream().anyMatch(p -> p.test(fila));
+        }
+        return fila -> partes.stream().allMatch(p -> p.test(fila));
+    }
+
+    /**
+     * Condicion sobre una columna con la sintaxis "operador.valor" (p. ej. "gt.5", "in.(1,2)")
+     */
+    private static Predicate<JSONObject> condicion(String columna, String expresion) {
+        boolean negada = expresion.startsWith("not.");
+        String resto = negada ? expresion.substring(4) : expresion;
+        int punto = resto.indexOf('.');
+        if (punto < 0) {
+            throw new IllegalArgumentException("Filtro no valido: " + columna + "=" + expresion);
+        }
+        String operador = resto.substring(0, punto);
+        String valor = resto.substring(punto + 1);
+
+        Predicate<JSONObject> predicado = switch (operador) {
+            case "eq" -> fila -> cumple(fila.opt(columna), desentrecomillar(valor), r -> r == 0);
+            case "neq" -> fila -> cumple(fila.opt(columna), desentrecomillar(valor), r -> r != 0);
+            case "gt" -> fila -> cumple(fila.opt(columna), desentrecomillar(valor), r -> r > 0);
+            case "gte" -> fila -> cumple(fila.opt(columna), desentrecomillar(valor), r -> r >= 0);
+            case "lt" -> fila -> cumple(fila.opt(columna), desentrecomillar(valor), r -> r < 0);
+            case "lte" -> fila -> cumple(fila.opt(columna), desentrecomillar(valor), r -> r <= 0);
+            case "in" -> {
+                List<String> valores = new ArrayList<>();
+                for (String uno : dividir(quitarParentesis(valor))) {
+                    valores.add(desentrecomillar(uno));
+                }
+                yield fila -> valores.stream().anyMatch(v -> cumple(fila.opt(columna), v, r -> r == 0));
+            }
+            case "is" -> fila -> {
+                Object actual = fila.opt(columna);
+                return switch (valor) {
+                    case "null" -> actual == null || actual == JSONObject.NULL;
+                    case "true" -> Boolean.TRUE.equals(actual);
+                    case "false" -> Boolean.FALSE.equals(actual);
+                    default -> false;
+                };
+            };
+            default -> throw new IllegalArgumentException("Operador no soportado: " + operador);
+        };
+        return negada ? predicado.negate() : predicado;
+    }
+
+    /**
+     * Compara el valor de una columna con un literal de la URL segun el tipo de la columna.
+     * Una columna nula o de tipo incompatible no cumple ninguna comparacion (como en SQL).
+     */
+    private static boolean cumple(Object actual, String literal, IntPredicate prueba) {
+        if (actual == null || actual == JSONObject.NULL) {
+            return false;
+        }
+        if (actual instanceof Number numero) {
+            try {
+                return prueba.test(new BigDecimal(numero.toString()).compareTo(new BigDecimal(literal)));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        if (actual instanceof Boolean logico) {
+            return prueba.test(logico.toString().equals(literal) ? 0 : 1);
+        }
+        return prueba.test(Integer.signum(actual.toString().compareTo(literal)));
+    }
+
+    private static boolean iguales(Object a, Object b) {
+        return b != null && cumple(a, b.toString(), r -> r == 0);
+    }
+
+    private static Comparator<JSONObject> comparador(String orden) {
+        Comparator<JSONObject> resultado = null;
+        for (String criterio : orden.split(",")) {
+            String[] partes = criterio.split("\\.");
+            String columna = partes[0];
+            Comparator<JSONObject> porColumna = (a, b) -> compararValores(a.opt(columna), b.opt(columna));
+            if (partes.length > 1 && "desc".equals(partes[1])) {
+                porColumna = porColumna.reversed();
+            }
+            resultado = resultado == null ? porColumna : resultado.thenComparing(porColumna);
+        }
+        return resultado;
+    }
+
+    private static int compararValores(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            return new BigDecimal(x.toString()).compareTo(new BigDecimal(y.toString()));
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    // ---- Proyeccion ----
+
+    /**
+     * Aplica select: columnas de la fila y recursos embebidos "tabla(columnas)"
+     * unidos por la columna "<tabla en singular>_id"
+     */
+    private JSONObject proyectar(JSONObject fila, String select) {
+        JSONObject resultado = new JSONObject();
+        for (String elemento : dividir(select)) {
+            int parentesis = elemento.indexOf('(');
+            if (parentesis < 0) {
+                if ("*".equals(elemento)) {
+                    for (String columna : fila.keySet()) {
+                        resultado.put(columna, fila.get(columna));
+                    }
+                } else if (fila.has(elemento)) {
+                    resultado.put(elemento, fila.get(elemento));
+                }
+                continue;
+            }
+            String recurso = elemento.substring(0, parentesis);
+            String columnas = quitarParentesis(elemento.substring(parentesis));
+            Tabla embebida = tablas.get(recurso);
+            String referencia = recurso.substring(0, recurso.length() - 1) + "_id";
+            JSONObject relacionada = embebida == null ? null
+                    : buscarPorColumna(embebida, "id", fila.opt(referencia));
+            resultado.put(recurso, relacionada == null ? JSONObject.NULL : proyectar(relacionada, columnas));
+        }
+        return resultado;
+    }
+
+    // ---- Utilidades de texto ----
+
+    /**
+     * Divide por comas de primer nivel, respetando parentesis y comillas
+     */
+    private static List<String> dividir(String texto) {
+        List<String> partes = new ArrayList<>();
+        int nivel = 0;
+        boolean entreComillas = false;
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (entreComillas && c == '\\' && i + 1 < texto.length()) {
+                actual.append(c).append(texto.charAt(++i));
+                continue;
+            }
+            if (c == '"') {
+                entreComillas = !entreComillas;
+            } else if (!entreComillas && c == '(') {
+                nivel++;
+            } else if (!entreComillas && c == ')') {
+                nivel--;
+            } else if (!entreComillas && nivel == 0 && c == ',') {
+                partes.add(actual.toString().trim());
+                actual.setLength(0);
+                continue;
+            }
+            actual.append(c);
+        }
+        if (actual.length() > 0) {
+            partes.add(actual.toString().trim());
+        }
+        return partes;
+    }
+
+    private static String quitarParentesis(String texto) {
+        String limpio = texto.trim();
+        if (limpio.startsWith("(") && limpio.endsWith(")")) {
+            return limpio.substring(1, limpio.length() - 1);
+        }
+        return limpio;
+    }
+
+    private static String desentrecomillar(String valor) {
+        if (valor.length() >= 2 && valor.startsWith("\"") && valor.endsWith("\"")) {
+            return valor.substring(1, valor.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+        }
+        return valor;
+    }
+
+    // ---- Respuestas ----
+
+    private static String error(String codigo, String mensaje) {
+        return new JSONObject().put("code", codigo).put("message", mensaje).toString();
+    }
+
+    private static void responder(HttpExchange intercambio, int estado, String cuerpo) throws IOException {
+        byte[] bytes = cuerpo.getBytes(StandardCharsets.UTF_8);
+        String aceptadas = intercambio.getRequestHeaders().getFirst("Accept-Encoding");
+        if (aceptadas != null && aceptadas.contains("gzip")) {
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+                gzip.write(bytes);
+            }
+            bytes = comprimido.toByteArray();
+            intercambio.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(estado, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+}
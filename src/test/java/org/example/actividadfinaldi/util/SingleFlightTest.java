@@ -0,0 +1,96 @@
+package org.example.actividadfinaldi.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests para la clase SingleFlight
+ */
+@DisplayName("Tests de SingleFlight")
+class SingleFlightTest {
+
+    @Test
+    @DisplayName("Llamadas identicas concurrentes comparten una ejecucion")
+    void testAgrupaLlamadasConcurrentes() throws Exception {
+        SingleFlight<String, Integer> grupo = new SingleFlight<>();
+        CountDownLatch empezada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        CompletableFuture<Integer> primera = CompletableFuture.supplyAsync(() -> {
+            try {
+                return grupo.ejecutar("clave", () -> {
+                    ejecuciones.incrementAndGet();
+                    empezada.countDown();
+                    liberar.await();
+                    return 42;
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(empezada.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> segunda = grupo.ejecutarAsync("clave", () -> {
+            ejecuciones.incrementAndGet();
+            return CompletableFuture.completedFuture(0);
+        });
+        liberar.countDown();
+
+        assertEquals(42, primera.get(5, TimeUnit.SECONDS));
+        assertEquals(42, segunda.get(5, TimeUnit.SECONDS));
+        assertEquals(1, ejecuciones.get());
+        assertEquals(1, grupo.getAhorradas());
+        assertEquals(0, grupo.getEnCurso());
+    }
+
+    @Test
+    @DisplayName("Al terminar la clave se libera y se vuelve a ejecutar")
+    void testNoCacheaResultados() throws Exception {
+        SingleFlight<String, Integer> grupo = new SingleFlight<>();
+        AtomicInteger contador = new AtomicInteger();
+
+        assertEquals(1, grupo.ejecutar("clave", contador::incrementAndGet));
+        assertEquals(2, grupo.ejecutar("clave", contador::incrementAndGet));
+        assertEquals(2, grupo.getEjecutadas());
+        assertEquals(0, grupo.getAhorradas());
+    }
+
+    @Test
+    @DisplayName("El error se propaga a todas las llamadas agrupadas")
+    void testErrorCompartido() {
+        SingleFlight<String, Integer> grupo = new SingleFlight<>();
+        CompletableFuture<Integer> origen = new CompletableFuture<>();
+
+        CompletableFuture<Integer> primera = grupo.ejecutarAsync("clave", () -> origen);
+        CompletableFuture<Integer> segunda = grupo.ejecutarAsync("clave", () -> CompletableFuture.completedFuture(0));
+        origen.completeExceptionally(new IllegalStateException("fallo"));
+
+        ExecutionException error = assertThrows(ExecutionException.class, segunda::get);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertTrue(primera.isCompletedExceptionally());
+        assertEquals(0, grupo.getEnCurso());
+    }
+
+    @Test
+    @DisplayName("Cancelar una llamada no afecta a las demas")
+    void testCancelarNoAfecta() throws Exception {
+        SingleFlight<String, Integer> grupo = new SingleFlight<>();
+        CompletableFuture<Integer> origen = new CompletableFuture<>();
+
+        CompletableFuture<Integer> primera = grupo.ejecutarAsync("clave", () -> origen);
+        CompletableFuture<Integer> segunda = grupo.ejecutarAsync("clave", () -> origen);
+        primera.cancel(true);
+        origen.complete(7);
+
+        assertEquals(7, segunda.get());
+    }
+}